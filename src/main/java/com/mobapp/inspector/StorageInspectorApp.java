@@ -62,6 +62,7 @@ public class StorageInspectorApp extends Application {
         ContentViewPane contentViewPane = new ContentViewPane();
         
         fileSystemTreeView.setOnFileSelectedListener(contentViewPane::displayFile);
+        contentViewPane.setHashIndexSupplier(fileSystemTreeView::getHashIndex);
         
         splitPane.getItems().addAll(fileSystemTreeView, contentViewPane);
         
@@ -0,0 +1,254 @@
+package com.mobapp.inspector.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.sqlite.ProgressHandler;
+
+import com.mobapp.inspector.search.CancellationToken;
+import com.mobapp.inspector.search.DatabaseSearcher;
+
+/**
+ * Finds the tables that differ between two versions of an SQLite database.
+ * <p>
+ * Both databases are opened read-only. A table present in only one of them
+ * is added or removed; a table present in both is modified if its schema,
+ * its number of rows or a digest of all its rows differs. Rows are read in
+ * the table's own order, by rowid or primary key, so the digests of equal
+ * tables agree no matter how the files are laid out on disk.
+ */
+public final class DatabaseDiff {
+
+    private static final int PROGRESS_INTERVAL_OPCODES = 10_000;
+
+    /**
+     * A table that differs between the two databases. Instances are immutable.
+     */
+    public static class TableChange {
+        private final String table;
+        private final FileChange.Kind kind;
+        private final long rowsBefore;
+        private final long rowsAfter;
+        private final boolean schemaChanged;
+
+        TableChange(String table, FileChange.Kind kind, long rowsBefore, long rowsAfter, boolean schemaChanged) {
+            this.table = table;
+            this.kind = kind;
+            this.rowsBefore = rowsBefore;
+            this.rowsAfter = rowsAfter;
+            this.schemaChanged = schemaChanged;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public FileChange.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the number of rows in the first database.
+         *
+         * @return the number of rows, or -1 if the table was added
+         */
+        public long getRowsBefore() {
+            return rowsBefore;
+        }
+
+        /**
+         * Returns the number of rows in the second database.
+         *
+         * @return the number of rows, or -1 if the table was removed
+         */
+        public long getRowsAfter() {
+            return rowsAfter;
+        }
+
+        public boolean isSchemaChanged() {
+            return schemaChanged;
+        }
+
+        /**
+         * Describes the change for display, for example {@code "12 → 14 rows"}.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            switch (kind) {
+                case ADDED:
+                    return String.format("%,d rows", rowsAfter);
+                case REMOVED:
+                    return String.format("%,d rows", rowsBefore);
+                default:
+                    String rows = rowsBefore == rowsAfter
+                            ? String.format("%,d rows, contents changed", rowsAfter)
+                            : String.format("%,d → %,d rows", rowsBefore, rowsAfter);
+                    return schemaChanged ? "Schema changed, " + rows : rows;
+            }
+        }
+    }
+
+    /**
+     * A table's schema and, once read, the count and digest of its rows.
+     */
+    private static class TableState {
+        private final String sql;
+        private long rows = -1;
+        private byte[] digest;
+
+        TableState(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    private DatabaseDiff() {
+    }
+
+    /**
+     * Compares the tables of two databases.
+     *
+     * @param before the database in the first snapshot
+     * @param after the database in the second snapshot
+     * @param token aborts the running query once cancelled
+     * @return the tables that differ, removed and modified tables in the
+     *         first database's order, then added tables
+     * @throws IOException if either file cannot be read as a database
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public static List<TableChange> compare(File before, File after, CancellationToken token) throws IOException {
+        try (Connection left = open(before, token); Connection right = open(after, token)) {
+            Map<String, TableState> leftTables = listTables(left);
+            Map<String, TableState> rightTables = listTables(right);
+            List<TableChange> changes = new ArrayList<>();
+
+            for (Map.Entry<String, TableState> entry : leftTables.entrySet()) {
+                token.throwIfCancelled();
+                String name = entry.getKey();
+                TableState l = entry.getValue();
+                TableState r = rightTables.get(name);
+                readRows(left, name, l);
+                if (r == null) {
+                    changes.add(new TableChange(name, FileChange.Kind.REMOVED, l.rows, -1, false));
+                    continue;
+                }
+
+                readRows(right, name, r);
+                boolean schemaChanged = !Objects.equals(l.sql, r.sql);
+                if (schemaChanged || l.rows != r.rows || !Arrays.equals(l.digest, r.digest)) {
+                    changes.add(new TableChange(name, FileChange.Kind.MODIFIED, l.rows, r.rows, schemaChanged));
+                }
+            }
+
+            for (Map.Entry<String, TableState> entry : rightTables.entrySet()) {
+                if (!leftTables.containsKey(entry.getKey())) {
+                    token.throwIfCancelled();
+                    readRows(right, entry.getKey(), entry.getValue());
+                    changes.add(new TableChange(entry.getKey(), FileChange.Kind.ADDED, -1, entry.getValue().rows, false));
+                }
+            }
+            return changes;
+        } catch (SQLException e) {
+            token.throwIfCancelled();
+            throw new IOException("Cannot compare databases: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a database read-only, as {@link DatabaseSearcher#openReadOnly(File)} does.
+     *
+     * @param file the database file
+     * @param token aborts the running statement once cancelled
+     * @return the connection
+     * @throws SQLException if the file cannot be opened
+     */
+    private static Connection open(File file, CancellationToken token) throws SQLException {
+        Connection connection = DatabaseSearcher.openReadOnly(file);
+        ProgressHandler.setHandler(connection, PROGRESS_INTERVAL_OPCODES, new ProgressHandler() {
+            @Override
+            protected int progress() {
+                return token.isCancelled() ? 1 : 0;
+            }
+        });
+        return connection;
+    }
+
+    /**
+     * Lists the ordinary tables of a database with their schemas.
+     *
+     * @param connection the database connection
+     * @return the tables by name, in schema order, leaving out virtual tables
+     * @throws SQLException if the schema cannot be read
+     */
+    private static Map<String, TableState> listTables(Connection connection) throws SQLException {
+        Map<String, TableState> tables = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                 "SELECT name, sql FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%'")) {
+            while (rs.next()) {
+                String sql = rs.getString(2);
+                // Virtual tables keep their data in shadow tables, which are compared directly
+                if (sql == null || !sql.toUpperCase(Locale.ROOT).startsWith("CREATE VIRTUAL TABLE")) {
+                    tables.put(rs.getString(1), new TableState(sql));
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Counts the rows of a table and digests their values.
+     *
+     * @param connection the database connection
+     * @param name the table
+     * @param state receives the count and digest
+     * @throws SQLException if the table cannot be read
+     */
+    private static void readRows(Connection connection, String name, TableState state) throws SQLException {
+        MessageDigest digest = newDigest();
+        long rows = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM \"" + name.replace("\"", "\"\"") + "\"")) {
+            int columns = rs.getMetaData().getColumnCount();
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            while (rs.next()) {
+                rows++;
+                for (int i = 1; i <= columns; i++) {
+                    byte[] value = rs.getBytes(i);
+                    // Length-prefix each value so shifted boundaries between values don't collide
+                    length.clear();
+                    length.putInt(value != null ? value.length : -1);
+                    digest.update(length.array());
+                    if (value != null) {
+                        digest.update(value);
+                    }
+                }
+            }
+        }
+        state.rows = rows;
+        state.digest = digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
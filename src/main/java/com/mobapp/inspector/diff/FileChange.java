@@ -0,0 +1,94 @@
+package com.mobapp.inspector.diff;
+
+import java.io.File;
+
+/**
+ * A file that differs between two snapshots of the same folder. Instances
+ * are immutable.
+ */
+public final class FileChange {
+
+    /**
+     * How a file or table differs between the two snapshots.
+     */
+    public enum Kind {
+        ADDED("Added"),
+        REMOVED("Removed"),
+        MODIFIED("Modified");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Kind kind;
+    private final String path;
+    private final File before;
+    private final File after;
+    private final long sizeBefore;
+    private final long sizeAfter;
+
+    FileChange(Kind kind, String path, File before, File after, long sizeBefore, long sizeAfter) {
+        this.kind = kind;
+        this.path = path;
+        this.before = before;
+        this.after = after;
+        this.sizeBefore = sizeBefore;
+        this.sizeAfter = sizeAfter;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the path of the file relative to the snapshot roots.
+     *
+     * @return the relative path, with {@code /} between names
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the file in the first snapshot.
+     *
+     * @return the file, or null if it was added
+     */
+    public File getBefore() {
+        return before;
+    }
+
+    /**
+     * Returns the file in the second snapshot.
+     *
+     * @return the file, or null if it was removed
+     */
+    public File getAfter() {
+        return after;
+    }
+
+    /**
+     * Returns the size of the file in the first snapshot.
+     *
+     * @return the size in bytes, or -1 if the file was added
+     */
+    public long getSizeBefore() {
+        return sizeBefore;
+    }
+
+    /**
+     * Returns the size of the file in the second snapshot.
+     *
+     * @return the size in bytes, or -1 if the file was removed
+     */
+    public long getSizeAfter() {
+        return sizeAfter;
+    }
+}
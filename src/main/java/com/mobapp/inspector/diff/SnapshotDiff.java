@@ -0,0 +1,338 @@
+package com.mobapp.inspector.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Compares two snapshots of the same folder, such as two dumps of an app's
+ * storage taken before and after an action in the app.
+ * <p>
+ * Both trees are walked together on a fork-join pool, one task per folder
+ * present in both, so the walk runs on every core. A file whose size
+ * differs is modified and one whose size and modification time agree is
+ * taken as unchanged, both without reading it. Only files of equal size
+ * with different times have their contents compared, block by block, until
+ * the first difference.
+ * <p>
+ * Only files are reported: everything below an added or removed folder is
+ * reported as added or removed, and empty folders are not reported. Links
+ * are not followed, and an entry that is a file in one snapshot and a folder
+ * in the other is reported as removed and added.
+ */
+public class SnapshotDiff {
+
+    private static final int COMPARE_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Receives the differences as they are found.
+     */
+    public interface Listener {
+
+        /**
+         * Called on a worker thread for each file that differs.
+         *
+         * @param change the difference
+         */
+        void onChange(FileChange change);
+    }
+
+    /**
+     * How much work a comparison took.
+     */
+    public static class Summary {
+        private final long files;
+        private final long contentsCompared;
+
+        Summary(long files, long contentsCompared) {
+            this.files = files;
+            this.contentsCompared = contentsCompared;
+        }
+
+        /**
+         * Returns the number of files looked at in either snapshot.
+         *
+         * @return the number of files
+         */
+        public long getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the number of files whose contents had to be read.
+         *
+         * @return the number of files present in both snapshots that were read
+         */
+        public long getContentsCompared() {
+            return contentsCompared;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a differ that uses one worker per available processor.
+     */
+    public SnapshotDiff() {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("snapshot-diff-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Compares two snapshots. Blocks until the comparison is complete.
+     *
+     * @param before the root of the first snapshot
+     * @param after the root of the second snapshot
+     * @param listener receives each difference as it is found
+     * @param token checked before each folder and between blocks of compared files
+     * @return how much work the comparison took
+     * @throws CancellationException if the token is cancelled
+     */
+    public Summary compare(File before, File after, Listener listener, CancellationToken token) {
+        LongAdder files = new LongAdder();
+        LongAdder contentsCompared = new LongAdder();
+        pool.invoke(new FolderTask("", before.toPath(), after.toPath(), listener, token, files, contentsCompared));
+        return new Summary(files.sum(), contentsCompared.sum());
+    }
+
+    /**
+     * Lists a folder without following links.
+     *
+     * @param folder the folder
+     * @return the attributes of each entry by name, in name order; empty if the folder cannot be read
+     */
+    private static Map<String, BasicFileAttributes> list(Path folder) {
+        Map<String, BasicFileAttributes> entries = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            for (Path entry : stream) {
+                try {
+                    entries.put(entry.getFileName().toString(),
+                            Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+                } catch (IOException e) {
+                    // Entries that vanish or cannot be read are left out
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing folder: " + folder + " - " + e.getMessage());
+        }
+        return entries;
+    }
+
+    private static String child(String path, String name) {
+        return path.isEmpty() ? name : path + "/" + name;
+    }
+
+    /**
+     * Compares one folder that is present in both snapshots and forks a task
+     * for each subfolder and each file whose contents must be compared.
+     */
+    private static class FolderTask extends RecursiveAction {
+        private final String path;
+        private final Path before;
+        private final Path after;
+        private final Listener listener;
+        private final CancellationToken token;
+        private final LongAdder files;
+        private final LongAdder contentsCompared;
+
+        FolderTask(String path, Path before, Path after, Listener listener, CancellationToken token,
+                   LongAdder files, LongAdder contentsCompared) {
+            this.path = path;
+            this.before = before;
+            this.after = after;
+            this.listener = listener;
+            this.token = token;
+            this.files = files;
+            this.contentsCompared = contentsCompared;
+        }
+
+        @Override
+        protected void compute() {
+            token.throwIfCancelled();
+
+            Map<String, BasicFileAttributes> left = list(before);
+            Map<String, BasicFileAttributes> right = list(after);
+            List<ForkJoinTask<?>> subtasks = new ArrayList<>();
+
+            for (Map.Entry<String, BasicFileAttributes> entry : left.entrySet()) {
+                String name = entry.getKey();
+                String childPath = child(path, name);
+                Path leftPath = before.resolve(name);
+                Path rightPath = after.resolve(name);
+                BasicFileAttributes l = entry.getValue();
+                BasicFileAttributes r = right.get(name);
+
+                if (r == null) {
+                    subtasks.add(new OneSideTask(FileChange.Kind.REMOVED, childPath, leftPath, l, this));
+                } else if (l.isDirectory() && r.isDirectory()) {
+                    subtasks.add(new FolderTask(childPath, leftPath, rightPath, listener, token, files, contentsCompared));
+                } else if (l.isDirectory() || r.isDirectory()) {
+                    subtasks.add(new OneSideTask(FileChange.Kind.REMOVED, childPath, leftPath, l, this));
+                    subtasks.add(new OneSideTask(FileChange.Kind.ADDED, childPath, rightPath, r, this));
+                } else {
+                    files.increment();
+                    if (l.size() != r.size()) {
+                        report(FileChange.Kind.MODIFIED, childPath, leftPath, rightPath, l.size(), r.size());
+                    } else if (!l.lastModifiedTime().equals(r.lastModifiedTime())) {
+                        if (l.isRegularFile() && r.isRegularFile()) {
+                            subtasks.add(new ContentTask(childPath, leftPath, rightPath, l.size(), this));
+                        } else {
+                            // Links and special files have no contents worth reading
+                            report(FileChange.Kind.MODIFIED, childPath, leftPath, rightPath, l.size(), r.size());
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<String, BasicFileAttributes> entry : right.entrySet()) {
+                String name = entry.getKey();
+                if (!left.containsKey(name)) {
+                    subtasks.add(new OneSideTask(FileChange.Kind.ADDED, child(path, name), after.resolve(name),
+                            entry.getValue(), this));
+                }
+            }
+
+            ForkJoinTask.invokeAll(subtasks);
+        }
+
+        void report(FileChange.Kind kind, String changePath, Path left, Path right, long sizeBefore, long sizeAfter) {
+            listener.onChange(new FileChange(kind, changePath, left != null ? left.toFile() : null,
+                    right != null ? right.toFile() : null, sizeBefore, sizeAfter));
+        }
+    }
+
+    /**
+     * Reports a file, or every file below a folder, that exists in only one snapshot.
+     */
+    private static class OneSideTask extends RecursiveAction {
+        private final FileChange.Kind kind;
+        private final String path;
+        private final Path file;
+        private final BasicFileAttributes attributes;
+        private final FolderTask folder;
+
+        OneSideTask(FileChange.Kind kind, String path, Path file, BasicFileAttributes attributes, FolderTask folder) {
+            this.kind = kind;
+            this.path = path;
+            this.file = file;
+            this.attributes = attributes;
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
+            if (!attributes.isDirectory()) {
+                folder.files.increment();
+                if (kind == FileChange.Kind.ADDED) {
+                    folder.report(kind, path, null, file, -1, attributes.size());
+                } else {
+                    folder.report(kind, path, file, null, attributes.size(), -1);
+                }
+                return;
+            }
+
+            folder.token.throwIfCancelled();
+            List<OneSideTask> subtasks = new ArrayList<>();
+            for (Map.Entry<String, BasicFileAttributes> entry : list(file).entrySet()) {
+                subtasks.add(new OneSideTask(kind, child(path, entry.getKey()), file.resolve(entry.getKey()),
+                        entry.getValue(), folder));
+            }
+            ForkJoinTask.invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Compares the contents of a file of the same size in both snapshots.
+     */
+    private static class ContentTask extends RecursiveAction {
+        private final String path;
+        private final Path before;
+        private final Path after;
+        private final long size;
+        private final FolderTask folder;
+
+        ContentTask(String path, Path before, Path after, long size, FolderTask folder) {
+            this.path = path;
+            this.before = before;
+            this.after = after;
+            this.size = size;
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
+            folder.contentsCompared.increment();
+            boolean same;
+            try {
+                same = sameContents();
+            } catch (IOException e) {
+                // A file that cannot be read in either snapshot cannot be shown to be unchanged
+                same = false;
+            }
+            if (!same) {
+                folder.report(FileChange.Kind.MODIFIED, path, before, after, size, size);
+            }
+        }
+
+        private boolean sameContents() throws IOException {
+            try (FileChannel left = FileChannel.open(before, StandardOpenOption.READ);
+                 FileChannel right = FileChannel.open(after, StandardOpenOption.READ)) {
+                ByteBuffer leftBlock = ByteBuffer.allocate(COMPARE_BLOCK_SIZE);
+                ByteBuffer rightBlock = ByteBuffer.allocate(COMPARE_BLOCK_SIZE);
+                while (true) {
+                    folder.token.throwIfCancelled();
+                    int leftRead = fill(left, leftBlock);
+                    int rightRead = fill(right, rightBlock);
+                    if (leftRead != rightRead) {
+                        return false;
+                    }
+                    if (leftRead == 0) {
+                        return true;
+                    }
+                    if (!leftBlock.flip().equals(rightBlock.flip())) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reads the next block of a file, as far as the file goes.
+         *
+         * @param channel the file
+         * @param block the buffer, cleared before reading
+         * @return the number of bytes read, 0 at the end of the file
+         * @throws IOException if the file cannot be read
+         */
+        private static int fill(FileChannel channel, ByteBuffer block) throws IOException {
+            block.clear();
+            while (block.hasRemaining() && channel.read(block) > 0) {
+                // Keep reading until the block is full or the file ends
+            }
+            return block.position();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Locates the per-user directory where the inspector keeps caches that
+ * survive restarts, such as search indexes built for a storage dump.
+ */
+public final class CacheDirectory {
+
+    private static final String APP_DIRECTORY = ".mobapp-inspector";
+
+    private CacheDirectory() {
+    }
+
+    /**
+     * Returns the cache file of the given kind for a root folder, creating
+     * the parent directories if necessary.
+     *
+     * @param kind the cache kind, used as a subdirectory name
+     * @param root the root folder the cache belongs to
+     * @return the path of the cache file
+     * @throws IOException if the cache directory cannot be created
+     */
+    public static Path forRoot(String kind, File root) throws IOException {
+        Path directory = Paths.get(System.getProperty("user.home"), APP_DIRECTORY, kind);
+        Files.createDirectories(directory);
+        return directory.resolve(digest(root.getAbsolutePath()) + ".bin");
+    }
+
+    private static String digest(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.mobapp.inspector.fs;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reports which of a set of folders had entries created, deleted or
+ * modified, using the platform's {@link WatchService}.
+ * <p>
+ * Events are coalesced: after the first event the watcher keeps collecting
+ * until the folders have been quiet for a short while, or at most a second
+ * has passed, and then reports every folder that changed in one call. A
+ * copy that writes thousands of files therefore produces a steady trickle
+ * of batches rather than thousands of notifications.
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final long QUIET_MILLIS = 200;
+    private static final long MAX_DELAY_MILLIS = 1000;
+
+    private final WatchService service;
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+    private final Consumer<Set<File>> listener;
+
+    /**
+     * Creates a watcher and starts its background thread.
+     *
+     * @param listener receives each batch of changed folders, on the watcher's thread
+     * @throws IOException if the platform's watch service cannot be created
+     */
+    public DirectoryWatcher(Consumer<Set<File>> listener) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.listener = listener;
+
+        Thread thread = new Thread(this::run, "directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching a folder. Watching a folder twice has no effect.
+     *
+     * @param directory the folder
+     */
+    public void watch(File directory) {
+        Path path = directory.toPath();
+        if (keys.containsKey(path)) {
+            return;
+        }
+        try {
+            keys.put(path, path.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException | ClosedWatchServiceException e) {
+            System.err.println("Cannot watch folder: " + directory.getAbsolutePath() + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops watching a folder.
+     *
+     * @param directory the folder
+     */
+    public void unwatch(File directory) {
+        WatchKey key = keys.remove(directory.toPath());
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    /**
+     * Stops watching every folder.
+     */
+    public void unwatchAll() {
+        for (Path path : keys.keySet()) {
+            unwatch(path.toFile());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<File> changed = new LinkedHashSet<>();
+                collect(service.take(), changed);
+
+                // Keep collecting until the storm settles, but report at least once a second
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                WatchKey key;
+                while (System.currentTimeMillis() < deadline
+                        && (key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+
+                if (!changed.isEmpty()) {
+                    listener.accept(changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // The watcher was closed
+        }
+    }
+
+    /**
+     * Drains the events of a key and notes its folder as changed.
+     *
+     * @param key the signalled key
+     * @param changed the folders changed in this batch
+     */
+    private void collect(WatchKey key, Set<File> changed) {
+        Path directory = (Path) key.watchable();
+        // Which entries changed doesn't matter, as the folder is listed again; this includes OVERFLOW
+        key.pollEvents();
+        if (!key.reset()) {
+            // The folder was deleted or became inaccessible
+            keys.remove(directory, key);
+        }
+        if (keys.containsKey(directory)) {
+            changed.add(directory.toFile());
+        }
+    }
+}
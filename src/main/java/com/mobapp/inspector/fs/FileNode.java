@@ -0,0 +1,173 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a file or folder as it was when its parent folder
+ * was listed. The attributes are read once per entry, so sorting, hiding
+ * and drawing entries never have to ask the filesystem again.
+ * <p>
+ * The {@link FileType} of a file is whatever was known at listing time:
+ * the type read from its leading bytes if {@link FileTypeDetector} has it
+ * for this modification time, otherwise the type its name suggests. Once
+ * the bytes have been read, {@link #withType(FileType)} gives the refined node.
+ */
+public final class FileNode {
+
+    /** Folders first, then by name, ignoring case; names differing only in case are ordered exactly. */
+    public static final Comparator<FileNode> FOLDERS_FIRST = Comparator
+            .comparing((FileNode node) -> !node.isDirectory())
+            .thenComparing(FileNode::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(FileNode::getName);
+
+    // Only Windows keeps the hidden flag in an attribute; elsewhere it is a leading dot
+    private static final boolean DOS_ATTRIBUTES = File.separatorChar == '\\';
+
+    private final File file;
+    private final String name;
+    private final boolean directory;
+    private final boolean hidden;
+    private final long size;
+    private final long lastModified;
+    private final FileType type;
+
+    /**
+     * Creates a node from attributes that were already read. The type of a
+     * file is taken from {@link FileTypeDetector} if known, otherwise from its name.
+     *
+     * @param file the file
+     * @param directory whether the file is a folder
+     * @param hidden whether the file is hidden
+     * @param size the size in bytes, or -1 if unknown
+     * @param lastModified the modification time in milliseconds since the epoch, or -1 if unknown
+     */
+    public FileNode(File file, boolean directory, boolean hidden, long size, long lastModified) {
+        this.file = file;
+        this.name = file.getName().isEmpty() ? file.getPath() : file.getName();
+        this.directory = directory;
+        this.hidden = hidden;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.type = directory ? null : FileTypeDetector.getCachedType(file, lastModified, name);
+    }
+
+    private FileNode(FileNode node, FileType type) {
+        this.file = node.file;
+        this.name = node.name;
+        this.directory = node.directory;
+        this.hidden = node.hidden;
+        this.size = node.size;
+        this.lastModified = node.lastModified;
+        this.type = type;
+    }
+
+    /**
+     * Reads the attributes of a single file.
+     *
+     * @param file the file
+     * @return the node
+     * @throws IOException if the attributes cannot be read
+     */
+    public static FileNode read(File file) throws IOException {
+        return read(file.toPath(), file);
+    }
+
+    /**
+     * Lists a folder, reading the attributes of every entry exactly once.
+     * Links are followed like {@link File#isDirectory()} does; entries whose
+     * attributes cannot be read, such as dangling links, are left out.
+     *
+     * @param directory the folder to list
+     * @param includeHidden whether hidden entries are included
+     * @return the entries, sorted with {@link #FOLDERS_FIRST}
+     * @throws IOException if the folder cannot be listed
+     */
+    public static List<FileNode> list(File directory, boolean includeHidden) throws IOException {
+        List<FileNode> nodes = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath())) {
+            for (Path path : stream) {
+                FileNode node;
+                try {
+                    node = read(path, new File(directory, path.getFileName().toString()));
+                } catch (IOException e) {
+                    continue;
+                }
+                if (includeHidden || !node.isHidden()) {
+                    nodes.add(node);
+                }
+            }
+        }
+        nodes.sort(FOLDERS_FIRST);
+        return nodes;
+    }
+
+    private static FileNode read(Path path, File file) throws IOException {
+        if (DOS_ATTRIBUTES) {
+            DosFileAttributes attributes = Files.readAttributes(path, DosFileAttributes.class);
+            return new FileNode(file, attributes.isDirectory(), attributes.isHidden(),
+                    attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileNode(file, attributes.isDirectory(), file.getName().startsWith("."),
+                attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the name shown for the node: the file name, or the whole path
+     * for a filesystem root.
+     *
+     * @return the display name
+     */
+    public String getName() {
+        return name;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the type of the file as known when the node was created.
+     *
+     * @return the type, or null for a folder
+     */
+    public FileType getType() {
+        return type;
+    }
+
+    /**
+     * Returns a copy of this node with a different type, such as the type
+     * read from the file's leading bytes.
+     *
+     * @param newType the type
+     * @return the new node
+     */
+    public FileNode withType(FileType newType) {
+        return new FileNode(this, newType);
+    }
+}
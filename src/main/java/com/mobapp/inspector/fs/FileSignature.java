@@ -0,0 +1,110 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File formats recognised from their leading magic bytes rather than from
+ * their names. App containers are full of databases and archives with
+ * arbitrary or missing extensions, so the signature is the reliable test.
+ */
+public enum FileSignature {
+    SQLITE("SQLite database", "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII)),
+    // Local file header; also covers APK, IPA and JAR files
+    ZIP("ZIP archive", new byte[] { 'P', 'K', 3, 4 }),
+    BPLIST("Binary property list", "bplist00".getBytes(StandardCharsets.US_ASCII)),
+    // Android binary XML, used for SharedPreferences and system settings since Android 12
+    ABX("Android binary XML", new byte[] { 'A', 'B', 'X', 0 }),
+    GZIP("gzip data", new byte[] { 0x1F, (byte) 0x8B, 8 }),
+    // Compression method 8 with the header checksums of the fastest, default and best levels
+    ZLIB("zlib data", new byte[] { 0x78, 0x01 }, new byte[] { 0x78, (byte) 0x9C }, new byte[] { 0x78, (byte) 0xDA }),
+    PNG("PNG image", new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' }),
+    JPEG("JPEG image", new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF }),
+    GIF("GIF image", "GIF87a".getBytes(StandardCharsets.US_ASCII), "GIF89a".getBytes(StandardCharsets.US_ASCII));
+
+    /** Number of leading bytes needed to recognise any signature. */
+    public static final int HEADER_SIZE = 16;
+
+    private final String description;
+    private final byte[][] magics;
+
+    FileSignature(String description, byte[]... magics) {
+        this.description = description;
+        this.magics = magics;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Detects the signature of a file.
+     *
+     * @param file the file to inspect
+     * @return the signature, or null if the file is unreadable or not recognised
+     */
+    public static FileSignature detect(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return detect(channel);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Detects the signature of an open file. Reads with an absolute position,
+     * so the channel's own position is left untouched.
+     *
+     * @param channel the channel to inspect
+     * @return the signature, or null if not recognised
+     * @throws IOException if the channel cannot be read
+     */
+    public static FileSignature detect(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        return detect(header);
+    }
+
+    /**
+     * Detects the signature of a file from its leading bytes.
+     *
+     * @param header the first bytes of the file, from index 0 up to the limit
+     * @return the signature, or null if not recognised
+     */
+    public static FileSignature detect(ByteBuffer header) {
+        for (FileSignature signature : values()) {
+            if (signature.matches(header)) {
+                return signature;
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(ByteBuffer header) {
+        for (byte[] magic : magics) {
+            if (startsWith(header, magic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(ByteBuffer header, byte[] magic) {
+        if (header.limit() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header.get(i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+package com.mobapp.inspector.fs;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * How a file is shown: which viewer opens it and which icon it gets in the
+ * folder tree.
+ * <p>
+ * The type is guessed from the file name until the file's leading bytes
+ * have been read; a recognised {@link FileSignature} then overrides the
+ * name, so extensionless SQLite databases, binary property lists saved as
+ * {@code .dat} and renamed images are shown as what they are.
+ */
+public enum FileType {
+    TEXT,
+    PLIST,
+    IMAGE,
+    DATABASE,
+    BINARY;
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "txt", "xml", "py", "java", "json", "html", "css", "js", "md", "log", "csv",
+            "properties", "yml", "yaml", "sh", "bat", "c", "cpp", "h");
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "bmp", "tiff", "webp", "svg", "ico");
+    private static final Set<String> DATABASE_EXTENSIONS = Set.of(
+            "db", "db3", "sqlite", "sqlite3");
+
+    /**
+     * Guesses the type of a file from its extension alone.
+     *
+     * @param fileName the file name
+     * @return the guessed type, {@link #BINARY} if the extension is not known
+     */
+    public static FileType fromName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return BINARY;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+        if (extension.equals("plist")) {
+            return PLIST;
+        } else if (TEXT_EXTENSIONS.contains(extension)) {
+            return TEXT;
+        } else if (IMAGE_EXTENSIONS.contains(extension)) {
+            return IMAGE;
+        } else if (DATABASE_EXTENSIONS.contains(extension)) {
+            return DATABASE;
+        }
+        return BINARY;
+    }
+
+    /**
+     * Determines the type of a file from its signature, falling back to its
+     * name when the signature is missing or too weak to overrule it.
+     *
+     * @param signature the file's signature, or null if none was recognised
+     * @param fileName the file name
+     * @return the type
+     */
+    public static FileType of(FileSignature signature, String fileName) {
+        if (signature == null) {
+            return fromName(fileName);
+        }
+        switch (signature) {
+            case SQLITE:
+                return DATABASE;
+            case BPLIST:
+                return PLIST;
+            case PNG:
+            case JPEG:
+            case GIF:
+                return IMAGE;
+            case ZIP:
+            case GZIP:
+            case ABX:
+                return BINARY;
+            default:
+                // Two bytes of zlib header also start ordinary text now and then
+                return fromName(fileName);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Determines the {@link FileType} of files from their leading bytes, shared
+ * by the folder tree and the content viewer.
+ * <p>
+ * Results are kept per path together with the modification time they were
+ * read at, so a file is only read again once it has changed. Listing a
+ * folder never reads its files: each {@link FileNode} starts with the type
+ * known for its modification time, or the one its name suggests, and is
+ * refined once the file has been read in the background.
+ */
+public final class FileTypeDetector {
+
+    private static final int MAX_ENTRIES = 100_000;
+
+    /**
+     * The type read from a file at a given modification time.
+     */
+    private static class Detected {
+        private final long lastModified;
+        private final FileType type;
+
+        Detected(long lastModified, FileType type) {
+            this.lastModified = lastModified;
+            this.type = type;
+        }
+    }
+
+    private static final Map<File, Detected> TYPES = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Detected> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private FileTypeDetector() {
+    }
+
+    /**
+     * Determines the type of a file, reading its leading bytes unless they
+     * were read since it was last modified.
+     *
+     * @param file the file
+     * @return the type
+     */
+    public static FileType detect(File file) {
+        return detect(file, file.lastModified());
+    }
+
+    /**
+     * Determines the type of a listed file, using the modification time read
+     * when its folder was listed.
+     *
+     * @param node the file
+     * @return the type
+     */
+    public static FileType detect(FileNode node) {
+        long lastModified = node.getLastModified() >= 0 ? node.getLastModified() : node.getFile().lastModified();
+        return detect(node.getFile(), lastModified);
+    }
+
+    private static FileType detect(File file, long lastModified) {
+        FileType cached = lookup(file, lastModified);
+        if (cached != null) {
+            return cached;
+        }
+
+        FileType type = FileType.of(FileSignature.detect(file), file.getName());
+        synchronized (TYPES) {
+            TYPES.put(file, new Detected(lastModified, type));
+        }
+        return type;
+    }
+
+    /**
+     * Returns the type of a file without reading it.
+     *
+     * @param file the file
+     * @param lastModified the file's modification time
+     * @param name the file's name
+     * @return the type read from the file if it is known for this
+     *         modification time, otherwise the type guessed from its name
+     */
+    static FileType getCachedType(File file, long lastModified, String name) {
+        FileType cached = lookup(file, lastModified);
+        return cached != null ? cached : FileType.fromName(name);
+    }
+
+    /**
+     * Checks whether the type of a listed file has been read already.
+     *
+     * @param node the file
+     * @return true if the type is known for the node's modification time
+     */
+    public static boolean isDetected(FileNode node) {
+        return lookup(node.getFile(), node.getLastModified()) != null;
+    }
+
+    private static FileType lookup(File file, long lastModified) {
+        synchronized (TYPES) {
+            Detected detected = TYPES.get(file);
+            return detected != null && detected.lastModified == lastModified ? detected.type : null;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Computes the total size and number of files below every folder of a tree,
+ * walking subtrees in parallel on a fork-join pool.
+ * <p>
+ * Each folder is reported as soon as its whole subtree is done, so results
+ * arrive bottom-up while the walk goes on. What a folder directly contains
+ * is cached by the folder's modification time, which changes whenever an
+ * entry is added, removed or renamed; walking the tree again only lists the
+ * folders that changed and stats the others. Files rewritten in place keep
+ * their folder's time, so their new size shows once their folder changes.
+ * <p>
+ * Hidden entries are counted, as they take up space like any other. Links
+ * are not followed, so nothing is counted twice and link cycles are harmless.
+ */
+public class FolderSizeCalculator {
+
+    /**
+     * The totals of a folder and everything below it. Instances are immutable.
+     */
+    public static class FolderSize {
+        private final long bytes;
+        private final long files;
+
+        FolderSize(long bytes, long files) {
+            this.bytes = bytes;
+            this.files = files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getFiles() {
+            return files;
+        }
+    }
+
+    /**
+     * Receives the totals of each folder as its subtree completes.
+     */
+    public interface Listener {
+
+        /**
+         * Called on a worker thread when a folder's totals are known.
+         *
+         * @param folder the folder
+         * @param size the totals of the folder and everything below it
+         */
+        void onFolderSize(File folder, FolderSize size);
+    }
+
+    /**
+     * What a folder directly contains, as of its modification time.
+     */
+    private static class FolderContents {
+        private final long lastModified;
+        private final long bytes;
+        private final long files;
+        private final List<String> subfolders;
+
+        FolderContents(long lastModified, long bytes, long files, List<String> subfolders) {
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+            this.files = files;
+            this.subfolders = subfolders;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Map<Path, FolderContents> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a calculator that uses one worker per available processor.
+     */
+    public FolderSizeCalculator() {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("folder-size-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Computes the totals of a folder and of every folder below it. Blocks
+     * until the walk is complete.
+     *
+     * @param root the folder to walk
+     * @param listener receives the totals of each folder as it completes
+     * @param token checked before each folder is read
+     * @return the totals of the root folder
+     * @throws CancellationException if the token is cancelled
+     */
+    public FolderSize calculate(File root, Listener listener, CancellationToken token) {
+        return pool.invoke(new FolderTask(root.toPath(), listener, token));
+    }
+
+    /**
+     * Reads one folder and forks a task for each of its subfolders.
+     */
+    private class FolderTask extends RecursiveTask<FolderSize> {
+        private final Path folder;
+        private final Listener listener;
+        private final CancellationToken token;
+
+        FolderTask(Path folder, Listener listener, CancellationToken token) {
+            this.folder = folder;
+            this.listener = listener;
+            this.token = token;
+        }
+
+        @Override
+        protected FolderSize compute() {
+            token.throwIfCancelled();
+
+            FolderContents contents;
+            try {
+                contents = read();
+            } catch (IOException e) {
+                // Unreadable folders count as empty
+                contents = new FolderContents(-1, 0, 0, List.of());
+            }
+
+            List<FolderTask> subtasks = new ArrayList<>(contents.subfolders.size());
+            for (String name : contents.subfolders) {
+                subtasks.add(new FolderTask(folder.resolve(name), listener, token));
+            }
+            ForkJoinTask.invokeAll(subtasks);
+
+            long bytes = contents.bytes;
+            long files = contents.files;
+            for (FolderTask subtask : subtasks) {
+                FolderSize size = subtask.join();
+                bytes += size.getBytes();
+                files += size.getFiles();
+            }
+
+            FolderSize size = new FolderSize(bytes, files);
+            listener.onFolderSize(folder.toFile(), size);
+            return size;
+        }
+
+        /**
+         * Returns what the folder directly contains, listing it only if it
+         * changed since it was last read.
+         *
+         * @return the folder's direct contents
+         * @throws IOException if the folder cannot be read
+         */
+        private FolderContents read() throws IOException {
+            long modified = Files.readAttributes(folder, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    .lastModifiedTime().toMillis();
+            FolderContents cached = cache.get(folder);
+            if (cached != null && cached.lastModified == modified) {
+                return cached;
+            }
+
+            long bytes = 0;
+            long files = 0;
+            List<String> subfolders = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        subfolders.add(entry.getFileName().toString());
+                    } else {
+                        bytes += attributes.size();
+                        files++;
+                    }
+                }
+            }
+
+            FolderContents contents = new FolderContents(modified, bytes, files, subfolders);
+            cache.put(folder, contents);
+            return contents;
+        }
+    }
+}
@@ -0,0 +1,706 @@
+package com.mobapp.inspector.fs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Persistent SHA-256 hashes of the files below a root folder, and the groups
+ * of files with identical contents among them.
+ * <p>
+ * Hashes are kept by relative path, size and modification time and saved
+ * with the other caches, so opening a dump again only hashes the files that
+ * changed. Finding duplicates reads as little as possible: only files that
+ * share their size with another file get a cheap pre-hash of their first
+ * and last blocks, and only files that share size and pre-hash are hashed in
+ * full. The remaining files can then be hashed at leisure with
+ * {@link #hashAll(CancellationToken, Listener)}, which works in batches so
+ * that a duplicate search started meanwhile only waits for the current batch.
+ * Hashes computed on demand by {@link #getSha256(File, CancellationToken)}
+ * are saved as well. One instance should be shared by everyone working on
+ * the same root, since each instance saves to the same cache file.
+ * <p>
+ * Files are read by a number of threads suited to the storage: one on a
+ * spinning disk, where parallel reads only add seeks, a few on a network
+ * share, where they hide latency, and one per processor otherwise.
+ */
+public class HashIndex {
+
+    private static final String CACHE_KIND = "content-hashes";
+    private static final int FORMAT_MAGIC = 0x48534831; // "HSH1"
+    private static final int PRE_HASH_BLOCK_SIZE = 16 * 1024;
+    private static final int READ_BLOCK_SIZE = 1024 * 1024;
+    private static final int NETWORK_READERS = 4;
+    private static final int BATCH_FILES = 1000;
+    private static final long BATCH_BYTES = 256L * 1024 * 1024;
+    private static final long SAVE_INTERVAL_MILLIS = 30_000;
+    private static final Set<String> NETWORK_FILE_SYSTEMS = Set.of(
+            "nfs", "nfs4", "cifs", "smbfs", "smb2", "smb3", "afpfs", "webdav", "fuse.sshfs");
+
+    private static final ThreadLocal<ByteBuffer> READ_BLOCKS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BLOCK_SIZE));
+
+    /**
+     * Files with identical contents. Instances are immutable.
+     */
+    public static class DuplicateGroup {
+        private final String sha256;
+        private final long size;
+        private final List<File> files;
+
+        DuplicateGroup(String sha256, long size, List<File> files) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public List<File> getFiles() {
+            return files;
+        }
+
+        /**
+         * Returns the space taken by all copies but one.
+         *
+         * @return the wasted bytes
+         */
+        public long getWastedBytes() {
+            return size * (files.size() - 1);
+        }
+    }
+
+    /**
+     * Receives the progress of hashing.
+     */
+    public interface Listener {
+
+        /**
+         * Called on a reader thread after each file is read.
+         *
+         * @param done the number of files read so far in this step
+         * @param total the number of files this step reads
+         */
+        void onProgress(long done, long total);
+    }
+
+    private final File root;
+    private final int readers;
+    // Held while the entries are refreshed, read in a batch or saved
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile List<DuplicateGroup> duplicates;
+    // Set when a hash has been computed but not saved yet
+    private volatile boolean dirty;
+    // Number of entries as loaded or last saved, to tell whether files came or went
+    private int loadedSize;
+    private long savedAt;
+
+    private HashIndex(File root) {
+        this.root = root;
+        this.readers = readersFor(root.toPath());
+    }
+
+    /**
+     * Opens the hashes of a root folder, loading the saved ones if any.
+     * Saved hashes are only used for files whose size and modification time
+     * still match.
+     *
+     * @param root the root folder
+     * @return the index
+     */
+    public static HashIndex open(File root) {
+        HashIndex index = new HashIndex(root);
+        try {
+            index.load();
+        } catch (IOException e) {
+            System.err.println("Could not load file hashes for " + root + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the groups of identical files found by the last call to
+     * {@link #updateDuplicates(CancellationToken, Listener)}.
+     *
+     * @return the groups, largest waste first, or null if not computed yet
+     */
+    public List<DuplicateGroup> getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Brings the index up to date with the folder and groups the files with
+     * identical contents, hashing only the files that may have a duplicate.
+     *
+     * @param token checked between files and between blocks of a file
+     * @param listener receives the progress, or null
+     * @return the groups, largest waste first
+     * @throws IOException if the hashes cannot be saved
+     * @throws CancellationException if the token is cancelled; the hashes computed so far are kept
+     */
+    public List<DuplicateGroup> updateDuplicates(CancellationToken token, Listener listener) throws IOException {
+        updateLock.lock();
+        try {
+            Map<String, Entry> current = refresh(token);
+            try {
+                // Only files that share their size can be duplicates; empty files are all alike
+                List<List<Entry>> sameSize = groupsOf(current.values(), entry -> entry.size);
+                List<Entry> needPreHash = new ArrayList<>();
+                for (List<Entry> group : sameSize) {
+                    for (Entry entry : group) {
+                        if (!entry.hasPreHash) {
+                            needPreHash.add(entry);
+                        }
+                    }
+                }
+                read(needPreHash, false, token, listener, new AtomicLong(), needPreHash.size());
+
+                List<List<Entry>> samePreHash = new ArrayList<>();
+                for (List<Entry> group : sameSize) {
+                    List<Entry> latest = new ArrayList<>();
+                    for (Entry entry : group) {
+                        latest.add(current.get(entry.path));
+                    }
+                    samePreHash.addAll(groupsOf(latest, entry -> entry.hasPreHash ? entry.preHash : null));
+                }
+                List<Entry> needHash = new ArrayList<>();
+                for (List<Entry> group : samePreHash) {
+                    for (Entry entry : group) {
+                        if (entry.sha256 == null) {
+                            needHash.add(entry);
+                        }
+                    }
+                }
+                read(needHash, true, token, listener, new AtomicLong(), needHash.size());
+
+                List<DuplicateGroup> groups = new ArrayList<>();
+                for (List<Entry> group : samePreHash) {
+                    List<Entry> latest = new ArrayList<>();
+                    for (Entry entry : group) {
+                        latest.add(current.get(entry.path));
+                    }
+                    for (List<Entry> same : groupsOf(latest, entry -> entry.sha256 != null ? HexFormat.of().formatHex(entry.sha256) : null)) {
+                        List<File> files = new ArrayList<>();
+                        for (Entry entry : same) {
+                            files.add(new File(root, entry.path));
+                        }
+                        files.sort(Comparator.comparing(File::getPath));
+                        groups.add(new DuplicateGroup(HexFormat.of().formatHex(same.get(0).sha256), same.get(0).size, files));
+                    }
+                }
+                groups.sort(Comparator.comparingLong(DuplicateGroup::getWastedBytes).reversed());
+                duplicates = groups;
+                return groups;
+            } finally {
+                if (dirty || current.size() != loadedSize) {
+                    save();
+                }
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Hashes every file below the root that has no up-to-date hash yet, for
+     * example to have all hashes at hand for a report.
+     *
+     * @param token checked between files and between blocks of a file
+     * @param listener receives the progress, or null
+     * @throws IOException if the hashes cannot be saved
+     * @throws CancellationException if the token is cancelled; the hashes computed so far are kept
+     */
+    public void hashAll(CancellationToken token, Listener listener) throws IOException {
+        List<Entry> needHash = new ArrayList<>();
+        updateLock.lock();
+        try {
+            Map<String, Entry> current = refresh(token);
+            for (Entry entry : current.values()) {
+                if (entry.sha256 == null) {
+                    needHash.add(entry);
+                }
+            }
+            if (dirty || current.size() != loadedSize) {
+                save();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+
+        // The lock is taken per batch, so a duplicate search never waits for more than one
+        AtomicLong done = new AtomicLong();
+        int next = 0;
+        while (next < needHash.size()) {
+            token.throwIfCancelled();
+            List<Entry> batch = new ArrayList<>();
+            long batchBytes = 0;
+            while (next < needHash.size() && batch.size() < BATCH_FILES && batchBytes < BATCH_BYTES) {
+                Entry entry = needHash.get(next++);
+                batch.add(entry);
+                batchBytes += entry.size;
+            }
+
+            updateLock.lock();
+            try {
+                // Skip files hashed or changed since the walk, for example by a duplicate search
+                List<Entry> pending = new ArrayList<>(batch.size());
+                for (Entry entry : batch) {
+                    Entry known = entries.get(entry.path);
+                    if (known != null && known.isSameFile(entry) && known.sha256 == null) {
+                        pending.add(known);
+                    }
+                }
+                try {
+                    read(pending, true, token, listener, done, needHash.size());
+                } finally {
+                    // Saved now and then rather than after every batch, and once at the end
+                    boolean finished = next >= needHash.size() || token.isCancelled();
+                    if (dirty && (finished || System.currentTimeMillis() - savedAt >= SAVE_INTERVAL_MILLIS)) {
+                        save();
+                    }
+                }
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file, from the index if it is up to date,
+     * otherwise by reading the file. Files below the root are added to the index.
+     *
+     * @param file the file
+     * @param token checked between blocks of the file
+     * @return the hash as lowercase hex
+     * @throws IOException if the file cannot be read
+     * @throws CancellationException if the token is cancelled
+     */
+    public String getSha256(File file, CancellationToken token) throws IOException {
+        Path path = file.toPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+
+        String relativePath = path.startsWith(root.toPath()) ? root.toPath().relativize(path).toString() : null;
+        Entry entry = relativePath != null ? entries.get(relativePath) : null;
+        if (entry != null && entry.size == size && entry.modified == modified && entry.sha256 != null) {
+            return HexFormat.of().formatHex(entry.sha256);
+        }
+
+        byte[] sha256 = sha256(path, token);
+        if (relativePath != null) {
+            entries.put(relativePath, entry != null && entry.size == size && entry.modified == modified
+                    ? entry.withSha256(sha256)
+                    : new Entry(relativePath, size, modified, false, 0, sha256));
+            dirty = true;
+            // A running update saves the hash when it is done
+            if (updateLock.tryLock()) {
+                try {
+                    save();
+                } finally {
+                    updateLock.unlock();
+                }
+            }
+        }
+        return HexFormat.of().formatHex(sha256);
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file without looking it up in or adding
+     * it to any index.
+     *
+     * @param file the file
+     * @param token checked between blocks of the file
+     * @return the hash as lowercase hex
+     * @throws IOException if the file cannot be read
+     * @throws CancellationException if the token is cancelled
+     */
+    public static String computeSha256(File file, CancellationToken token) throws IOException {
+        return HexFormat.of().formatHex(sha256(file.toPath(), token));
+    }
+
+    /**
+     * Walks the root and replaces the entries with the files found, keeping
+     * what is known about files whose size and modification time are unchanged.
+     *
+     * @param token checked for each folder
+     * @return the new entries, also installed as the index's entries
+     * @throws IOException if the root cannot be walked
+     */
+    private Map<String, Entry> refresh(CancellationToken token) throws IOException {
+        Map<String, Entry> previous = entries;
+        Map<String, Entry> next = new ConcurrentHashMap<>();
+        Path rootPath = root.toPath();
+
+        // Links are not followed, so every file is hashed once under its own path
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                token.throwIfCancelled();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String relativePath = rootPath.relativize(file).toString();
+                    long modified = attrs.lastModifiedTime().toMillis();
+                    Entry entry = previous.get(relativePath);
+                    if (entry == null || entry.size != attrs.size() || entry.modified != modified) {
+                        entry = new Entry(relativePath, attrs.size(), modified, false, 0, null);
+                    }
+                    next.put(relativePath, entry);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // Unreadable entries are left out
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        entries = next;
+        return next;
+    }
+
+    /**
+     * Reads a set of files on the reader threads, computing either their
+     * pre-hashes or their full hashes, and stores the results in the entries.
+     * A result is dropped if the file changed in the index meanwhile.
+     *
+     * @param pending the files to read
+     * @param full true for full hashes, false for pre-hashes
+     * @param token checked between files and between blocks of a file
+     * @param listener receives the progress, or null
+     * @param done the number of files read so far in this step, counted up
+     * @param total the number of files this step reads
+     * @throws CancellationException if the token is cancelled
+     */
+    private void read(List<Entry> pending, boolean full, CancellationToken token,
+                         Listener listener, AtomicLong done, long total) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Large files first, so one big file doesn't run alone at the end
+        pending.sort(Comparator.comparingLong((Entry entry) -> entry.size).reversed());
+        List<Callable<Void>> tasks = new ArrayList<>(pending.size());
+        for (Entry entry : pending) {
+            tasks.add(() -> {
+                if (token.isCancelled()) {
+                    return null;
+                }
+                Path path = root.toPath().resolve(entry.path);
+                try {
+                    byte[] sha256 = full ? sha256(path, token) : null;
+                    long preHash = full ? 0 : preHash(path, entry.size);
+                    entries.computeIfPresent(entry.path, (key, known) -> !known.isSameFile(entry) ? known
+                            : full ? known.withSha256(sha256) : known.withPreHash(preHash));
+                    dirty = true;
+                } catch (IOException e) {
+                    // Files that cannot be read keep no hash and are never reported as duplicates
+                } catch (CancellationException e) {
+                    return null;
+                }
+                if (listener != null) {
+                    listener.onProgress(done.incrementAndGet(), total);
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(readers, runnable -> {
+            Thread thread = new Thread(runnable, "content-hash");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try {
+            pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } finally {
+            pool.shutdownNow();
+        }
+        token.throwIfCancelled();
+    }
+
+    /**
+     * Groups entries by a key, keeping only the groups of at least two.
+     *
+     * @param entries the entries
+     * @param key the key of an entry, or null to leave the entry out
+     * @return the groups
+     */
+    private static <K> List<List<Entry>> groupsOf(Iterable<Entry> entries, Function<Entry, K> key) {
+        Map<K, List<Entry>> groups = new HashMap<>();
+        for (Entry entry : entries) {
+            K k = key.apply(entry);
+            if (k != null && entry.size > 0) {
+                groups.computeIfAbsent(k, unused -> new ArrayList<>(2)).add(entry);
+            }
+        }
+        List<List<Entry>> result = new ArrayList<>();
+        for (List<Entry> group : groups.values()) {
+            if (group.size() > 1) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes a cheap fingerprint of a file from its first and last blocks.
+     *
+     * @param path the file
+     * @param size the file's size
+     * @return the fingerprint
+     * @throws IOException if the file cannot be read
+     */
+    private static long preHash(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(PRE_HASH_BLOCK_SIZE);
+            CRC32C head = new CRC32C();
+            head.update(readAt(channel, block, 0));
+            CRC32C tail = new CRC32C();
+            tail.update(readAt(channel, block, Math.max(0, size - PRE_HASH_BLOCK_SIZE)));
+            return (head.getValue() << 32) | tail.getValue();
+        }
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, ByteBuffer block, long position) throws IOException {
+        block.clear();
+        while (block.hasRemaining() && channel.read(block, position + block.position()) > 0) {
+            // Keep reading until the block is full or the file ends
+        }
+        return block.flip();
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file, streaming it in large blocks.
+     *
+     * @param path the file
+     * @param token checked between blocks
+     * @return the hash
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] sha256(Path path, CancellationToken token) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer block = READ_BLOCKS.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (true) {
+                token.throwIfCancelled();
+                block.clear();
+                if (channel.read(block) < 0) {
+                    break;
+                }
+                digest.update(block.flip());
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Chooses how many threads read files in parallel on the storage that
+     * holds a folder.
+     *
+     * @param path the folder
+     * @return the number of reader threads
+     */
+    private static int readersFor(Path path) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        try {
+            FileStore store = Files.getFileStore(path);
+            if (NETWORK_FILE_SYSTEMS.contains(store.type().toLowerCase(Locale.ROOT))) {
+                return Math.min(NETWORK_READERS, processors);
+            }
+            if (isRotational(path)) {
+                return 1;
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            // Storage that cannot be inspected is assumed to be solid state
+        }
+        return processors;
+    }
+
+    /**
+     * Checks whether a folder is on a spinning disk. Only Linux tells, through
+     * the rotational flag of the block device in sysfs.
+     *
+     * @param path the folder
+     * @return true if the folder is known to be on a spinning disk
+     * @throws IOException if the device cannot be inspected
+     */
+    private static boolean isRotational(Path path) throws IOException {
+        long device = (Long) Files.getAttribute(path, "unix:dev");
+        long major = ((device >>> 8) & 0xFFF) | ((device >>> 32) & 0xFFFFF000L);
+        long minor = (device & 0xFF) | ((device >>> 12) & 0xFFFFFF00L);
+        Path block = Paths.get("/sys/dev/block/" + major + ":" + minor);
+        Path flag = block.resolve("queue/rotational");
+        if (!Files.exists(flag)) {
+            // A partition; the flag belongs to its disk
+            flag = block.resolve("../queue/rotational");
+        }
+        return Files.exists(flag) && Files.readString(flag).trim().equals("1");
+    }
+
+    /**
+     * Loads the saved hashes for this root, if any.
+     *
+     * @throws IOException if the saved hashes cannot be read
+     */
+    private void load() throws IOException {
+        Path path = CacheDirectory.forRoot(CACHE_KIND, root);
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+
+        Map<String, Entry> loaded = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != FORMAT_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String relativePath = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                boolean hasPreHash = in.readBoolean();
+                long preHash = in.readLong();
+                byte[] sha256 = null;
+                if (in.readBoolean()) {
+                    sha256 = new byte[32];
+                    in.readFully(sha256);
+                }
+                loaded.put(relativePath, new Entry(relativePath, size, modified, hasPreHash, preHash, sha256));
+            }
+        }
+        entries = loaded;
+        loadedSize = loaded.size();
+    }
+
+    /**
+     * Writes the hashes to their cache file, replacing the previous one atomically.
+     *
+     * @throws IOException if the hashes cannot be written
+     */
+    private void save() throws IOException {
+        Path path = CacheDirectory.forRoot(CACHE_KIND, root);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        dirty = false;
+        List<Entry> snapshot = new ArrayList<>(entries.values());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeBoolean(entry.hasPreHash);
+                out.writeLong(entry.preHash);
+                out.writeBoolean(entry.sha256 != null);
+                if (entry.sha256 != null) {
+                    out.write(entry.sha256);
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loadedSize = snapshot.size();
+        savedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * What is known about one file at a given size and modification time.
+     */
+    private static class Entry {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final boolean hasPreHash;
+        private final long preHash;
+        private final byte[] sha256;
+
+        Entry(String path, long size, long modified, boolean hasPreHash, long preHash, byte[] sha256) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.hasPreHash = hasPreHash;
+            this.preHash = preHash;
+            this.sha256 = sha256;
+        }
+
+        Entry withPreHash(long newPreHash) {
+            return new Entry(path, size, modified, true, newPreHash, sha256);
+        }
+
+        Entry withSha256(byte[] newSha256) {
+            return new Entry(path, size, modified, hasPreHash, preHash, newSha256);
+        }
+
+        boolean isSameFile(Entry other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.mobapp.inspector.fs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * A text file of any size, memory-mapped and read one line at a time.
+ * <p>
+ * Opening a file only maps it; the operating system pages it in as lines
+ * are read. Lines are found by {@link #index(CancellationToken, Listener)},
+ * usually on a background thread, which records where every
+ * {@value #CHECKPOINT_INTERVAL}th line starts. Reading a line scans forward
+ * from the checkpoint before it, so the index takes a few bytes per
+ * thousand lines even for files with hundreds of millions of lines, and
+ * lines that are already indexed can be read while indexing goes on.
+ * <p>
+ * Lines end at {@code \n}, with a {@code \r} before it dropped, and are
+ * decoded as UTF-8. The file is expected not to shrink while it is open.
+ */
+public class MappedTextFile {
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final int MAX_LINE_BYTES = 16 * 1024;
+    private static final int PROGRESS_INTERVAL_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Receives the progress of indexing.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the indexing thread as lines are found.
+         *
+         * @param lines the number of lines that can be read so far
+         * @param complete true once the whole file is indexed
+         */
+        void onLinesIndexed(long lines, boolean complete);
+    }
+
+    private final File file;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+    private volatile long[] checkpoints = new long[1024];
+    private volatile long lineCount;
+    private volatile boolean indexComplete;
+
+    private MappedTextFile(File file, long size, MappedByteBuffer[] segments) {
+        this.file = file;
+        this.size = size;
+        this.segments = segments;
+    }
+
+    /**
+     * Maps a file. Nothing is read until lines are indexed or read.
+     *
+     * @param file the file
+     * @return the mapped file, with no lines indexed yet
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedTextFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            // A single mapping cannot exceed 2 GB, so large files are mapped in segments
+            int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+            }
+            return new MappedTextFile(file, size, segments);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of lines that can be read so far.
+     *
+     * @return the number of lines indexed
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    /**
+     * Finds where the lines of the file start. Lines become readable as
+     * they are found. Call once.
+     *
+     * @param token checked regularly; indexing stops when it is cancelled
+     * @param listener receives the progress, or null
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public void index(CancellationToken token, Listener listener) {
+        long lines = 0;
+        long[] marks = checkpoints;
+        long nextProgress = PROGRESS_INTERVAL_BYTES;
+        long lineStart = 0;
+
+        while (lineStart < size) {
+            if (lines % CHECKPOINT_INTERVAL == 0) {
+                int slot = (int) (lines / CHECKPOINT_INTERVAL);
+                if (slot == marks.length) {
+                    marks = Arrays.copyOf(marks, marks.length * 2);
+                    checkpoints = marks;
+                }
+                marks[slot] = lineStart;
+            }
+            long end = indexOfNewline(lineStart);
+            lines++;
+            lineStart = end + 1;
+
+            // Publish the lines found so far; the write to lineCount makes the checkpoints visible
+            if (lineStart >= nextProgress) {
+                token.throwIfCancelled();
+                lineCount = lines;
+                if (listener != null) {
+                    listener.onLinesIndexed(lines, false);
+                }
+                nextProgress = lineStart + PROGRESS_INTERVAL_BYTES;
+            }
+        }
+
+        lineCount = lines;
+        indexComplete = true;
+        if (listener != null) {
+            listener.onLinesIndexed(lines, true);
+        }
+    }
+
+    /**
+     * Reads one line. Very long lines are cut short.
+     *
+     * @param line the line number, from 0, below {@link #getLineCount()}
+     * @return the line without its line ending
+     */
+    public String getLine(long line) {
+        return getLines(line, 1).get(0);
+    }
+
+    /**
+     * Reads consecutive lines, scanning from the nearest checkpoint only once.
+     * Very long lines are cut short.
+     *
+     * @param first the first line number, from 0, below {@link #getLineCount()}
+     * @param count the number of lines to read
+     * @return the lines without their line endings; fewer if the file ends first
+     */
+    public List<String> getLines(long first, int count) {
+        if (first < 0 || first >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + first + " of " + lineCount);
+        }
+
+        long position = lineStart(first);
+        List<String> lines = new ArrayList<>(count);
+        while (lines.size() < count && position < size) {
+            long end = indexOfNewline(position);
+            lines.add(decode(position, end));
+            position = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the next line containing some text, ignoring the case of ASCII letters.
+     *
+     * @param text the text to find
+     * @param fromLine the first line to look in, below {@link #getLineCount()}
+     * @param token checked regularly
+     * @return the number of the first line at or after {@code fromLine} that
+     *         contains the text, or -1 if there is none
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public long find(String text, long fromLine, CancellationToken token) {
+        byte[] needle = text.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        if (needle.length == 0) {
+            return fromLine;
+        }
+
+        long line = fromLine;
+        long nextCheck = 0;
+        long last = size - needle.length;
+        for (long position = lineStart(fromLine); position <= last; position++) {
+            if (position >= nextCheck) {
+                token.throwIfCancelled();
+                nextCheck = position + PROGRESS_INTERVAL_BYTES;
+            }
+            byte b = byteAt(position);
+            if (b == '\n') {
+                line++;
+            } else if (toLowerCase(b) == needle[0] && matches(needle, position)) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] needle, long position) {
+        for (int i = 1; i < needle.length; i++) {
+            if (toLowerCase(byteAt(position + i)) != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Finds where an indexed line starts.
+     *
+     * @param line the line number
+     * @return the offset of the line's first byte
+     */
+    private long lineStart(long line) {
+        long position = checkpoints[(int) (line / CHECKPOINT_INTERVAL)];
+        for (long skip = line % CHECKPOINT_INTERVAL; skip > 0; skip--) {
+            position = indexOfNewline(position) + 1;
+        }
+        return position;
+    }
+
+    /**
+     * Finds the end of the line that contains a position.
+     *
+     * @param from the position to look from
+     * @return the offset of the next {@code \n}, or the file size if there is none
+     */
+    private long indexOfNewline(long from) {
+        long position = from;
+        while (position < size) {
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int offset = (int) (position & (SEGMENT_SIZE - 1));
+            int limit = segment.limit();
+            for (int i = offset; i < limit; i++) {
+                if (segment.get(i) == '\n') {
+                    return position + (i - offset);
+                }
+            }
+            position += limit - offset;
+        }
+        return size;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Decodes a line, dropping a trailing {@code \r} and cutting very long lines short.
+     *
+     * @param start the offset of the line's first byte
+     * @param end the offset of its line ending
+     * @return the line
+     */
+    private String decode(long start, long end) {
+        if (end > start && byteAt(end - 1) == '\r') {
+            end--;
+        }
+        boolean cut = end - start > MAX_LINE_BYTES;
+        int length = (int) Math.min(end - start, MAX_LINE_BYTES);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = byteAt(start + i);
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return cut ? text + " … (" + String.format("%,d", end - start - length) + " more bytes)" : text;
+    }
+}
@@ -0,0 +1,159 @@
+package com.mobapp.inspector.search;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Case-insensitive Aho-Corasick automaton over bytes.
+ * <p>
+ * All patterns are matched in a single pass: the automaton is compiled to a
+ * dense transition table, so each input byte costs one array lookup no
+ * matter how many patterns there are. ASCII letters are folded into the
+ * table itself, so the input never needs to be lowercased. The automaton is
+ * immutable; scan state is a plain int owned by the caller, which lets a
+ * scan continue seamlessly from one buffer to the next.
+ */
+public class AhoCorasick {
+
+    private static final int ALPHABET = 256;
+
+    /**
+     * Receives each pattern occurrence found during a scan.
+     */
+    public interface MatchHandler {
+
+        /**
+         * Called for every occurrence of a pattern.
+         *
+         * @param patternId the index of the pattern in the list it was built from
+         * @param startOffset the offset of the first byte of the occurrence
+         */
+        void onMatch(int patternId, long startOffset);
+    }
+
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    /**
+     * Builds an automaton for the given patterns.
+     *
+     * @param patterns the byte patterns, none of which may be empty
+     */
+    public AhoCorasick(List<byte[]> patterns) {
+        int capacity = 1;
+        for (byte[] pattern : patterns) {
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+            capacity += pattern.length;
+        }
+
+        int[] delta = new int[capacity * ALPHABET];
+        Arrays.fill(delta, -1);
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        stateOutputs.add(new ArrayList<>());
+        patternLengths = new int[patterns.size()];
+
+        // Build the trie over folded bytes
+        int states = 1;
+        for (int id = 0; id < patterns.size(); id++) {
+            byte[] pattern = patterns.get(id);
+            patternLengths[id] = pattern.length;
+            int state = 0;
+            for (byte b : pattern) {
+                int index = state * ALPHABET + (ByteMatcher.fold(b) & 0xFF);
+                if (delta[index] == -1) {
+                    delta[index] = states++;
+                    stateOutputs.add(new ArrayList<>());
+                }
+                state = delta[index];
+            }
+            stateOutputs.get(state).add(id);
+        }
+
+        // Compute failure links breadth-first and complete the transition table
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = delta[c];
+            if (next == -1) {
+                delta[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int c = 0; c < ALPHABET; c++) {
+                int index = state * ALPHABET + c;
+                int next = delta[index];
+                int fallback = delta[fail[state] * ALPHABET + c];
+                if (next == -1) {
+                    delta[index] = fallback;
+                } else {
+                    fail[next] = fallback;
+                    stateOutputs.get(next).addAll(stateOutputs.get(fallback));
+                    queue.add(next);
+                }
+            }
+        }
+
+        // Uppercase ASCII input behaves exactly like its lowercase counterpart
+        for (int state = 0; state < states; state++) {
+            for (int c = 'A'; c <= 'Z'; c++) {
+                delta[state * ALPHABET + c] = delta[state * ALPHABET + c + ('a' - 'A')];
+            }
+        }
+
+        transitions = Arrays.copyOf(delta, states * ALPHABET);
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            outputs[state] = stateOutputs.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Returns the state to start a new scan from.
+     *
+     * @return the initial state
+     */
+    public int initialState() {
+        return 0;
+    }
+
+    public int getPatternCount() {
+        return patternLengths.length;
+    }
+
+    /**
+     * Feeds a range of a buffer through the automaton.
+     *
+     * @param buffer the buffer to scan, read with absolute gets
+     * @param from the first index to scan
+     * @param to the index after the last byte to scan
+     * @param state the state returned by the previous call, or the initial state
+     * @param baseOffset the stream offset of index 0 of the buffer
+     * @param handler the handler to receive occurrences
+     * @return the state to continue the scan from
+     */
+    public int scan(ByteBuffer buffer, int from, int to, int state, long baseOffset, MatchHandler handler) {
+        int[] delta = transitions;
+        for (int i = from; i < to; i++) {
+            state = delta[state * ALPHABET + (buffer.get(i) & 0xFF)];
+            int[] matched = outputs[state];
+            if (matched.length > 0) {
+                long end = baseOffset + i + 1;
+                for (int id : matched) {
+                    handler.onMatch(id, end - patternLengths[id]);
+                }
+            }
+        }
+        return state;
+    }
+}
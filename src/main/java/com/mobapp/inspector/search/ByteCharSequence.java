@@ -0,0 +1,44 @@
+package com.mobapp.inspector.search;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only ISO-8859-1 view of a byte buffer range as a {@link CharSequence}.
+ * Lets regular expressions run directly over file windows without decoding
+ * or copying them into Strings.
+ */
+final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    ByteCharSequence(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(start + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new ByteCharSequence(buffer, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = charAt(i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,268 @@
+package com.mobapp.inspector.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Case-insensitive Boyer-Moore-Horspool matcher working directly on bytes.
+ * <p>
+ * ASCII letters are folded through a lookup table, so no lowercase copies of
+ * the data are ever made. Several patterns, such as the encodings of one term
+ * in different character sets, can be searched for in the same pass: the shift
+ * table is built over the shortest pattern length (Set-Horspool), and each
+ * candidate alignment is verified against every pattern. Files are scanned
+ * through memory-mapped windows, and streams through a reused buffer, with
+ * consecutive windows overlapping by the longest pattern length, so matches
+ * spanning a window boundary are found exactly once.
+ */
+public class ByteMatcher {
+
+    private static final byte[] FOLD = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            FOLD[i] = (byte) ((i >= 'A' && i <= 'Z') ? i + ('a' - 'A') : i);
+        }
+    }
+
+    /**
+     * Receives each match found in a file.
+     */
+    public interface MatchHandler {
+
+        /**
+         * Called for every match, in file order.
+         *
+         * @param window the buffer the match was found in
+         * @param index the index of the first matching byte in the window
+         * @param fileOffset the offset of the first matching byte in the file
+         * @param patternIndex the index of the pattern that matched
+         * @return true to continue scanning, false to stop
+         */
+        boolean onMatch(ByteBuffer window, int index, long fileOffset, int patternIndex);
+    }
+
+    private final byte[][] patterns;
+    private final int minLength;
+    private final int maxLength;
+    private final int[] shift = new int[256];
+
+    /**
+     * Creates a matcher for a single pattern. The pattern is folded to lowercase.
+     *
+     * @param pattern the bytes to search for, must not be empty
+     */
+    public ByteMatcher(byte[] pattern) {
+        this(List.of(pattern));
+    }
+
+    /**
+     * Creates a matcher that finds any of several patterns. The patterns are
+     * folded to lowercase. When more than one pattern matches at the same
+     * position, the one listed first is reported.
+     *
+     * @param patterns the byte patterns to search for, none of which may be empty
+     */
+    public ByteMatcher(List<byte[]> patterns) {
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+
+        this.patterns = new byte[patterns.size()][];
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int p = 0; p < patterns.size(); p++) {
+            byte[] pattern = patterns.get(p);
+            if (pattern.length == 0) {
+                throw new IllegalArgumentException("Pattern must not be empty");
+            }
+            this.patterns[p] = new byte[pattern.length];
+            for (int i = 0; i < pattern.length; i++) {
+                this.patterns[p][i] = fold(pattern[i]);
+            }
+            min = Math.min(min, pattern.length);
+            max = Math.max(max, pattern.length);
+        }
+        this.minLength = min;
+        this.maxLength = max;
+
+        // Shift on the last byte of the shortest-pattern window, safe for every pattern's prefix
+        Arrays.fill(shift, minLength);
+        for (byte[] pattern : this.patterns) {
+            for (int i = 0; i < minLength - 1; i++) {
+                int b = pattern[i] & 0xFF;
+                shift[b] = Math.min(shift[b], minLength - 1 - i);
+            }
+        }
+    }
+
+    /**
+     * Creates a matcher for the UTF-8 encoding of a search term.
+     *
+     * @param text the text to search for
+     * @return the matcher
+     */
+    public static ByteMatcher forText(String text) {
+        return new ByteMatcher(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the length of the first pattern.
+     *
+     * @return the pattern length in bytes
+     */
+    public int length() {
+        return patterns[0].length;
+    }
+
+    /**
+     * Returns the length of one of the patterns.
+     *
+     * @param patternIndex the index of the pattern
+     * @return the pattern length in bytes
+     */
+    public int length(int patternIndex) {
+        return patterns[patternIndex].length;
+    }
+
+    /**
+     * Folds a byte to lowercase if it is an ASCII letter.
+     *
+     * @param b the byte
+     * @return the folded byte
+     */
+    static byte fold(byte b) {
+        return FOLD[b & 0xFF];
+    }
+
+    /**
+     * Finds the first match that lies entirely inside the given range of a buffer.
+     * Uses absolute gets only, so the buffer's position and limit are untouched.
+     *
+     * @param buffer the buffer to search
+     * @param from the first index to consider
+     * @param to the index after the last byte to consider
+     * @return the index of the first match, or -1 if there is none
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        int last = minLength - 1;
+        int i = from;
+
+        while (i <= to - minLength) {
+            if (matchAt(buffer, i, to) >= 0) {
+                return i;
+            }
+            i += shift[FOLD[buffer.get(i + last) & 0xFF] & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Returns which pattern, if any, matches at a position.
+     *
+     * @param buffer the buffer to check
+     * @param index the position of the first byte of the candidate match
+     * @param to the index after the last byte that may be part of the match
+     * @return the index of the first pattern that matches, or -1 if none does
+     */
+    public int matchAt(ByteBuffer buffer, int index, int to) {
+        for (int p = 0; p < patterns.length; p++) {
+            byte[] pattern = patterns[p];
+            if (index + pattern.length > to) {
+                continue;
+            }
+            int j = pattern.length - 1;
+            while (j >= 0 && FOLD[buffer.get(index + j) & 0xFF] == pattern[j]) {
+                j--;
+            }
+            if (j < 0) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans a whole file channel and reports every match to the handler.
+     *
+     * @param channel the channel to scan
+     * @param token checked between windows
+     * @param handler the handler to receive matches
+     * @return the number of matches found
+     * @throws IOException if the channel cannot be read or mapped
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public long findAll(FileChannel channel, CancellationToken token, MatchHandler handler) throws IOException {
+        long size = channel.size();
+        if (size < minLength) {
+            return 0;
+        }
+
+        ScanState state = new ScanState();
+        // Overlap consecutive windows so matches across the boundary are seen, along with
+        // the byte that follows them
+        FileWindows.forEach(channel, maxLength, token, (window, baseOffset, last) -> {
+            scanWindow(window, baseOffset, last, handler, state);
+            return !state.stopped;
+        });
+        return state.matches;
+    }
+
+    /**
+     * Scans a stream to its end and reports every match to the handler.
+     *
+     * @param in the stream to scan, left open
+     * @param token checked between windows
+     * @param handler the handler to receive matches; offsets are relative to the start of the stream
+     * @return the number of matches found
+     * @throws IOException if the stream cannot be read
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public long findAll(InputStream in, CancellationToken token, MatchHandler handler) throws IOException {
+        ScanState state = new ScanState();
+        FileWindows.forEach(in, maxLength, token, (window, baseOffset, last) -> {
+            scanWindow(window, baseOffset, last, handler, state);
+            return !state.stopped;
+        });
+        return state.matches;
+    }
+
+    /**
+     * Reports every match inside one window. Matches starting in the overlap at
+     * the end of a window are left to the next window, which sees them in full,
+     * so no match is reported twice.
+     *
+     * @param window the window to scan, from index 0 up to its limit
+     * @param baseOffset the file offset of the window's first byte
+     * @param last whether this is the final window of the file
+     * @param handler the handler to receive matches
+     * @param state the running match count and stop flag
+     */
+    private void scanWindow(ByteBuffer window, long baseOffset, boolean last, MatchHandler handler,
+                            ScanState state) {
+        int length = window.limit();
+        int reportLimit = last ? length : length - maxLength;
+        int index = indexOf(window, 0, length);
+        while (index >= 0 && index < reportLimit) {
+            state.matches++;
+            if (!handler.onMatch(window, index, baseOffset + index, matchAt(window, index, length))) {
+                state.stopped = true;
+                break;
+            }
+            index = indexOf(window, index + 1, length);
+        }
+    }
+
+    /**
+     * Progress of one scan across its windows.
+     */
+    private static class ScanState {
+        private long matches;
+        private boolean stopped;
+    }
+}
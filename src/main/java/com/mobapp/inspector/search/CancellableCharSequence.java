@@ -0,0 +1,49 @@
+package com.mobapp.inspector.search;
+
+/**
+ * View of a character sequence that checks a cancellation token while a
+ * regular expression reads it.
+ * <p>
+ * {@link java.util.regex.Matcher} has no way to be interrupted, so a pattern
+ * that backtracks catastrophically on one input would otherwise run until
+ * it finishes. Every character the matcher reads goes through
+ * {@link #charAt(int)}, which checks the token every few thousand reads and
+ * aborts the match with a {@link java.util.concurrent.CancellationException}.
+ * Instances are not thread-safe.
+ */
+final class CancellableCharSequence implements CharSequence {
+    // Check the token once every 65536 reads
+    private static final int CHECK_MASK = 0xFFFF;
+
+    private final CharSequence text;
+    private final CancellationToken token;
+    private int reads;
+
+    CancellableCharSequence(CharSequence text, CancellationToken token) {
+        this.text = text;
+        this.token = token;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ((++reads & CHECK_MASK) == 0) {
+            token.throwIfCancelled();
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new CancellableCharSequence(text.subSequence(from, to), token);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.mobapp.inspector.search;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation flag shared by everything working on behalf of
+ * one request, such as one search generation.
+ * <p>
+ * Long-running work checks the token at natural boundaries (per directory,
+ * per file, per mapped window, every few thousand lines or SQLite opcodes)
+ * and stops as soon as it is cancelled. A new token is created for every
+ * request, so a cancelled token also marks all results produced under it
+ * as stale.
+ */
+public class CancellationToken {
+
+    /** A token that is never cancelled, for work that must always complete. */
+    public static final CancellationToken NONE = new CancellationToken() {
+        @Override
+        public void cancel() {
+            // The shared token can never be cancelled
+        }
+    };
+
+    private volatile boolean cancelled;
+
+    /**
+     * Requests cancellation. Work under this token stops at its next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Aborts the current operation if cancellation was requested.
+     *
+     * @throws CancellationException if the token has been cancelled
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+}
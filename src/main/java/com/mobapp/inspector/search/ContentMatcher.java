@@ -0,0 +1,522 @@
+package com.mobapp.inspector.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import com.mobapp.inspector.fs.FileSignature;
+
+/**
+ * Matches a case-insensitive search term against the contents of a single file.
+ * Binary files are searched for the UTF-8, UTF-16LE and UTF-16BE encodings of
+ * the term in a single pass, and each match is labelled with its encoding.
+ * SQLite databases are recognised by their header and queried through a
+ * {@link DatabaseSearcher} instead. ZIP archives, including APK, IPA and JAR
+ * files, are searched entry by entry as the entries are inflated, descending
+ * into nested archives up to a fixed depth; nothing is extracted to disk.
+ * Binary property lists and Android binary XML are decoded by a
+ * {@link FormatDecoder} and matched string by string, with each hit reported
+ * at its key path, and gzip or zlib data is searched after inflating.
+ * Instances hold no per-file state and may be shared between search workers.
+ */
+public class ContentMatcher implements FileMatcher<SearchResult> {
+
+    private static final int MAX_MATCHES_PER_FILE = 10;
+    private static final int MAX_RECORDED_OFFSETS = 100_000;
+    // How far to follow a UTF-16 run when deciding its byte order
+    private static final int MAX_RUN_WALK = 4096;
+    private static final int CANCELLATION_CHECK_LINES = 4096;
+    // Larger text files are scanned in windows like binary files, so memory stays constant
+    private static final long MAX_LINE_SEARCH_SIZE = 10 * 1024 * 1024;
+    // Archives nested deeper than this are searched as opaque bytes
+    private static final int MAX_ARCHIVE_DEPTH = 3;
+    private static final String ENTRY_SEPARATOR = "!/";
+
+    private final String searchText;
+    private final ByteMatcher byteMatcher;
+    // Encoding of each matcher pattern; null for the pattern shared by both UTF-16 byte orders
+    private final TextEncoding[] patternEncodings;
+    private final Predicate<File> textFilePredicate;
+    private final DatabaseSearcher databaseSearcher;
+    private final FormatDecoder formatDecoder;
+
+    /**
+     * Creates a matcher for the given search term.
+     *
+     * @param searchText the text to search for
+     * @param textFilePredicate decides whether a file is searched line by line as text
+     */
+    public ContentMatcher(String searchText, Predicate<File> textFilePredicate) {
+        this(searchText, textFilePredicate, new FormatDecoder());
+    }
+
+    /**
+     * Creates a matcher for the given search term that shares decoded files with other searches.
+     *
+     * @param searchText the text to search for
+     * @param textFilePredicate decides whether a file is searched line by line as text
+     * @param formatDecoder decodes and caches structured files
+     */
+    public ContentMatcher(String searchText, Predicate<File> textFilePredicate, FormatDecoder formatDecoder) {
+        this.searchText = searchText.toLowerCase();
+        this.textFilePredicate = textFilePredicate;
+        this.databaseSearcher = new DatabaseSearcher(this.searchText);
+        this.formatDecoder = formatDecoder;
+
+        List<byte[]> patterns = new ArrayList<>();
+        List<TextEncoding> encodings = new ArrayList<>();
+        byte[] utf8 = this.searchText.getBytes(StandardCharsets.UTF_8);
+        patterns.add(utf8);
+        encodings.add(utf8.length == this.searchText.length() ? TextEncoding.ASCII : TextEncoding.UTF_8);
+
+        // A single character in UTF-16 is indistinguishable from noise, so only longer terms get wide patterns
+        if (this.searchText.length() >= 2) {
+            if (this.searchText.chars().allMatch(c -> c < 0x100)) {
+                // With all high bytes zero, UTF-16LE without its final NUL equals UTF-16BE without
+                // its first NUL, so one pattern finds both and the byte order is decided per match
+                byte[] wide = new byte[this.searchText.length() * 2 - 1];
+                for (int i = 0; i < this.searchText.length(); i++) {
+                    wide[i * 2] = (byte) this.searchText.charAt(i);
+                }
+                patterns.add(wide);
+                encodings.add(null);
+            } else {
+                patterns.add(this.searchText.getBytes(StandardCharsets.UTF_16LE));
+                encodings.add(TextEncoding.UTF_16LE);
+                patterns.add(this.searchText.getBytes(StandardCharsets.UTF_16BE));
+                encodings.add(TextEncoding.UTF_16BE);
+            }
+        }
+
+        this.byteMatcher = new ByteMatcher(patterns);
+        this.patternEncodings = encodings.toArray(new TextEncoding[0]);
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    /**
+     * Checks whether files with a signature are searched in a decoded form, so
+     * their raw bytes do not tell whether they can match.
+     *
+     * @param signature the signature of a file, or null
+     * @return true for databases, archives and the formats of {@link FormatDecoder}
+     */
+    static boolean isSearchedDecoded(FileSignature signature) {
+        return signature == FileSignature.SQLITE || signature == FileSignature.ZIP
+            || FormatDecoder.canDecode(signature);
+    }
+
+    /**
+     * Searches for the search text in a file.
+     *
+     * @param file the file to search
+     * @param token the token of the search
+     * @return the search result, or null if the file does not match
+     * @throws IOException if the file cannot be read
+     * @throws java.util.concurrent.CancellationException if the search is cancelled mid-file
+     */
+    @Override
+    public SearchResult match(File file, CancellationToken token) throws IOException {
+        // Sniff first: SharedPreferences files are named .xml but may be binary XML
+        FileSignature signature = FileSignature.detect(file);
+        if (signature == null && textFilePredicate.test(file) && file.length() < MAX_LINE_SEARCH_SIZE) {
+            return matchText(file, token);
+        }
+        return matchBinary(file, signature, token);
+    }
+
+    /**
+     * Searches a text file line by line.
+     *
+     * @param file the file to search
+     * @param token checked every few thousand lines
+     * @return the matching lines prefixed with their line numbers, or null if none match
+     * @throws IOException if the file cannot be read
+     */
+    private SearchResult matchText(File file, CancellationToken token) throws IOException {
+        List<String> matchingLines = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), detectCharset(file)))) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber % CANCELLATION_CHECK_LINES == 0) {
+                    token.throwIfCancelled();
+                }
+
+                if (line.toLowerCase().contains(searchText)) {
+                    matchingLines.add("Line " + lineNumber + ": " + line.trim());
+
+                    // Limit the number of matches per file to avoid overwhelming the UI
+                    if (matchingLines.size() >= MAX_MATCHES_PER_FILE) {
+                        matchingLines.add("... (more matches found)");
+                        break;
+                    }
+                }
+            }
+        }
+
+        return matchingLines.isEmpty() ? null : new SearchResult(file, matchingLines);
+    }
+
+    /**
+     * Picks the charset to read a text file with, honouring a UTF-16 byte order mark.
+     *
+     * @param file the text file
+     * @return UTF-16 if the file starts with a byte order mark, otherwise the platform default
+     * @throws IOException if the file cannot be read
+     */
+    private static Charset detectCharset(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            int b0 = in.read();
+            int b1 = in.read();
+            if ((b0 == 0xFF && b1 == 0xFE) || (b0 == 0xFE && b1 == 0xFF)) {
+                return StandardCharsets.UTF_16;
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Searches a binary file with the byte matcher and records every match offset.
+     *
+     * @param file the file to search
+     * @param signature the signature of the file, or null if it has none
+     * @param token checked between mapped windows and by the database searcher
+     * @return the match offsets with surrounding printable context, or null if nothing matches
+     * @throws IOException if the file cannot be read
+     */
+    private SearchResult matchBinary(File file, FileSignature signature, CancellationToken token) throws IOException {
+        // Databases, archives and encoded formats are searched decoded, through their own readers
+        if (signature == FileSignature.SQLITE) {
+            try {
+                return databaseSearcher.match(file, token);
+            } catch (IOException e) {
+                // Encrypted or damaged databases are still searched byte by byte
+                System.err.println("Searching database as binary: " + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        } else if (signature == FileSignature.ZIP) {
+            try {
+                return matchArchive(file, token);
+            } catch (ZipException e) {
+                // Truncated or damaged archives are still searched byte by byte
+                System.err.println("Searching archive as binary: " + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        } else if (FormatDecoder.canDecode(signature)) {
+            try {
+                List<DecodedString> strings = formatDecoder.decode(file, signature);
+                if (strings != null) {
+                    return matchDecoded(file, strings, token);
+                }
+                return matchCompressed(file, signature, token);
+            } catch (IOException e) {
+                // Malformed data is still searched byte by byte
+                System.err.println("Could not decode " + signature.getDescription() + ", searching as binary: "
+                    + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        }
+
+        MatchCollector collector = new MatchCollector();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            byteMatcher.findAll(channel, token, collector);
+        }
+
+        if (collector.offsets.count() == 0) {
+            return null;
+        }
+        collector.addSummary(textFilePredicate.test(file)
+            ? "Note: Large text file; matches are shown by byte offset."
+            : "Note: This is a binary file. Content may not display correctly.");
+        return new SearchResult(file, collector.lines, collector.offsets.toArray(), collector.offsets.count());
+    }
+
+    /**
+     * Searches the entries of a ZIP archive without extracting them. The
+     * central directory is read to find the entries, and each entry is
+     * inflated as a stream and scanned in the same pass.
+     *
+     * @param file the archive
+     * @param token checked between entries and between windows of an entry
+     * @return the matches, each labelled with its {@code archive!/entry} path, or null if nothing matches
+     * @throws IOException if the archive cannot be opened
+     */
+    private SearchResult matchArchive(File file, CancellationToken token) throws IOException {
+        MatchCollector collector = new MatchCollector();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                token.throwIfCancelled();
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                String path = file.getName() + ENTRY_SEPARATOR + entry.getName();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    matchEntry(in, path, 1, collector, token);
+                } catch (ZipException e) {
+                    // Encrypted entries and unsupported compression methods are skipped
+                    System.err.println("Skipping archive entry: " + path + " - " + e.getMessage());
+                }
+            }
+        }
+
+        if (collector.offsets.count() == 0) {
+            return null;
+        }
+        collector.addSummary("Note: Offsets are within the decompressed archive entries.");
+        // Offsets inside entries don't point into the archive file, so none are recorded
+        return new SearchResult(file, collector.lines, new long[0], collector.offsets.count());
+    }
+
+    /**
+     * Matches the strings decoded from a structured file.
+     *
+     * @param file the file the strings were decoded from
+     * @param strings the decoded strings
+     * @param token checked every few thousand strings
+     * @return the strings whose key path or value contains the search text, or null if none does
+     */
+    private SearchResult matchDecoded(File file, List<DecodedString> strings, CancellationToken token) {
+        List<String> matchingLines = new ArrayList<>();
+        long matchCount = 0;
+
+        for (int i = 0; i < strings.size(); i++) {
+            if (i % CANCELLATION_CHECK_LINES == 0) {
+                token.throwIfCancelled();
+            }
+
+            DecodedString string = strings.get(i);
+            int index = string.getText().toLowerCase().indexOf(searchText);
+            if (index < 0 && !string.getPath().toLowerCase().contains(searchText)) {
+                continue;
+            }
+
+            matchCount++;
+            if (matchingLines.size() < MAX_MATCHES_PER_FILE) {
+                String value = index >= 0
+                    ? DatabaseSearcher.snippet(string.getText(), index, searchText.length())
+                    : DatabaseSearcher.snippet(string.getText(), 0, 0);
+                matchingLines.add(string.getPath() + " = \"" + value + "\"");
+            }
+        }
+
+        if (matchCount == 0) {
+            return null;
+        }
+        if (matchCount > MAX_MATCHES_PER_FILE) {
+            matchingLines.add("... (" + matchCount + " matches in total)");
+        }
+        return new SearchResult(file, matchingLines, new long[0], matchCount);
+    }
+
+    /**
+     * Searches gzip or zlib data as it is inflated.
+     *
+     * @param file the compressed file
+     * @param signature gzip or zlib
+     * @param token checked between windows
+     * @return the matches in the decompressed data, or null if nothing matches
+     * @throws IOException if the file cannot be read or inflated
+     */
+    private SearchResult matchCompressed(File file, FileSignature signature, CancellationToken token) throws IOException {
+        MatchCollector collector = new MatchCollector();
+        collector.location = signature == FileSignature.GZIP ? "gzip: " : "zlib: ";
+        try (InputStream in = FormatDecoder.openDecompressed(file, signature)) {
+            byteMatcher.findAll(in, token, collector);
+        }
+
+        if (collector.offsets.count() == 0) {
+            return null;
+        }
+        collector.addSummary("Note: Offsets are within the decompressed data.");
+        return new SearchResult(file, collector.lines, new long[0], collector.offsets.count());
+    }
+
+    /**
+     * Searches one archive entry, or the entries of an archive nested in it.
+     *
+     * @param in the inflated contents of the entry, left open
+     * @param path the {@code archive!/entry} path of the entry
+     * @param depth the number of archives the entry is nested in
+     * @param collector receives the matches
+     * @param token checked between nested entries and between windows
+     * @throws IOException if the entry cannot be read
+     */
+    private void matchEntry(InputStream in, String path, int depth, MatchCollector collector,
+                            CancellationToken token) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(FileSignature.HEADER_SIZE);
+        byte[] header = buffered.readNBytes(FileSignature.HEADER_SIZE);
+        buffered.reset();
+
+        if (depth < MAX_ARCHIVE_DEPTH && FileSignature.detect(ByteBuffer.wrap(header)) == FileSignature.ZIP) {
+            // Nested archives can only be read front to back, without their central directory
+            ZipInputStream nested = new ZipInputStream(buffered);
+            try {
+                ZipEntry entry;
+                while ((entry = nested.getNextEntry()) != null) {
+                    token.throwIfCancelled();
+                    if (!entry.isDirectory()) {
+                        matchEntry(nested, path + ENTRY_SEPARATOR + entry.getName(), depth + 1, collector, token);
+                    }
+                }
+            } catch (ZipException e) {
+                // The rest of a damaged nested archive cannot be located
+                System.err.println("Stopped reading nested archive: " + path + " - " + e.getMessage());
+            }
+            return;
+        }
+
+        collector.location = path + ": ";
+        byteMatcher.findAll(buffered, token, collector);
+    }
+
+    /**
+     * Decides the byte order of a match of the pattern shared by UTF-16LE and UTF-16BE.
+     * Inside a run of ASCII text both byte orders produce the same bytes, so the
+     * decision is made at the ends of the run, using the same rule as
+     * {@link StringExtractor}: a little endian run ends with the NUL of its last
+     * character, a big endian run starts with the NUL of its first.
+     *
+     * @param window the buffer containing the match
+     * @param index the index of the match in the buffer
+     * @param length the length of the matched pattern
+     * @return the byte order of the match
+     */
+    private TextEncoding resolveByteOrder(ByteBuffer window, int index, int length) {
+        int limit = window.limit();
+
+        // Follow (NUL, printable) pairs forward to the end of the run
+        int end = index + length;
+        int maxEnd = Math.min(limit, end + MAX_RUN_WALK);
+        while (end + 1 < maxEnd && window.get(end) == 0 && isPrintable(window.get(end + 1))) {
+            end += 2;
+        }
+        if (end >= maxEnd || window.get(end) == 0) {
+            return TextEncoding.UTF_16LE;
+        }
+
+        // No trailing NUL: big endian if the run starts with one
+        int start = index - 1;
+        int minStart = Math.max(0, index - MAX_RUN_WALK);
+        while (start - 1 >= minStart && window.get(start) == 0 && isPrintable(window.get(start - 1))) {
+            start -= 2;
+        }
+        return start >= minStart && window.get(start) == 0 ? TextEncoding.UTF_16BE : TextEncoding.UTF_16LE;
+    }
+
+    private static boolean isPrintable(byte b) {
+        return b >= 32 && b <= 126;
+    }
+
+    /**
+     * Extracts printable characters around a match for display, decoding
+     * UTF-16 matches character by character.
+     *
+     * @param window the buffer containing the match
+     * @param index the index of the match in the buffer
+     * @param length the length of the match in bytes
+     * @param encoding the encoding of the match
+     * @return the context with non-printable characters replaced by dots
+     */
+    private String extractContext(ByteBuffer window, int index, int length, TextEncoding encoding) {
+        boolean utf16 = encoding == TextEncoding.UTF_16LE || encoding == TextEncoding.UTF_16BE;
+        int unit = utf16 ? 2 : 1;
+        int reach = 20 * unit;
+
+        // Keep the start aligned to the match so UTF-16 pairs are decoded in phase
+        int contextStart = index - reach;
+        while (contextStart < 0) {
+            contextStart += unit;
+        }
+        int contextEnd = Math.min(window.limit(), index + length + reach);
+
+        StringBuilder context = new StringBuilder(contextEnd - contextStart);
+        for (int i = contextStart; i + unit <= contextEnd; i += unit) {
+            int c;
+            if (encoding == TextEncoding.UTF_16LE) {
+                c = (window.get(i) & 0xFF) | (window.get(i + 1) & 0xFF) << 8;
+            } else if (encoding == TextEncoding.UTF_16BE) {
+                c = (window.get(i) & 0xFF) << 8 | (window.get(i + 1) & 0xFF);
+            } else {
+                c = window.get(i) & 0xFF;
+            }
+            if (c >= 32 && c <= 126) { // Printable ASCII
+                context.append((char) c);
+            } else {
+                context.append('.');
+            }
+        }
+        return context.toString();
+    }
+
+    /**
+     * Collects the matches of one file, or of all entries of one archive, as
+     * match offsets and a bounded number of display lines.
+     */
+    private class MatchCollector implements ByteMatcher.MatchHandler {
+        private final List<String> lines = new ArrayList<>();
+        private final OffsetList offsets = new OffsetList(MAX_RECORDED_OFFSETS);
+        // Prefix of the display lines, naming the archive entry being scanned
+        private String location = "";
+
+        @Override
+        public boolean onMatch(ByteBuffer window, int index, long fileOffset, int patternIndex) {
+            int length = byteMatcher.length(patternIndex);
+            TextEncoding encoding = patternEncodings[patternIndex];
+            if (encoding == null) {
+                encoding = resolveByteOrder(window, index, length);
+            }
+            if (encoding == TextEncoding.UTF_16BE && patternEncodings[patternIndex] == null) {
+                // The shared pattern starts one byte into the big endian string
+                index--;
+                fileOffset--;
+                length++;
+            }
+
+            offsets.add(fileOffset);
+            if (lines.size() < MAX_MATCHES_PER_FILE) {
+                lines.add(location + "Offset " + fileOffset + " [" + encoding.getLabel() + "]: \""
+                    + extractContext(window, index, length, encoding) + "\"");
+            }
+            return true;
+        }
+
+        /**
+         * Finishes the display lines with the total count, if not every match
+         * got a line, and a note.
+         *
+         * @param note the note to end with
+         */
+        private void addSummary(String note) {
+            if (offsets.count() > MAX_MATCHES_PER_FILE) {
+                lines.add("... (" + offsets.count() + " matches in total)");
+            }
+            lines.add(note);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Parallel content search over a directory tree.
+ * <p>
+ * Directory walking, file reading and matching all run as fork-join tasks,
+ * so idle workers steal subtrees and files from busy ones. Matches flow to
+ * the caller through a bounded queue: when the consumer falls behind, the
+ * workers block on the queue instead of piling up results in memory.
+ * <p>
+ * A {@link SearchFilter} is applied during the walk: each entry is stat'ed
+ * once, and folders and files the filter rejects are never listed or opened.
+ * <p>
+ * Files of any size are searched; matchers stream through them in bounded
+ * windows. Each file gets a time budget, and files that exhaust it are
+ * abandoned and listed in the {@link SearchStats} instead of stalling the search.
+ * <p>
+ * Every search runs under a {@link CancellationToken}. Once it is cancelled,
+ * pending directories and files are skipped, matchers stop mid-file, and
+ * results still in flight are discarded rather than delivered.
+ */
+public class ContentSearchEngine {
+
+    private static final int RESULT_QUEUE_CAPACITY = 256;
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+    private static final long DEFAULT_FILE_TIME_BUDGET_MILLIS = 30_000;
+
+    private final ForkJoinPool pool;
+    private volatile long fileTimeBudgetMillis = DEFAULT_FILE_TIME_BUDGET_MILLIS;
+
+    /**
+     * Creates an engine that uses one worker per available processor.
+     */
+    public ContentSearchEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine with the given number of workers.
+     *
+     * @param parallelism the number of worker threads
+     */
+    public ContentSearchEngine(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("content-search-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public long getFileTimeBudgetMillis() {
+        return fileTimeBudgetMillis;
+    }
+
+    /**
+     * Sets how long a single file may take before it is abandoned. Applies to
+     * searches started afterwards.
+     *
+     * @param millis the budget in milliseconds, or 0 for no limit
+     */
+    public void setFileTimeBudgetMillis(long millis) {
+        this.fileTimeBudgetMillis = millis;
+    }
+
+    /**
+     * Searches every non-hidden file below the given directory. Blocks until
+     * the search is complete; results and progress are delivered to the
+     * listener on the calling thread.
+     *
+     * @param root the directory to search
+     * @param matcher the matcher to apply to each file
+     * @param listener the listener to receive results and progress
+     * @param token the token that cancels the search
+     * @return the final search statistics
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <R> SearchStats search(File root, FileMatcher<R> matcher, SearchListener<R> listener,
+                                  CancellationToken token) throws InterruptedException {
+        return search(root, SearchFilter.NONE, matcher, listener, token);
+    }
+
+    /**
+     * Searches the non-hidden files below the given directory that the filter
+     * accepts. Blocks until the search is complete.
+     *
+     * @param root the directory to search
+     * @param filter decides which folders are walked and which files are read
+     * @param matcher the matcher to apply to each file
+     * @param listener the listener to receive results and progress
+     * @param token the token that cancels the search
+     * @return the final search statistics
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <R> SearchStats search(File root, SearchFilter filter, FileMatcher<R> matcher, SearchListener<R> listener,
+                                  CancellationToken token) throws InterruptedException {
+        Path rootPath = root.toPath();
+        return run(context -> new DirectoryTask<>(rootPath, context), rootPath, filter, matcher, listener, token);
+    }
+
+    /**
+     * Searches an explicit list of candidate files, for example the files an
+     * index could not rule out. Blocks until the search is complete.
+     *
+     * @param files the files to search
+     * @param matcher the matcher to apply to each file
+     * @param listener the listener to receive results and progress
+     * @param token the token that cancels the search
+     * @return the final search statistics
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <R> SearchStats searchFiles(Collection<File> files, FileMatcher<R> matcher, SearchListener<R> listener,
+                                       CancellationToken token) throws InterruptedException {
+        return run(context -> new FileListTask<>(new ArrayList<>(files), context), null, SearchFilter.NONE,
+                matcher, listener, token);
+    }
+
+    /**
+     * Searches the candidate files below a directory that the filter accepts.
+     * Blocks until the search is complete.
+     *
+     * @param root the directory the candidates were found in, which filter paths are relative to
+     * @param files the files to search
+     * @param filter decides which files are read
+     * @param matcher the matcher to apply to each file
+     * @param listener the listener to receive results and progress
+     * @param token the token that cancels the search
+     * @return the final search statistics
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public <R> SearchStats searchFiles(File root, Collection<File> files, SearchFilter filter, FileMatcher<R> matcher,
+                                       SearchListener<R> listener, CancellationToken token) throws InterruptedException {
+        return run(context -> new FileListTask<>(new ArrayList<>(files), context), root.toPath(), filter,
+                matcher, listener, token);
+    }
+
+    /**
+     * Runs a root task on the pool and drains its results on the calling thread.
+     * After cancellation the queue is still drained, so no worker stays blocked
+     * on it, but nothing more reaches the listener.
+     *
+     * @param rootTask creates the root task for the search context
+     * @param root the directory filter paths are relative to, or null if there is no filter
+     * @param filter decides which folders are walked and which files are read
+     * @param matcher the matcher to apply to each file
+     * @param listener the listener to receive results and progress
+     * @param token the token that cancels the search
+     * @return the final search statistics
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    private <R> SearchStats run(Function<SearchContext<R>, RecursiveAction> rootTask, Path root, SearchFilter filter,
+                                FileMatcher<R> matcher, SearchListener<R> listener, CancellationToken token)
+            throws InterruptedException {
+        SearchStats stats = new SearchStats(pool.getParallelism());
+        BlockingQueue<R> queue = new ArrayBlockingQueue<>(RESULT_QUEUE_CAPACITY);
+        SearchContext<R> context = new SearchContext<>(root, filter, matcher, stats, queue, token,
+                fileTimeBudgetMillis);
+        ForkJoinTask<Void> task = pool.submit(rootTask.apply(context));
+
+        long lastProgress = System.currentTimeMillis();
+        while (!task.isDone() || !queue.isEmpty()) {
+            R result = queue.poll(50, TimeUnit.MILLISECONDS);
+            if (result != null && !token.isCancelled()) {
+                listener.onResult(result);
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS && !token.isCancelled()) {
+                listener.onProgress(stats);
+                lastProgress = now;
+            }
+        }
+
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            System.err.println("Content search failed: " + e.getCause());
+        }
+
+        stats.finish();
+        if (!token.isCancelled()) {
+            listener.onProgress(stats);
+        }
+        return stats;
+    }
+
+    /**
+     * Shared state for all tasks of one search.
+     */
+    private static class SearchContext<R> {
+        private final Path root;
+        private final SearchFilter filter;
+        private final FileMatcher<R> matcher;
+        private final SearchStats stats;
+        private final BlockingQueue<R> queue;
+        private final CancellationToken token;
+        private final long fileTimeBudgetMillis;
+
+        SearchContext(Path root, SearchFilter filter, FileMatcher<R> matcher, SearchStats stats,
+                      BlockingQueue<R> queue, CancellationToken token, long fileTimeBudgetMillis) {
+            this.root = root;
+            this.filter = filter;
+            this.matcher = matcher;
+            this.stats = stats;
+            this.queue = queue;
+            this.token = token;
+            this.fileTimeBudgetMillis = fileTimeBudgetMillis;
+        }
+
+        /**
+         * Checks the attribute rules of the filter for a file, counting it as skipped if rejected.
+         *
+         * @param path the file
+         * @param attributes the attributes of the file
+         * @return true if the file is to be read
+         */
+        boolean acceptsFile(Path path, BasicFileAttributes attributes) {
+            if (filter.isEmpty() || filter.accepts(root.relativize(path), attributes)) {
+                return true;
+            }
+            stats.recordSkipped();
+            return false;
+        }
+
+        /**
+         * Hands a result to the consumer, blocking while the queue is full.
+         * The blocking is reported to the pool so it can compensate with a spare worker.
+         *
+         * @param result the result to publish
+         */
+        void publish(R result) {
+            if (token.isCancelled()) {
+                return;
+            }
+            QueuePut<R> put = new QueuePut<>(queue, result);
+            try {
+                ForkJoinPool.managedBlock(put);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A blocking queue insertion that cooperates with the fork-join pool.
+     */
+    private static class QueuePut<R> implements ForkJoinPool.ManagedBlocker {
+        private final BlockingQueue<R> queue;
+        private final R item;
+        private boolean done;
+
+        QueuePut(BlockingQueue<R> queue, R item) {
+            this.queue = queue;
+            this.item = item;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!done) {
+                queue.put(item);
+                done = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done || (done = queue.offer(item));
+        }
+    }
+
+    /**
+     * Lists one directory and forks a task for each subdirectory and file in it.
+     */
+    private static class DirectoryTask<R> extends RecursiveAction {
+        private final Path directory;
+        private final SearchContext<R> context;
+
+        DirectoryTask(Path directory, SearchContext<R> context) {
+            this.directory = directory;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (context.token.isCancelled()) {
+                return;
+            }
+
+            List<RecursiveAction> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path path : entries) {
+                    File file = path.toFile();
+                    if (file.isHidden()) {
+                        continue;
+                    }
+
+                    // One stat per entry answers every question the walk and the filter ask
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue; // Dangling links and entries deleted since the listing
+                    }
+
+                    if (attributes.isDirectory()) {
+                        if (context.filter.isEmpty() || context.filter.acceptsDirectory(context.root.relativize(path))) {
+                            subtasks.add(new DirectoryTask<>(path, context));
+                        }
+                    } else if (attributes.isRegularFile() && context.acceptsFile(path, attributes)) {
+                        subtasks.add(new FileTask<>(file, attributes.size(), context));
+                    }
+                }
+            } catch (IOException e) {
+                // Skip directories that can't be listed
+                return;
+            }
+
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Matches each file of a fixed candidate list.
+     */
+    private static class FileListTask<R> extends RecursiveAction {
+        private final List<File> files;
+        private final SearchContext<R> context;
+
+        FileListTask(List<File> files, SearchContext<R> context) {
+            this.files = files;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> subtasks = new ArrayList<>();
+            for (File file : files) {
+                Path path = file.toPath();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue; // Deleted since it became a candidate
+                }
+
+                if (!context.filter.isEmpty() && !context.filter.acceptsParents(context.root.relativize(path))) {
+                    context.stats.recordSkipped();
+                    continue;
+                }
+                if (attributes.isRegularFile() && context.acceptsFile(path, attributes)) {
+                    subtasks.add(new FileTask<>(file, attributes.size(), context));
+                }
+            }
+
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Reads and matches a single file.
+     */
+    private static class FileTask<R> extends RecursiveAction {
+        private final File file;
+        private final long size;
+        private final SearchContext<R> context;
+
+        FileTask(File file, long size, SearchContext<R> context) {
+            this.file = file;
+            this.size = size;
+            this.context = context;
+        }
+
+        @Override
+        protected void compute() {
+            if (context.token.isCancelled()) {
+                return;
+            }
+
+            // The type rule is the only one that has to look inside the file
+            if (!context.filter.acceptsType(file)) {
+                context.stats.recordSkipped();
+                return;
+            }
+
+            // The file's own token also expires when its time budget runs out
+            CancellationToken fileToken = context.fileTimeBudgetMillis > 0
+                    ? new DeadlineToken(context.token, context.fileTimeBudgetMillis)
+                    : context.token;
+
+            try {
+                R result = context.matcher.match(file, fileToken);
+                context.stats.recordFile(size);
+                if (result != null) {
+                    context.stats.recordMatch();
+                    context.publish(result);
+                }
+            } catch (CancellationException e) {
+                // Either the search was abandoned or this file ran out of time
+                if (!context.token.isCancelled()) {
+                    context.stats.recordOverBudget(file);
+                }
+            } catch (IOException e) {
+                // Skip files that can't be read
+                System.err.println("Error reading file: " + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        }
+    }
+}
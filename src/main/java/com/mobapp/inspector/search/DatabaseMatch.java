@@ -0,0 +1,53 @@
+package com.mobapp.inspector.search;
+
+/**
+ * A cell of an SQLite database that contains the search term.
+ */
+public class DatabaseMatch {
+    private final String table;
+    private final Long rowId;
+    private final String column;
+    private final String snippet;
+
+    /**
+     * Creates a match.
+     *
+     * @param table the table name
+     * @param rowId the rowid of the row, or null for tables without rowids
+     * @param column the column name
+     * @param snippet the text around the match
+     */
+    public DatabaseMatch(String table, Long rowId, String column, String snippet) {
+        this.table = table;
+        this.rowId = rowId;
+        this.column = column;
+        this.snippet = snippet;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Long getRowId() {
+        return rowId;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    /**
+     * Formats the match as table → rowid → column with its snippet.
+     *
+     * @return the formatted match
+     */
+    @Override
+    public String toString() {
+        String row = rowId != null ? "rowid " + rowId : "(no rowid)";
+        return table + " → " + row + " → " + column + ": \"" + snippet + "\"";
+    }
+}
@@ -0,0 +1,344 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sqlite.ProgressHandler;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Searches an SQLite database by querying it rather than scanning its pages.
+ * <p>
+ * The database is opened read-only, every text-like column of every table is
+ * searched with a case-insensitive {@code LIKE}, and each hit is reported as
+ * table, rowid and column. Values that overflow onto further pages are found
+ * like any other, since SQLite reassembles them. A searcher created for a
+ * regular expression reads every row of a table instead and matches each
+ * value through a {@link CancellableCharSequence}. Queries are bounded by row
+ * limits, and SQLite's progress handler aborts the running statement as soon
+ * as the token is cancelled. The per-file token also expires when the file's
+ * time budget runs out, so a huge or pathological database cannot stall a
+ * search and is reported as over budget like any other file.
+ */
+public class DatabaseSearcher implements FileMatcher<SearchResult> {
+
+    private static final int MAX_MATCHES_PER_TABLE = 100;
+    private static final int MAX_MATCHES_PER_DATABASE = 1000;
+    private static final int MAX_LINES_PER_FILE = 10;
+    private static final int PROGRESS_INTERVAL_OPCODES = 10_000;
+    private static final int SNIPPET_CONTEXT = 30;
+
+    private final String searchText;
+    private final String likePattern;
+    private final Pattern pattern;
+
+    /**
+     * Creates a searcher for the given search term.
+     *
+     * @param searchText the text to search for
+     */
+    public DatabaseSearcher(String searchText) {
+        this.searchText = searchText.toLowerCase();
+        this.likePattern = "%" + this.searchText
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_") + "%";
+        this.pattern = null;
+    }
+
+    /**
+     * Creates a searcher for a regular expression.
+     *
+     * @param pattern the pattern to search for
+     */
+    public DatabaseSearcher(Pattern pattern) {
+        this.searchText = null;
+        this.likePattern = null;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Searches all tables of a database.
+     *
+     * @param file the database file
+     * @param token the token of the search
+     * @return the matching cells, or null if nothing matches
+     * @throws IOException if the file cannot be opened as a database
+     * @throws java.util.concurrent.CancellationException if the search is cancelled
+     */
+    @Override
+    public SearchResult match(File file, CancellationToken token) throws IOException {
+        List<DatabaseMatch> matches = new ArrayList<>();
+
+        try (Connection connection = openReadOnly(file)) {
+            // Abort the running statement once the search is abandoned or the file's budget is spent
+            ProgressHandler.setHandler(connection, PROGRESS_INTERVAL_OPCODES, new ProgressHandler() {
+                @Override
+                protected int progress() {
+                    return token.isCancelled() ? 1 : 0;
+                }
+            });
+
+            for (TableInfo table : listTables(connection)) {
+                token.throwIfCancelled();
+                if (matches.size() >= MAX_MATCHES_PER_DATABASE) {
+                    break;
+                }
+                try {
+                    searchTable(connection, table, matches, token);
+                } catch (SQLException e) {
+                    token.throwIfCancelled();
+                    System.err.println("Error searching table " + table.name + " in " + file.getAbsolutePath() + ": " + e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            token.throwIfCancelled();
+            throw new IOException("Cannot open database: " + e.getMessage(), e);
+        }
+
+        if (matches.isEmpty()) {
+            return null;
+        }
+
+        List<String> matchingLines = new ArrayList<>();
+        for (int i = 0; i < Math.min(matches.size(), MAX_LINES_PER_FILE); i++) {
+            matchingLines.add(matches.get(i).toString());
+        }
+        if (matches.size() > MAX_LINES_PER_FILE) {
+            matchingLines.add("... (" + matches.size() + " matching cells in total)");
+        }
+        if (matches.size() >= MAX_MATCHES_PER_DATABASE) {
+            matchingLines.add("Note: Search stopped after " + MAX_MATCHES_PER_DATABASE + " matching cells.");
+        }
+
+        return new SearchResult(file, matchingLines, matches);
+    }
+
+    /**
+     * Opens a database read-only, for searching, comparing or viewing it.
+     * <p>
+     * A database without a write-ahead log is opened as immutable, so SQLite
+     * creates no journal, {@code -shm} or {@code -wal} file next to it and
+     * takes no locks. A database with a non-empty {@code -wal} file is opened
+     * without that flag, because the transactions still in the log would
+     * otherwise be invisible; SQLite may then create or update the
+     * {@code -shm} file next to it, though the database and the log are
+     * never written. Work on a copy where even that matters.
+     *
+     * @param file the database file
+     * @return the connection
+     * @throws SQLException if the file cannot be opened
+     */
+    public static Connection openReadOnly(File file) throws SQLException {
+        File wal = new File(file.getPath() + "-wal");
+        boolean immutable = !(wal.isFile() && wal.length() > 0);
+
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        config.setBusyTimeout(1000);
+        return config.createConnection("jdbc:sqlite:file:" + file.toURI().getRawPath()
+            + "?mode=ro" + (immutable ? "&immutable=1" : ""));
+    }
+
+    /**
+     * Lists the ordinary tables of a database with their text-like columns.
+     *
+     * @param connection the database connection
+     * @return the tables that have at least one column worth searching
+     * @throws SQLException if the schema cannot be read
+     */
+    private List<TableInfo> listTables(Connection connection) throws SQLException {
+        List<TableInfo> tables = new ArrayList<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                 "SELECT name, sql FROM sqlite_master WHERE type = 'table' AND name NOT LIKE 'sqlite_%'")) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                String sql = rs.getString(2);
+                String upperSql = sql != null ? sql.toUpperCase(Locale.ROOT) : "";
+
+                // Virtual tables keep their data in shadow tables, which are searched directly
+                if (upperSql.startsWith("CREATE VIRTUAL TABLE")) {
+                    continue;
+                }
+                tables.add(new TableInfo(name, !upperSql.contains("WITHOUT ROWID")));
+            }
+        }
+
+        List<TableInfo> searchable = new ArrayList<>();
+        for (TableInfo table : tables) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("PRAGMA table_info(" + quote(table.name) + ")")) {
+                while (rs.next()) {
+                    if (isTextLike(rs.getString("type"))) {
+                        table.columns.add(rs.getString("name"));
+                    }
+                }
+            }
+            if (!table.columns.isEmpty()) {
+                searchable.add(table);
+            }
+        }
+        return searchable;
+    }
+
+    /**
+     * Checks whether a declared column type can hold text, following SQLite's
+     * affinity rules. Columns without a declared type can hold anything.
+     *
+     * @param type the declared type
+     * @return true if the column should be searched
+     */
+    private static boolean isTextLike(String type) {
+        if (type == null || type.isEmpty()) {
+            return true;
+        }
+        String upper = type.toUpperCase(Locale.ROOT);
+        return upper.contains("CHAR") || upper.contains("CLOB") || upper.contains("TEXT") || upper.contains("BLOB");
+    }
+
+    /**
+     * Searches the text-like columns of one table. A search term is matched
+     * by SQLite with {@code LIKE}; a pattern is matched here, row by row.
+     *
+     * @param connection the database connection
+     * @param table the table to search
+     * @param matches the list to add matching cells to
+     * @param token stops a pattern that runs too long
+     * @throws SQLException if the query fails or is aborted
+     */
+    private void searchTable(Connection connection, TableInfo table, List<DatabaseMatch> matches,
+                             CancellationToken token) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        sql.append(table.hasRowId ? "rowid" : "NULL");
+        for (String column : table.columns) {
+            sql.append(", ").append(quote(column));
+        }
+        sql.append(" FROM ").append(quote(table.name));
+        if (pattern == null) {
+            sql.append(" WHERE ");
+            for (int i = 0; i < table.columns.size(); i++) {
+                if (i > 0) {
+                    sql.append(" OR ");
+                }
+                sql.append(quote(table.columns.get(i))).append(" LIKE ? ESCAPE '\\'");
+            }
+            sql.append(" LIMIT ").append(MAX_MATCHES_PER_TABLE);
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            if (pattern == null) {
+                for (int i = 0; i < table.columns.size(); i++) {
+                    statement.setString(i + 1, likePattern);
+                }
+            }
+
+            Matcher matcher = pattern != null ? pattern.matcher("") : null;
+            int matchingRows = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (matchingRows < MAX_MATCHES_PER_TABLE && matches.size() < MAX_MATCHES_PER_DATABASE && rs.next()) {
+                    long rowId = rs.getLong(1);
+                    Long row = rs.wasNull() ? null : rowId;
+
+                    // Report each column of the row that contains the term
+                    boolean rowMatches = false;
+                    for (int i = 0; i < table.columns.size(); i++) {
+                        String value = rs.getString(i + 2);
+                        if (value == null) {
+                            continue;
+                        }
+                        String found = matcher != null ? findPattern(matcher, value, token) : findText(value);
+                        if (found != null) {
+                            matches.add(new DatabaseMatch(table.name, row, table.columns.get(i), found));
+                            rowMatches = true;
+                        }
+                    }
+                    if (rowMatches) {
+                        matchingRows++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks for the search term in a cell value, ignoring case.
+     *
+     * @param value the cell value
+     * @return the snippet around the first occurrence, or null if there is none
+     */
+    private String findText(String value) {
+        int index = value.toLowerCase().indexOf(searchText);
+        return index >= 0 ? snippet(value, index, searchText.length()) : null;
+    }
+
+    /**
+     * Looks for the pattern in a cell value.
+     *
+     * @param matcher the matcher of the pattern, reset onto the value
+     * @param value the cell value
+     * @param token stops a match that runs too long
+     * @return the snippet around the first match, or null if there is none
+     */
+    private static String findPattern(Matcher matcher, String value, CancellationToken token) {
+        if (!matcher.reset(new CancellableCharSequence(value, token)).find()) {
+            return null;
+        }
+        return snippet(value, matcher.start(), matcher.end() - matcher.start());
+    }
+
+    /**
+     * Cuts the text around a match out of a cell value for display.
+     *
+     * @param value the cell value
+     * @param index the index of the match in the value
+     * @param length the length of the match
+     * @return the snippet, with control characters replaced by spaces
+     */
+    static String snippet(String value, int index, int length) {
+        int start = Math.max(0, index - SNIPPET_CONTEXT);
+        int end = Math.min(value.length(), index + length + SNIPPET_CONTEXT);
+
+        StringBuilder snippet = new StringBuilder();
+        if (start > 0) {
+            snippet.append("...");
+        }
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            snippet.append(Character.isISOControl(c) ? ' ' : c);
+        }
+        if (end < value.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * A table to search and the columns that may contain text.
+     */
+    private static class TableInfo {
+        private final String name;
+        private final boolean hasRowId;
+        private final List<String> columns = new ArrayList<>();
+
+        TableInfo(String name, boolean hasRowId) {
+            this.name = name;
+            this.hasRowId = hasRowId;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mobapp.inspector.search;
+
+/**
+ * Token for the work on a single file: cancelled when the search it belongs
+ * to is cancelled, or when the file's time budget runs out. Everything that
+ * already checks the search token, such as window loops and the SQLite
+ * progress handler, thereby also enforces the budget.
+ */
+class DeadlineToken extends CancellationToken {
+    private final CancellationToken parent;
+    private final long deadline;
+
+    /**
+     * Creates a token that expires after a time budget.
+     *
+     * @param parent the token of the search
+     * @param budgetMillis the time budget in milliseconds, counted from now
+     */
+    DeadlineToken(CancellationToken parent, long budgetMillis) {
+        this.parent = parent;
+        this.deadline = System.currentTimeMillis() + budgetMillis;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return super.isCancelled() || parent.isCancelled() || isExpired();
+    }
+
+    /**
+     * Checks whether the time budget has run out.
+     *
+     * @return true once the deadline has passed
+     */
+    boolean isExpired() {
+        return System.currentTimeMillis() > deadline;
+    }
+}
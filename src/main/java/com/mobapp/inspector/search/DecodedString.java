@@ -0,0 +1,39 @@
+package com.mobapp.inspector.search;
+
+/**
+ * A string value decoded from a structured file, such as a binary property
+ * list or an Android binary XML document, with the key path it was found at.
+ */
+public class DecodedString {
+    private final String path;
+    private final String text;
+
+    /**
+     * Creates a decoded string.
+     *
+     * @param path the key path, such as {@code plist:/auth/token} or {@code abx:/map/auth_token}
+     * @param text the value
+     */
+    public DecodedString(String path, String text) {
+        this.path = path;
+        this.text = text;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Formats the string as its key path and value.
+     *
+     * @return the formatted string
+     */
+    @Override
+    public String toString() {
+        return path + " = \"" + text + "\"";
+    }
+}
@@ -0,0 +1,38 @@
+package com.mobapp.inspector.search;
+
+/**
+ * A run of printable text found in a binary file, with where and how it was encoded.
+ */
+public class ExtractedString {
+    private final long offset;
+    private final TextEncoding encoding;
+    private final String text;
+
+    public ExtractedString(long offset, TextEncoding encoding, String text) {
+        this.offset = offset;
+        this.encoding = encoding;
+        this.text = text;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public TextEncoding getEncoding() {
+        return encoding;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Formats the string as a line of a strings listing: hex offset, encoding, text.
+     *
+     * @return the formatted line
+     */
+    @Override
+    public String toString() {
+        return String.format("%08X  %-8s  %s", offset, encoding.getLabel(), text);
+    }
+}
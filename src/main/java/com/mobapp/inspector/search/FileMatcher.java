@@ -0,0 +1,25 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Examines a single file during a parallel search. Implementations are
+ * called concurrently from several worker threads and must be thread-safe,
+ * and should check the cancellation token while working through large files.
+ *
+ * @param <R> the type of result produced for a matching file
+ */
+public interface FileMatcher<R> {
+
+    /**
+     * Examines a file.
+     *
+     * @param file the file to examine
+     * @param token the token of the search the file belongs to
+     * @return the result for the file, or null if it does not match
+     * @throws IOException if the file cannot be read
+     * @throws java.util.concurrent.CancellationException if the search is cancelled mid-file
+     */
+    R match(File file, CancellationToken token) throws IOException;
+}
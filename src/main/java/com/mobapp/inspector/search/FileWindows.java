@@ -0,0 +1,129 @@
+package com.mobapp.inspector.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Walks the contents of a file as a sequence of byte buffers.
+ * <p>
+ * Small files are read into a reused per-thread heap buffer; larger files
+ * are memory-mapped window by window, so the heap cost of a scan does not
+ * depend on the file size. Streams that cannot be mapped, such as entries
+ * inflated from an archive, are read through a reused per-thread buffer.
+ */
+final class FileWindows {
+
+    static final int WINDOW_SIZE = 16 * 1024 * 1024;
+    static final int SMALL_FILE_SIZE = 64 * 1024;
+    static final int STREAM_WINDOW_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> SMALL_FILE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(SMALL_FILE_SIZE));
+    private static final ThreadLocal<ByteBuffer> STREAM_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(STREAM_WINDOW_SIZE));
+
+    /**
+     * Receives each window of a file in order.
+     */
+    interface WindowVisitor {
+
+        /**
+         * Called for each window.
+         *
+         * @param window the window, readable from index 0 up to its limit
+         * @param baseOffset the file offset of the window's first byte
+         * @param last whether this is the final window of the file
+         * @return true to continue with the next window, false to stop
+         * @throws IOException if the visitor fails to process the window
+         */
+        boolean visit(ByteBuffer window, long baseOffset, boolean last) throws IOException;
+    }
+
+    private FileWindows() {
+    }
+
+    /**
+     * Visits a file window by window. Consecutive windows overlap by the given
+     * number of bytes, so a pattern no longer than {@code overlap + 1} bytes is
+     * always completely contained in at least one window.
+     *
+     * @param channel the channel to read
+     * @param overlap the number of bytes each window repeats from the previous one
+     * @param token checked before each window is read
+     * @param visitor the visitor to receive the windows
+     * @throws IOException if the channel cannot be read or mapped
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    static void forEach(FileChannel channel, int overlap, CancellationToken token, WindowVisitor visitor) throws IOException {
+        long size = channel.size();
+
+        token.throwIfCancelled();
+        if (size <= SMALL_FILE_SIZE) {
+            ByteBuffer buffer = SMALL_FILE_BUFFER.get();
+            buffer.clear();
+            while (buffer.position() < size && channel.read(buffer, buffer.position()) > 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+            visitor.visit(buffer, 0, true);
+            return;
+        }
+
+        long position = 0;
+        while (position < size) {
+            token.throwIfCancelled();
+            int length = (int) Math.min(WINDOW_SIZE, size - position);
+            boolean last = position + length >= size;
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            if (!visitor.visit(window, position, last) || last) {
+                break;
+            }
+            position += length - overlap;
+        }
+    }
+
+    /**
+     * Visits a stream window by window, with the same overlap guarantee as
+     * {@link #forEach(FileChannel, int, CancellationToken, WindowVisitor)}.
+     * The tail of each window is copied to the front of the buffer before the
+     * next read, so the whole stream is scanned in one pass without being
+     * held in memory. The visitor must not read from the stream itself.
+     *
+     * @param in the stream to read, left open
+     * @param overlap the number of bytes each window repeats from the previous one
+     * @param token checked before each window is read
+     * @param visitor the visitor to receive the windows; offsets are relative to the start of the stream
+     * @throws IOException if the stream cannot be read
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    static void forEach(InputStream in, int overlap, CancellationToken token, WindowVisitor visitor) throws IOException {
+        ByteBuffer window = STREAM_BUFFER.get();
+        byte[] bytes = window.array();
+        long baseOffset = 0;
+        int filled = 0;
+
+        while (true) {
+            token.throwIfCancelled();
+            int read;
+            while (filled < bytes.length && (read = in.read(bytes, filled, bytes.length - filled)) != -1) {
+                filled += read;
+            }
+            // A short window means the stream has ended
+            boolean last = filled < bytes.length;
+            window.clear();
+            window.limit(filled);
+
+            if (!visitor.visit(window, baseOffset, last) || last) {
+                return;
+            }
+
+            int keep = Math.min(overlap, filled);
+            System.arraycopy(bytes, filled - keep, bytes, 0, keep);
+            baseOffset += filled - keep;
+            filled = keep;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.mobapp.inspector.search;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.dd.plist.BinaryPropertyListParser;
+import com.dd.plist.NSArray;
+import com.dd.plist.NSData;
+import com.dd.plist.NSDate;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSNumber;
+import com.dd.plist.NSObject;
+import com.dd.plist.NSSet;
+import com.dd.plist.NSString;
+import com.dd.plist.PropertyListFormatException;
+
+import com.mobapp.inspector.fs.FileSignature;
+
+/**
+ * Decodes structured binary files into the strings they hold, each with the
+ * key path it was found at, so that values which are not stored as plain text
+ * on disk can still be searched.
+ * <p>
+ * Binary property lists and Android binary XML (ABX) documents are decoded
+ * directly, and also when wrapped in gzip or zlib compression. Decoded files
+ * are cached by path, size and modification time, so repeated searches
+ * decode each file once. Instances are thread-safe.
+ */
+public class FormatDecoder {
+
+    private static final int MAX_DECODED_FILE_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_STRINGS_PER_FILE = 200_000;
+    private static final long MAX_CACHED_CHARS = 16_000_000;
+    // How deep property lists embedded in NSData values are followed
+    private static final int MAX_NESTED_PLISTS = 4;
+
+    // ABX tokens, in the low nibble of each token byte
+    private static final int ABX_START_DOCUMENT = 0;
+    private static final int ABX_END_DOCUMENT = 1;
+    private static final int ABX_START_TAG = 2;
+    private static final int ABX_END_TAG = 3;
+    private static final int ABX_TEXT = 4;
+    private static final int ABX_CDSECT = 5;
+    private static final int ABX_ATTRIBUTE = 15;
+
+    // ABX value types, in the high nibble of each token byte
+    private static final int ABX_TYPE_NULL = 1 << 4;
+    private static final int ABX_TYPE_STRING = 2 << 4;
+    private static final int ABX_TYPE_STRING_INTERNED = 3 << 4;
+    private static final int ABX_TYPE_BYTES_HEX = 4 << 4;
+    private static final int ABX_TYPE_BYTES_BASE64 = 5 << 4;
+    private static final int ABX_TYPE_INT = 6 << 4;
+    private static final int ABX_TYPE_INT_HEX = 7 << 4;
+    private static final int ABX_TYPE_LONG = 8 << 4;
+    private static final int ABX_TYPE_LONG_HEX = 9 << 4;
+    private static final int ABX_TYPE_FLOAT = 10 << 4;
+    private static final int ABX_TYPE_DOUBLE = 11 << 4;
+    private static final int ABX_TYPE_BOOLEAN_TRUE = 12 << 4;
+    private static final int ABX_TYPE_BOOLEAN_FALSE = 13 << 4;
+    private static final int ABX_NEW_INTERNED_STRING = 0xFFFF;
+
+    // Most recently used decodings; a null list marks a compressed file without structure
+    private final Map<String, CachedDecoding> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+
+    /**
+     * Checks whether files with a signature are handled by this decoder.
+     *
+     * @param signature the signature of a file
+     * @return true for binary property lists, ABX documents and gzip or zlib data
+     */
+    public static boolean canDecode(FileSignature signature) {
+        return signature == FileSignature.BPLIST || signature == FileSignature.ABX || isCompressed(signature);
+    }
+
+    /**
+     * Checks whether a signature denotes compressed data.
+     *
+     * @param signature the signature of a file
+     * @return true for gzip and zlib data
+     */
+    public static boolean isCompressed(FileSignature signature) {
+        return signature == FileSignature.GZIP || signature == FileSignature.ZLIB;
+    }
+
+    /**
+     * Opens a compressed file as a stream of its decompressed bytes.
+     *
+     * @param file the file
+     * @param signature the signature of the file, gzip or zlib
+     * @return the decompressed stream
+     * @throws IOException if the file cannot be opened or its header is invalid
+     */
+    public static InputStream openDecompressed(File file, FileSignature signature) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return signature == FileSignature.GZIP ? new GZIPInputStream(in) : new InflaterInputStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the strings of a file, using the cached decoding if the file is unchanged.
+     *
+     * @param file the file
+     * @param signature the signature of the file, one that {@link #canDecode} accepts
+     * @return the decoded strings, or null if the file is compressed data without a
+     *         structure this decoder understands
+     * @throws IOException if the file cannot be read, is too large or is malformed
+     */
+    public List<DecodedString> decode(File file, FileSignature signature) throws IOException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        synchronized (this) {
+            CachedDecoding cached = cache.get(key);
+            if (cached != null && cached.size == size && cached.modified == modified) {
+                return cached.strings;
+            }
+        }
+
+        List<DecodedString> strings;
+        if (isCompressed(signature)) {
+            strings = decodeCompressed(file, signature);
+        } else {
+            if (size > MAX_DECODED_FILE_SIZE) {
+                throw new IOException("File too large to decode (" + size + " bytes)");
+            }
+            try (InputStream in = new FileInputStream(file)) {
+                strings = decode(in.readAllBytes(), signature, "");
+            }
+        }
+
+        store(key, new CachedDecoding(size, modified, strings));
+        return strings;
+    }
+
+    /**
+     * Decodes a compressed file if the decompressed data is a format this decoder understands.
+     *
+     * @param file the file
+     * @param signature gzip or zlib
+     * @return the decoded strings, or null if the decompressed data has no known structure
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    private List<DecodedString> decodeCompressed(File file, FileSignature signature) throws IOException {
+        try (InputStream in = openDecompressed(file, signature)) {
+            byte[] header = in.readNBytes(FileSignature.HEADER_SIZE);
+            FileSignature inner = FileSignature.detect(ByteBuffer.wrap(header));
+            if (inner != FileSignature.BPLIST && inner != FileSignature.ABX) {
+                return null;
+            }
+
+            byte[] rest = in.readNBytes(MAX_DECODED_FILE_SIZE - header.length + 1);
+            if (header.length + rest.length > MAX_DECODED_FILE_SIZE) {
+                throw new IOException("Decompressed data too large to decode");
+            }
+            byte[] data = new byte[header.length + rest.length];
+            System.arraycopy(header, 0, data, 0, header.length);
+            System.arraycopy(rest, 0, data, header.length, rest.length);
+            return decode(data, inner, signature == FileSignature.GZIP ? "gzip:" : "zlib:");
+        }
+    }
+
+    private List<DecodedString> decode(byte[] data, FileSignature signature, String prefix) throws IOException {
+        List<DecodedString> strings = new ArrayList<>();
+        if (signature == FileSignature.BPLIST) {
+            walkPlist(parsePlist(data), prefix + "plist:", strings, 0);
+        } else {
+            decodeAbx(data, prefix + "abx:", strings);
+        }
+        return strings;
+    }
+
+    private static NSObject parsePlist(byte[] data) throws IOException {
+        try {
+            return BinaryPropertyListParser.parse(data);
+        } catch (PropertyListFormatException | RuntimeException e) {
+            // The parser reports truncated object tables as index errors
+            throw new IOException("Malformed binary property list: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects the strings of a property list object and everything below it.
+     *
+     * @param object the object
+     * @param path the key path of the object
+     * @param strings receives the strings
+     * @param nesting the number of property lists the object is embedded in
+     * @throws IOException if an embedded property list is malformed
+     */
+    private void walkPlist(NSObject object, String path, List<DecodedString> strings, int nesting) throws IOException {
+        if (strings.size() >= MAX_STRINGS_PER_FILE) {
+            return;
+        }
+
+        if (object instanceof NSDictionary) {
+            for (Map.Entry<String, NSObject> entry : ((NSDictionary) object).entrySet()) {
+                walkPlist(entry.getValue(), path + "/" + entry.getKey(), strings, nesting);
+            }
+        } else if (object instanceof NSArray) {
+            NSObject[] items = ((NSArray) object).getArray();
+            for (int i = 0; i < items.length; i++) {
+                walkPlist(items[i], path + "/" + i, strings, nesting);
+            }
+        } else if (object instanceof NSSet) {
+            NSObject[] items = ((NSSet) object).allObjects();
+            for (int i = 0; i < items.length; i++) {
+                walkPlist(items[i], path + "/" + i, strings, nesting);
+            }
+        } else if (object instanceof NSString) {
+            strings.add(new DecodedString(path, ((NSString) object).getContent()));
+        } else if (object instanceof NSNumber || object instanceof NSDate) {
+            strings.add(new DecodedString(path, object.toString()));
+        } else if (object instanceof NSData) {
+            // Archived objects often store further property lists as data
+            byte[] bytes = ((NSData) object).bytes();
+            if (nesting < MAX_NESTED_PLISTS
+                    && FileSignature.detect(ByteBuffer.wrap(bytes)) == FileSignature.BPLIST) {
+                walkPlist(parsePlist(bytes), path + "/plist:", strings, nesting + 1);
+            }
+        }
+    }
+
+    /**
+     * Decodes an Android binary XML document. Elements become path segments,
+     * named after their {@code name} attribute if they have one, as in
+     * SharedPreferences files; text becomes a string at the element's path and
+     * every other attribute a string at {@code path/@attribute}.
+     *
+     * @param data the document
+     * @param root the path prefix
+     * @param strings receives the strings
+     * @throws IOException if the document is malformed
+     */
+    private void decodeAbx(byte[] data, String root, List<DecodedString> strings) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipBytes(4); // Magic and version
+        List<String> interned = new ArrayList<>();
+        List<String> elements = new ArrayList<>();
+
+        try {
+            int token;
+            while ((token = in.read()) != -1 && strings.size() < MAX_STRINGS_PER_FILE) {
+                int command = token & 0x0F;
+                int type = token & 0xF0;
+
+                switch (command) {
+                    case ABX_START_DOCUMENT:
+                    case ABX_END_DOCUMENT:
+                        break;
+                    case ABX_START_TAG:
+                        elements.add(readInterned(in, interned));
+                        break;
+                    case ABX_END_TAG:
+                        readInterned(in, interned);
+                        if (!elements.isEmpty()) {
+                            elements.remove(elements.size() - 1);
+                        }
+                        break;
+                    case ABX_ATTRIBUTE:
+                        String name = readInterned(in, interned);
+                        String value = readAbxValue(in, type, interned);
+                        if (name.equals("name") && !elements.isEmpty()) {
+                            elements.set(elements.size() - 1, value);
+                        } else {
+                            strings.add(new DecodedString(abxPath(root, elements) + "/@" + name, value));
+                        }
+                        break;
+                    default:
+                        // Text, CDATA, comments and the other character tokens
+                        String text = readAbxValue(in, type, interned);
+                        if ((command == ABX_TEXT || command == ABX_CDSECT) && !text.isBlank()) {
+                            strings.add(new DecodedString(abxPath(root, elements), text));
+                        }
+                        break;
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated Android binary XML", e);
+        }
+    }
+
+    private static String abxPath(String root, List<String> elements) {
+        return root + "/" + String.join("/", elements);
+    }
+
+    private static String readInterned(DataInputStream in, List<String> interned) throws IOException {
+        int reference = in.readUnsignedShort();
+        if (reference == ABX_NEW_INTERNED_STRING) {
+            String value = in.readUTF();
+            interned.add(value);
+            return value;
+        }
+        if (reference >= interned.size()) {
+            throw new IOException("Invalid interned string reference " + reference);
+        }
+        return interned.get(reference);
+    }
+
+    /**
+     * Reads a typed ABX value and formats it as text.
+     *
+     * @param in the document
+     * @param type the value type from the token byte
+     * @param interned the interned strings read so far
+     * @return the value as text, empty for null values
+     * @throws IOException if the document is malformed
+     */
+    private static String readAbxValue(DataInputStream in, int type, List<String> interned) throws IOException {
+        switch (type) {
+            case ABX_TYPE_NULL:
+                return "";
+            case ABX_TYPE_STRING:
+                return in.readUTF();
+            case ABX_TYPE_STRING_INTERNED:
+                return readInterned(in, interned);
+            case ABX_TYPE_BYTES_HEX:
+            case ABX_TYPE_BYTES_BASE64:
+                byte[] bytes = new byte[in.readUnsignedShort()];
+                in.readFully(bytes);
+                return formatBytes(bytes, type == ABX_TYPE_BYTES_HEX);
+            case ABX_TYPE_INT:
+                return Integer.toString(in.readInt());
+            case ABX_TYPE_INT_HEX:
+                return Integer.toHexString(in.readInt());
+            case ABX_TYPE_LONG:
+                return Long.toString(in.readLong());
+            case ABX_TYPE_LONG_HEX:
+                return Long.toHexString(in.readLong());
+            case ABX_TYPE_FLOAT:
+                return Float.toString(in.readFloat());
+            case ABX_TYPE_DOUBLE:
+                return Double.toString(in.readDouble());
+            case ABX_TYPE_BOOLEAN_TRUE:
+                return "true";
+            case ABX_TYPE_BOOLEAN_FALSE:
+                return "false";
+            default:
+                throw new IOException("Unknown Android binary XML value type " + (type >> 4));
+        }
+    }
+
+    private static String formatBytes(byte[] bytes, boolean hex) {
+        if (!hex) {
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        StringBuilder text = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            text.append(String.format("%02x", b & 0xFF));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Adds a decoding to the cache, evicting the least recently used ones
+     * while the cache holds too much text.
+     *
+     * @param key the absolute path of the file
+     * @param decoding the decoding
+     */
+    private synchronized void store(String key, CachedDecoding decoding) {
+        CachedDecoding previous = cache.put(key, decoding);
+        if (previous != null) {
+            cachedChars -= previous.chars;
+        }
+        cachedChars += decoding.chars;
+
+        Iterator<CachedDecoding> iterator = cache.values().iterator();
+        while (cachedChars > MAX_CACHED_CHARS && iterator.hasNext()) {
+            CachedDecoding eldest = iterator.next();
+            if (eldest == decoding) {
+                break;
+            }
+            cachedChars -= eldest.chars;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The decoded strings of one file version.
+     */
+    private static class CachedDecoding {
+        private final long size;
+        private final long modified;
+        private final List<DecodedString> strings;
+        private final long chars;
+
+        CachedDecoding(long size, long modified, List<DecodedString> strings) {
+            this.size = size;
+            this.modified = modified;
+            this.strings = strings;
+            long total = 0;
+            if (strings != null) {
+                for (DecodedString string : strings) {
+                    total += string.getPath().length() + string.getText().length();
+                }
+            }
+            this.chars = total;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.mobapp.inspector.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A named literal or regular expression that the secret scanner looks for.
+ * <p>
+ * Dictionaries are plain text files with one indicator per line, written as
+ * {@code literal:<text>} or {@code regex:<pattern>}, optionally prefixed with
+ * {@code <name> => }. Blank lines and lines starting with {@code #} are ignored.
+ * Literals match case-insensitively; regular expressions match as written.
+ */
+public class Indicator {
+
+    private static final String DEFAULT_DICTIONARY = "/com/mobapp/inspector/indicators/default-indicators.txt";
+    private static final String NAME_SEPARATOR = " => ";
+
+    /**
+     * How the pattern of an indicator is interpreted.
+     */
+    public enum Kind {
+        LITERAL,
+        REGEX
+    }
+
+    private final String name;
+    private final Kind kind;
+    private final String pattern;
+
+    public Indicator(String name, Kind kind, String pattern) {
+        this.name = name;
+        this.kind = kind;
+        this.pattern = pattern;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Loads the dictionary bundled with the application.
+     *
+     * @return the built-in indicators
+     * @throws IOException if the bundled dictionary cannot be read
+     */
+    public static List<Indicator> loadDefaults() throws IOException {
+        try (InputStream in = Indicator.class.getResourceAsStream(DEFAULT_DICTIONARY)) {
+            if (in == null) {
+                throw new IOException("Built-in indicator dictionary not found");
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                List<String> lines = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+                return parse(lines);
+            }
+        }
+    }
+
+    /**
+     * Loads a dictionary file.
+     *
+     * @param path the dictionary file
+     * @return the indicators defined in the file
+     * @throws IOException if the file cannot be read or contains an invalid line
+     */
+    public static List<Indicator> load(Path path) throws IOException {
+        return parse(Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses dictionary lines.
+     *
+     * @param lines the lines of a dictionary
+     * @return the indicators defined by the lines
+     * @throws IOException if a line is malformed or a regular expression does not compile
+     */
+    public static List<Indicator> parse(List<String> lines) throws IOException {
+        List<Indicator> indicators = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String name = null;
+            int separator = line.indexOf(NAME_SEPARATOR);
+            if (separator > 0) {
+                name = line.substring(0, separator).strip();
+                line = line.substring(separator + NAME_SEPARATOR.length()).strip();
+            }
+
+            Kind kind;
+            String pattern;
+            if (line.startsWith("literal:")) {
+                kind = Kind.LITERAL;
+                pattern = line.substring("literal:".length());
+            } else if (line.startsWith("regex:")) {
+                kind = Kind.REGEX;
+                pattern = line.substring("regex:".length());
+                try {
+                    Pattern.compile(pattern);
+                } catch (PatternSyntaxException e) {
+                    throw new IOException("Invalid regular expression on line " + (i + 1) + ": " + e.getDescription());
+                }
+            } else {
+                throw new IOException("Line " + (i + 1) + " must start with 'literal:' or 'regex:'");
+            }
+
+            if (pattern.isEmpty()) {
+                throw new IOException("Empty pattern on line " + (i + 1));
+            }
+            indicators.add(new Indicator(name != null ? name : pattern, kind, pattern));
+        }
+
+        return indicators;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * The indicators found in one file, with the byte offsets of their occurrences.
+ */
+public class IndicatorFindings {
+    private final File file;
+    private final Map<Indicator, long[]> offsets;
+    private final Map<Indicator, Long> counts;
+
+    public IndicatorFindings(File file, Map<Indicator, long[]> offsets, Map<Indicator, Long> counts) {
+        this.file = file;
+        this.offsets = offsets;
+        this.counts = counts;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the recorded offsets per indicator, in the order the indicators were defined.
+     *
+     * @return the offsets of each indicator found in the file
+     */
+    public Map<Indicator, long[]> getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the total number of occurrences of an indicator, including
+     * occurrences beyond the recorded offsets.
+     *
+     * @param indicator the indicator
+     * @return the number of occurrences
+     */
+    public long getCount(Indicator indicator) {
+        return counts.getOrDefault(indicator, 0L);
+    }
+}
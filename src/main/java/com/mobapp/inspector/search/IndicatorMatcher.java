@@ -0,0 +1,144 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Scans each file once for a whole dictionary of indicators.
+ * <p>
+ * All literal indicators are compiled into one Aho-Corasick automaton, so
+ * they cost a single pass however many there are. Each regular expression
+ * is compiled on its own and run over the same window in turn, so every
+ * window of a file is still read only once, and matches of different
+ * indicators that overlap or nest are all reported.
+ */
+public class IndicatorMatcher implements FileMatcher<IndicatorFindings> {
+
+    private static final int MAX_RECORDED_OFFSETS = 1000;
+    private static final int REGEX_OVERLAP = 4096;
+
+    private final List<Indicator> indicators;
+    private final List<Indicator> literals = new ArrayList<>();
+    private final List<Indicator> regexes = new ArrayList<>();
+    private final AhoCorasick automaton;
+    private final List<Pattern> regexPatterns = new ArrayList<>();
+
+    /**
+     * Compiles a dictionary of indicators.
+     *
+     * @param indicators the indicators to scan for
+     * @throws IllegalArgumentException if the regular expression of an indicator does not compile
+     */
+    public IndicatorMatcher(List<Indicator> indicators) {
+        this.indicators = indicators;
+
+        List<byte[]> literalPatterns = new ArrayList<>();
+        for (Indicator indicator : indicators) {
+            if (indicator.getKind() == Indicator.Kind.LITERAL) {
+                literals.add(indicator);
+                literalPatterns.add(indicator.getPattern().getBytes(StandardCharsets.UTF_8));
+            } else {
+                try {
+                    regexPatterns.add(Pattern.compile(indicator.getPattern()));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regular expression for indicator '"
+                        + indicator.getName() + "': " + e.getDescription(), e);
+                }
+                regexes.add(indicator);
+            }
+        }
+
+        automaton = literalPatterns.isEmpty() ? null : new AhoCorasick(literalPatterns);
+    }
+
+    public List<Indicator> getIndicators() {
+        return indicators;
+    }
+
+    @Override
+    public IndicatorFindings match(File file, CancellationToken token) throws IOException {
+        Map<Indicator, OffsetList> found = new LinkedHashMap<>();
+        int overlap = regexes.isEmpty() ? 0 : REGEX_OVERLAP;
+        int[] state = { automaton != null ? automaton.initialState() : 0 };
+        // End offset of the last reported match of each regular expression
+        long[] reportedTo = new long[regexes.size()];
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileWindows.forEach(channel, overlap, token, (window, baseOffset, last) -> {
+                int length = window.limit();
+                // The automaton carries its state across windows, so it skips the overlap it has already seen
+                int literalStart = baseOffset == 0 ? 0 : Math.min(overlap, length);
+
+                if (automaton != null) {
+                    state[0] = automaton.scan(window, literalStart, length, state[0], baseOffset,
+                            (patternId, offset) -> record(found, literals.get(patternId), offset));
+                }
+                if (!regexes.isEmpty()) {
+                    scanRegexes(window, baseOffset, last ? length : length - overlap, reportedTo, found, token);
+                }
+                return true;
+            });
+        }
+
+        if (found.isEmpty()) {
+            return null;
+        }
+
+        Map<Indicator, long[]> offsets = new LinkedHashMap<>();
+        Map<Indicator, Long> counts = new LinkedHashMap<>();
+        for (Indicator indicator : indicators) {
+            OffsetList list = found.get(indicator);
+            if (list != null) {
+                offsets.put(indicator, list.toArray());
+                counts.put(indicator, list.count());
+            }
+        }
+        return new IndicatorFindings(file, offsets, counts);
+    }
+
+    /**
+     * Runs each regular expression over a window. Matches starting at or after
+     * {@code reportLimit} lie in the overlap and are left to the next window.
+     *
+     * @param window the window to scan
+     * @param baseOffset the file offset of the window
+     * @param reportLimit the index from which matches are not reported
+     * @param reportedTo the end offset of the last reported match of each expression, updated
+     * @param found the findings to add to
+     * @param token checked while the expressions run, so a runaway pattern can be stopped
+     */
+    private void scanRegexes(ByteBuffer window, long baseOffset, int reportLimit, long[] reportedTo,
+                             Map<Indicator, OffsetList> found, CancellationToken token) {
+        CharSequence text = new CancellableCharSequence(new ByteCharSequence(window, 0, window.limit()), token);
+        for (int i = 0; i < regexes.size(); i++) {
+            Matcher matcher = regexPatterns.get(i).matcher(text);
+            while (matcher.find()) {
+                int start = matcher.start();
+                if (start >= reportLimit) {
+                    break;
+                }
+                // Skip empty matches and those inside a match reported from the previous window
+                if (matcher.end() == start || baseOffset + start < reportedTo[i]) {
+                    continue;
+                }
+                record(found, regexes.get(i), baseOffset + start);
+                reportedTo[i] = baseOffset + matcher.end();
+            }
+        }
+    }
+
+    private static void record(Map<Indicator, OffsetList> found, Indicator indicator, long offset) {
+        found.computeIfAbsent(indicator, key -> new OffsetList(MAX_RECORDED_OFFSETS)).add(offset);
+    }
+}
@@ -0,0 +1,37 @@
+package com.mobapp.inspector.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of match offsets, capped to bound memory on pathological files.
+ * Offsets beyond the cap are counted but not stored.
+ */
+class OffsetList {
+    private final int maxRecorded;
+    private long[] offsets = new long[16];
+    private int size;
+    private long count;
+
+    OffsetList(int maxRecorded) {
+        this.maxRecorded = maxRecorded;
+    }
+
+    void add(long offset) {
+        count++;
+        if (size == maxRecorded) {
+            return;
+        }
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.min(size * 2, maxRecorded));
+        }
+        offsets[size++] = offset;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(offsets, size);
+    }
+}
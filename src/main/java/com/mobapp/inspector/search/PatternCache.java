@@ -0,0 +1,46 @@
+package com.mobapp.inspector.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the regular expressions typed into the search field, keeping the
+ * most recently used ones. Re-running a query, switching between filename
+ * and content search or stepping back to an earlier query reuses the
+ * compiled pattern instead of compiling it again. Patterns are matched
+ * case-insensitively, like substring searches.
+ */
+public final class PatternCache {
+
+    private static final int MAX_PATTERNS = 64;
+
+    private static final Map<String, Pattern> PATTERNS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+            return size() > MAX_PATTERNS;
+        }
+    };
+
+    private PatternCache() {
+    }
+
+    /**
+     * Returns the compiled form of a regular expression.
+     *
+     * @param regex the regular expression
+     * @return the case-insensitive pattern
+     * @throws PatternSyntaxException if the expression is not valid
+     */
+    public static Pattern compile(String regex) {
+        synchronized (PATTERNS) {
+            Pattern pattern = PATTERNS.get(regex);
+            if (pattern == null) {
+                pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                PATTERNS.put(regex, pattern);
+            }
+            return pattern;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.mobapp.inspector.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Remembers the complete result set of the last substring query so that an
+ * extended query only has to re-check those results.
+ * <p>
+ * Anything that contains "token" also contains "tok", so when the new query
+ * contains the previous one, the previous hits are a superset of the new
+ * hits. The remembered set is tied to a source, such as a root folder or an
+ * index instance, and is only reused while that source is unchanged.
+ * Instances are not thread-safe and are meant to be used from one thread.
+ *
+ * @param <T> the type of a result
+ */
+public class QueryNarrowing<T> {
+
+    private Object source;
+    private String query;
+    private List<T> results;
+
+    /**
+     * Records the result set of a query. Only complete result sets may be
+     * recorded; a truncated or cancelled search must call {@link #clear()} instead.
+     *
+     * @param source the source the query ran against
+     * @param query the query
+     * @param results every result of the query
+     */
+    public void remember(Object source, String query, List<T> results) {
+        this.source = source;
+        this.query = query.toLowerCase();
+        this.results = new ArrayList<>(results);
+    }
+
+    /**
+     * Forgets the remembered result set.
+     */
+    public void clear() {
+        source = null;
+        query = null;
+        results = null;
+    }
+
+    /**
+     * Returns the candidates for a new query, if the remembered result set can
+     * be narrowed to answer it.
+     *
+     * @param source the source the new query runs against
+     * @param newQuery the new query
+     * @return the previous results, which include every result of the new query,
+     *         or null if a full search is needed
+     */
+    public List<T> candidates(Object source, String newQuery) {
+        if (results == null || !Objects.equals(this.source, source) || !newQuery.toLowerCase().contains(query)) {
+            return null;
+        }
+        return results;
+    }
+
+    /**
+     * Answers a new query by filtering the remembered result set, if possible.
+     *
+     * @param source the source the new query runs against
+     * @param newQuery the new query
+     * @param stillMatches decides whether a previous result matches the new query
+     * @return the results of the new query, or null if a full search is needed
+     */
+    public List<T> narrow(Object source, String newQuery, Predicate<T> stillMatches) {
+        List<T> candidates = candidates(source, newQuery);
+        if (candidates == null) {
+            return null;
+        }
+
+        List<T> narrowed = new ArrayList<>();
+        for (T candidate : candidates) {
+            if (stillMatches.test(candidate)) {
+                narrowed.add(candidate);
+            }
+        }
+        return narrowed;
+    }
+}
@@ -0,0 +1,371 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.mobapp.inspector.fs.FileSignature;
+
+/**
+ * Matches a regular expression against the contents of a single file.
+ * <p>
+ * The pattern is compiled once per query and run directly over each window
+ * of the file through an ISO-8859-1 {@link CharSequence} view, so no line
+ * or window is ever copied into a String; ASCII text, including the ASCII
+ * parts of UTF-8, matches as written. Text files report the line of each
+ * match, other files its byte offset. SQLite databases are matched cell
+ * by cell through a {@link DatabaseSearcher}, structured files decoded by a
+ * {@link FormatDecoder} are matched string by string, gzip and zlib data
+ * after inflating, and the entries of ZIP archives one by one.
+ * <p>
+ * Every character the pattern reads goes through a
+ * {@link CancellableCharSequence}, so a pattern that backtracks
+ * catastrophically is stopped by the file's time budget like any other
+ * slow file. Instances hold no per-file state and may be shared between
+ * search workers.
+ */
+public class RegexMatcher implements FileMatcher<SearchResult> {
+
+    private static final int MAX_MATCHES_PER_FILE = 10;
+    private static final int MAX_RECORDED_OFFSETS = 100_000;
+    // Matches longer than this may be missed where they cross a window boundary
+    private static final int WINDOW_OVERLAP = 4096;
+    private static final int MAX_LINE_LENGTH = 200;
+    private static final int CONTEXT_LENGTH = 20;
+    private static final int CANCELLATION_CHECK_STRINGS = 4096;
+    private static final String ENTRY_SEPARATOR = "!/";
+
+    private final Pattern pattern;
+    private final Predicate<File> textFilePredicate;
+    private final FormatDecoder formatDecoder;
+    private final DatabaseSearcher databaseSearcher;
+
+    /**
+     * Creates a matcher for a compiled pattern.
+     *
+     * @param pattern the pattern to search for, usually from {@link PatternCache}
+     * @param textFilePredicate decides whether matches in a file are reported by line
+     * @param formatDecoder decodes and caches structured files
+     */
+    public RegexMatcher(Pattern pattern, Predicate<File> textFilePredicate, FormatDecoder formatDecoder) {
+        this.pattern = pattern;
+        this.textFilePredicate = textFilePredicate;
+        this.formatDecoder = formatDecoder;
+        this.databaseSearcher = new DatabaseSearcher(pattern);
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Searches a file for the pattern.
+     *
+     * @param file the file to search
+     * @param token the token of the file; also stops a match that runs too long
+     * @return the search result, or null if nothing matches
+     * @throws IOException if the file cannot be read
+     * @throws java.util.concurrent.CancellationException if the search is cancelled or the file's budget runs out
+     */
+    @Override
+    public SearchResult match(File file, CancellationToken token) throws IOException {
+        FileSignature signature = FileSignature.detect(file);
+        if (signature == FileSignature.SQLITE) {
+            try {
+                return databaseSearcher.match(file, token);
+            } catch (IOException e) {
+                // Encrypted or damaged databases are still searched byte by byte
+                System.err.println("Searching database as binary: " + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        } else if (signature == FileSignature.ZIP) {
+            try {
+                return matchArchive(file, token);
+            } catch (ZipException e) {
+                // Truncated or damaged archives are still searched byte by byte
+                System.err.println("Searching archive as binary: " + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        } else if (FormatDecoder.canDecode(signature)) {
+            try {
+                List<DecodedString> strings = formatDecoder.decode(file, signature);
+                if (strings != null) {
+                    return matchDecoded(file, strings, token);
+                }
+                return matchCompressed(file, signature, token);
+            } catch (IOException e) {
+                // Malformed data is still searched byte by byte
+                System.err.println("Could not decode " + signature.getDescription() + ", searching as binary: "
+                    + file.getAbsolutePath() + " - " + e.getMessage());
+            }
+        }
+
+        boolean text = signature == null && textFilePredicate.test(file);
+        List<String> lines = new ArrayList<>();
+        OffsetList offsets = new OffsetList(MAX_RECORDED_OFFSETS);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileWindows.forEach(channel, WINDOW_OVERLAP, token, new WindowScanner(lines, offsets, text, "", token));
+        }
+
+        if (offsets.count() == 0) {
+            return null;
+        }
+        addTotal(lines, offsets.count());
+        if (!text) {
+            lines.add("Note: This is a binary file. Content may not display correctly.");
+        }
+        return new SearchResult(file, lines, offsets.toArray(), offsets.count());
+    }
+
+    /**
+     * Searches the entries of a ZIP archive as they are inflated. Archives
+     * nested in an entry are searched as the raw bytes of that entry.
+     *
+     * @param file the archive
+     * @param token checked between entries and by the pattern
+     * @return the matches, each labelled with its {@code archive!/entry} path, or null if nothing matches
+     * @throws IOException if the archive cannot be opened
+     */
+    private SearchResult matchArchive(File file, CancellationToken token) throws IOException {
+        List<String> lines = new ArrayList<>();
+        OffsetList offsets = new OffsetList(MAX_RECORDED_OFFSETS);
+
+        try (ZipFile zip = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                token.throwIfCancelled();
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+
+                String path = file.getName() + ENTRY_SEPARATOR + entry.getName();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    FileWindows.forEach(in, WINDOW_OVERLAP, token,
+                        new WindowScanner(lines, offsets, false, path + ": ", token));
+                } catch (ZipException e) {
+                    // Encrypted entries and unsupported compression methods are skipped
+                    System.err.println("Skipping archive entry: " + path + " - " + e.getMessage());
+                }
+            }
+        }
+
+        if (offsets.count() == 0) {
+            return null;
+        }
+        addTotal(lines, offsets.count());
+        lines.add("Note: Offsets are within the decompressed archive entries.");
+        // Offsets inside entries don't point into the archive file, so none are recorded
+        return new SearchResult(file, lines, new long[0], offsets.count());
+    }
+
+    /**
+     * Matches the strings decoded from a structured file. One matcher is reset
+     * onto each string, so the strings are matched where they are.
+     *
+     * @param file the file the strings were decoded from
+     * @param strings the decoded strings
+     * @param token checked every few thousand strings and by the pattern
+     * @return the strings whose value or key path matches, or null if none does
+     */
+    private SearchResult matchDecoded(File file, List<DecodedString> strings, CancellationToken token) {
+        List<String> lines = new ArrayList<>();
+        long matchCount = 0;
+        Matcher matcher = pattern.matcher("");
+
+        for (int i = 0; i < strings.size(); i++) {
+            if (i % CANCELLATION_CHECK_STRINGS == 0) {
+                token.throwIfCancelled();
+            }
+
+            DecodedString string = strings.get(i);
+            String value = string.getText();
+            boolean valueMatches = matcher.reset(new CancellableCharSequence(value, token)).find();
+            if (!valueMatches && !matcher.reset(new CancellableCharSequence(string.getPath(), token)).find()) {
+                continue;
+            }
+
+            matchCount++;
+            if (lines.size() < MAX_MATCHES_PER_FILE) {
+                String snippet = valueMatches
+                    ? DatabaseSearcher.snippet(value, matcher.start(), matcher.end() - matcher.start())
+                    : DatabaseSearcher.snippet(value, 0, 0);
+                lines.add(string.getPath() + " = \"" + snippet + "\"");
+            }
+        }
+
+        if (matchCount == 0) {
+            return null;
+        }
+        addTotal(lines, matchCount);
+        return new SearchResult(file, lines, new long[0], matchCount);
+    }
+
+    /**
+     * Searches gzip or zlib data as it is inflated.
+     *
+     * @param file the compressed file
+     * @param signature gzip or zlib
+     * @param token checked between windows and by the pattern
+     * @return the matches in the decompressed data, or null if nothing matches
+     * @throws IOException if the file cannot be read or inflated
+     */
+    private SearchResult matchCompressed(File file, FileSignature signature, CancellationToken token) throws IOException {
+        List<String> lines = new ArrayList<>();
+        OffsetList offsets = new OffsetList(MAX_RECORDED_OFFSETS);
+        String location = signature == FileSignature.GZIP ? "gzip: " : "zlib: ";
+        try (InputStream in = FormatDecoder.openDecompressed(file, signature)) {
+            FileWindows.forEach(in, WINDOW_OVERLAP, token, new WindowScanner(lines, offsets, false, location, token));
+        }
+
+        if (offsets.count() == 0) {
+            return null;
+        }
+        addTotal(lines, offsets.count());
+        lines.add("Note: Offsets are within the decompressed data.");
+        return new SearchResult(file, lines, new long[0], offsets.count());
+    }
+
+    private static void addTotal(List<String> lines, long matchCount) {
+        if (matchCount > MAX_MATCHES_PER_FILE) {
+            lines.add("... (" + matchCount + " matches in total)");
+        }
+    }
+
+    /**
+     * Runs the pattern over each window of one file or stream. A match is
+     * reported by the window it starts in, unless it starts in the overlap
+     * that the next window repeats, or inside a match already reported.
+     */
+    private class WindowScanner implements FileWindows.WindowVisitor {
+        private final List<String> lines;
+        private final OffsetList offsets;
+        private final boolean text;
+        // Prefix of the display lines, naming the archive entry or stream being scanned
+        private final String location;
+        private final CancellationToken token;
+        // End offset of the last reported match
+        private long reportedTo;
+        // Lines are counted incrementally: the line number at offset countedTo
+        private long lineNumber = 1;
+        private long countedTo;
+
+        WindowScanner(List<String> lines, OffsetList offsets, boolean text, String location, CancellationToken token) {
+            this.lines = lines;
+            this.offsets = offsets;
+            this.text = text;
+            this.location = location;
+            this.token = token;
+        }
+
+        @Override
+        public boolean visit(ByteBuffer window, long baseOffset, boolean last) {
+            int length = window.limit();
+            int reportLimit = last ? length : length - WINDOW_OVERLAP;
+
+            Matcher matcher = pattern.matcher(
+                new CancellableCharSequence(new ByteCharSequence(window, 0, length), token));
+            while (matcher.find()) {
+                int start = matcher.start();
+                if (start >= reportLimit) {
+                    break;
+                }
+                if (matcher.end() == start || baseOffset + start < reportedTo) {
+                    continue;
+                }
+                report(window, baseOffset, start, matcher.end());
+                reportedTo = baseOffset + matcher.end();
+            }
+
+            if (text) {
+                countLines(window, baseOffset, reportLimit);
+            }
+            return true;
+        }
+
+        private void report(ByteBuffer window, long baseOffset, int start, int end) {
+            offsets.add(baseOffset + start);
+            if (text) {
+                countLines(window, baseOffset, start);
+            }
+            if (lines.size() >= MAX_MATCHES_PER_FILE) {
+                return;
+            }
+
+            if (text) {
+                lines.add(location + "Line " + lineNumber + ": " + lineAround(window, start));
+            } else {
+                lines.add(location + "Offset " + (baseOffset + start) + ": \"" + contextAround(window, start, end) + "\"");
+            }
+        }
+
+        /**
+         * Advances the line count to a position in the window.
+         *
+         * @param window the current window
+         * @param baseOffset the offset of the window
+         * @param position the index in the window to count up to
+         */
+        private void countLines(ByteBuffer window, long baseOffset, int position) {
+            for (int i = (int) (countedTo - baseOffset); i < position; i++) {
+                if (window.get(i) == '\n') {
+                    lineNumber++;
+                }
+            }
+            countedTo = Math.max(countedTo, baseOffset + position);
+        }
+
+        /**
+         * Cuts the line containing a match out of the window, decoded as UTF-8.
+         *
+         * @param window the window containing the match
+         * @param start the index of the match
+         * @return the line, trimmed and shortened to a bounded length
+         */
+        private String lineAround(ByteBuffer window, int start) {
+            int lineStart = start;
+            while (lineStart > 0 && window.get(lineStart - 1) != '\n' && start - lineStart < MAX_LINE_LENGTH) {
+                lineStart--;
+            }
+            int lineEnd = start;
+            while (lineEnd < window.limit() && window.get(lineEnd) != '\n' && lineEnd - lineStart < 2 * MAX_LINE_LENGTH) {
+                lineEnd++;
+            }
+
+            byte[] bytes = new byte[lineEnd - lineStart];
+            window.get(lineStart, bytes);
+            return new String(bytes, StandardCharsets.UTF_8).trim();
+        }
+
+        /**
+         * Extracts printable characters around a match for display.
+         *
+         * @param window the window containing the match
+         * @param start the index of the match
+         * @param end the index after the match
+         * @return the context with non-printable characters replaced by dots
+         */
+        private String contextAround(ByteBuffer window, int start, int end) {
+            int contextStart = Math.max(0, start - CONTEXT_LENGTH);
+            int contextEnd = Math.min(window.limit(), Math.min(end, start + MAX_LINE_LENGTH) + CONTEXT_LENGTH);
+
+            StringBuilder context = new StringBuilder(contextEnd - contextStart);
+            for (int i = contextStart; i < contextEnd; i++) {
+                int c = window.get(i) & 0xFF;
+                context.append(c >= 32 && c <= 126 ? (char) c : '.');
+            }
+            return context.toString();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.mobapp.inspector.fs.FileSignature;
+
+/**
+ * Decides which files a content search reads, before they are opened.
+ * <p>
+ * Name, size and modification time rules are checked during the directory
+ * walk against the attributes read there, so excluded folders are never
+ * listed and excluded files are never opened. Only the file type rule needs
+ * the leading bytes of a file, and it is checked just before the file is read.
+ * The type rule either keeps only the selected types or skips them; text and
+ * other files without a recognised signature can be selected as well.
+ * <p>
+ * Glob patterns are matched case-insensitively. A pattern without a slash is
+ * matched against the name of each file and folder, for example
+ * {@code *.so}; a pattern with a slash is matched against the path relative
+ * to the search root, for example {@code lib/**}. Instances are immutable.
+ */
+public class SearchFilter {
+
+    /** A filter that accepts every file. */
+    public static final SearchFilter NONE = new SearchFilter(List.of(), List.of(), 0, Long.MAX_VALUE,
+            Long.MIN_VALUE, Long.MAX_VALUE, null, false, false);
+
+    private final List<String> includeGlobs;
+    private final List<String> excludeGlobs;
+    private final List<PathMatcher> includeMatchers;
+    private final List<PathMatcher> excludeMatchers;
+    private final long minSize;
+    private final long maxSize;
+    private final long modifiedAfter;
+    private final long modifiedBefore;
+    private final Set<FileSignature> types;
+    private final boolean otherTypes;
+    private final boolean excludeTypes;
+
+    /**
+     * Creates a filter.
+     *
+     * @param includeGlobs files must match at least one of these patterns; empty to include every file
+     * @param excludeGlobs files and folders matching any of these patterns are skipped
+     * @param minSize the smallest file size in bytes to search
+     * @param maxSize the largest file size in bytes to search
+     * @param modifiedAfter the earliest modification time to search, in milliseconds since the epoch
+     * @param modifiedBefore the latest modification time to search, in milliseconds since the epoch
+     * @param types the selected sniffed file types, or null for no type rule
+     * @param otherTypes true if files without a recognised signature, such as text, are selected too
+     * @param excludeTypes true to skip the selected types and search all others,
+     *                     false to search only the selected types
+     * @throws IllegalArgumentException if a pattern is not a valid glob
+     */
+    public SearchFilter(List<String> includeGlobs, List<String> excludeGlobs, long minSize, long maxSize,
+                        long modifiedAfter, long modifiedBefore, Set<FileSignature> types,
+                        boolean otherTypes, boolean excludeTypes) {
+        this.includeGlobs = List.copyOf(includeGlobs);
+        this.excludeGlobs = List.copyOf(excludeGlobs);
+        this.includeMatchers = compile(this.includeGlobs);
+        this.excludeMatchers = compile(this.excludeGlobs);
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.modifiedAfter = modifiedAfter;
+        this.modifiedBefore = modifiedBefore;
+        if (types != null) {
+            EnumSet<FileSignature> copy = EnumSet.noneOf(FileSignature.class);
+            copy.addAll(types);
+            this.types = Collections.unmodifiableSet(copy);
+        } else {
+            this.types = null;
+        }
+        this.otherTypes = types != null && otherTypes;
+        this.excludeTypes = types != null && excludeTypes;
+    }
+
+    private static List<PathMatcher> compile(List<String> globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.toLowerCase()));
+        }
+        return matchers;
+    }
+
+    /**
+     * Splits a comma or whitespace separated list of glob patterns.
+     *
+     * @param text the patterns as typed by the user
+     * @return the patterns, without empty entries
+     */
+    public static List<String> parseGlobs(String text) {
+        List<String> globs = new ArrayList<>();
+        for (String glob : text.split("[,\\s]+")) {
+            if (!glob.isEmpty()) {
+                globs.add(glob);
+            }
+        }
+        return globs;
+    }
+
+    public List<String> getIncludeGlobs() {
+        return includeGlobs;
+    }
+
+    public List<String> getExcludeGlobs() {
+        return excludeGlobs;
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getModifiedAfter() {
+        return modifiedAfter;
+    }
+
+    public long getModifiedBefore() {
+        return modifiedBefore;
+    }
+
+    public Set<FileSignature> getTypes() {
+        return types;
+    }
+
+    public boolean isOtherTypes() {
+        return otherTypes;
+    }
+
+    public boolean isExcludeTypes() {
+        return excludeTypes;
+    }
+
+    /**
+     * Checks whether the filter accepts every file.
+     *
+     * @return true if no rule is set
+     */
+    public boolean isEmpty() {
+        return equals(NONE);
+    }
+
+    /**
+     * Checks whether a folder is walked.
+     *
+     * @param relativePath the path of the folder relative to the search root
+     * @return false if the folder and everything below it is excluded
+     */
+    public boolean acceptsDirectory(Path relativePath) {
+        return !matchesAny(excludeMatchers, relativePath);
+    }
+
+    /**
+     * Checks the rules that need only the attributes of a file.
+     *
+     * @param relativePath the path of the file relative to the search root
+     * @param attributes the attributes of the file
+     * @return true if the file passes the name, size and modification time rules
+     */
+    public boolean accepts(Path relativePath, BasicFileAttributes attributes) {
+        long size = attributes.size();
+        if (size < minSize || size > maxSize) {
+            return false;
+        }
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (modified < modifiedAfter || modified > modifiedBefore) {
+            return false;
+        }
+        if (matchesAny(excludeMatchers, relativePath)) {
+            return false;
+        }
+        return includeMatchers.isEmpty() || matchesAny(includeMatchers, relativePath);
+    }
+
+    /**
+     * Checks whether every folder between the search root and a file is walked,
+     * for files that were found without walking, such as index candidates.
+     *
+     * @param relativePath the path of the file relative to the search root
+     * @return false if a folder on the way to the file is excluded
+     */
+    public boolean acceptsParents(Path relativePath) {
+        if (excludeMatchers.isEmpty()) {
+            return true;
+        }
+        for (Path parent = relativePath.getParent(); parent != null; parent = parent.getParent()) {
+            if (!acceptsDirectory(parent)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the file type rule, which reads the leading bytes of the file.
+     *
+     * @param file the file
+     * @return true if no type rule is set or the file's sniffed type passes it
+     */
+    public boolean acceptsType(File file) {
+        if (types == null) {
+            return true;
+        }
+        FileSignature signature = FileSignature.detect(file);
+        boolean selected = signature != null ? types.contains(signature) : otherTypes;
+        return selected != excludeTypes;
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relativePath) {
+        if (matchers.isEmpty()) {
+            return false;
+        }
+        Path lowerPath = Paths.get(relativePath.toString().toLowerCase());
+        Path lowerName = lowerPath.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(lowerPath) || (lowerName != null && matcher.matches(lowerName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchFilter)) {
+            return false;
+        }
+        SearchFilter other = (SearchFilter) o;
+        return minSize == other.minSize && maxSize == other.maxSize
+                && modifiedAfter == other.modifiedAfter && modifiedBefore == other.modifiedBefore
+                && includeGlobs.equals(other.includeGlobs) && excludeGlobs.equals(other.excludeGlobs)
+                && Objects.equals(types, other.types)
+                && otherTypes == other.otherTypes && excludeTypes == other.excludeTypes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(includeGlobs, excludeGlobs, minSize, maxSize, modifiedAfter, modifiedBefore, types,
+                otherTypes, excludeTypes);
+    }
+}
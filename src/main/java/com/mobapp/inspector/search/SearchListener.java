@@ -0,0 +1,26 @@
+package com.mobapp.inspector.search;
+
+/**
+ * Receives results and progress from a running content search.
+ * Callbacks are always invoked on the thread that started the search,
+ * never on the search worker threads.
+ *
+ * @param <R> the type of per-file result produced by the search
+ */
+public interface SearchListener<R> {
+
+    /**
+     * Called for every file that matched the search.
+     *
+     * @param result the result produced for the matching file
+     */
+    void onResult(R result);
+
+    /**
+     * Called periodically while the search is running.
+     *
+     * @param stats a live view of the search statistics
+     */
+    default void onProgress(SearchStats stats) {
+    }
+}
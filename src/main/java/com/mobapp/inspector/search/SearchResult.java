@@ -0,0 +1,71 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A file that matched a content search, together with the matching lines
+ * or binary match descriptions found in it. Binary matches also carry the
+ * byte offset of every match, and database matches the cell of every match.
+ */
+public class SearchResult {
+    private static final long[] NO_OFFSETS = new long[0];
+
+    private final File file;
+    private final List<String> matchingLines;
+    private final long[] matchOffsets;
+    private final long matchCount;
+    private final List<DatabaseMatch> databaseMatches;
+
+    public SearchResult(File file, List<String> matchingLines) {
+        this(file, matchingLines, NO_OFFSETS, matchingLines.size());
+    }
+
+    public SearchResult(File file, List<String> matchingLines, long[] matchOffsets, long matchCount) {
+        this(file, matchingLines, matchOffsets, matchCount, Collections.emptyList());
+    }
+
+    public SearchResult(File file, List<String> matchingLines, List<DatabaseMatch> databaseMatches) {
+        this(file, matchingLines, NO_OFFSETS, databaseMatches.size(), databaseMatches);
+    }
+
+    private SearchResult(File file, List<String> matchingLines, long[] matchOffsets, long matchCount,
+                         List<DatabaseMatch> databaseMatches) {
+        this.file = file;
+        this.matchingLines = matchingLines;
+        this.matchOffsets = matchOffsets;
+        this.matchCount = matchCount;
+        this.databaseMatches = databaseMatches;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public List<String> getMatchingLines() {
+        return matchingLines;
+    }
+
+    /**
+     * Returns the byte offsets of the matches, if the file was matched as binary.
+     *
+     * @return the recorded match offsets, empty for line-based matches
+     */
+    public long[] getMatchOffsets() {
+        return matchOffsets;
+    }
+
+    public long getMatchCount() {
+        return matchCount;
+    }
+
+    /**
+     * Returns the matching cells, if the file was searched as an SQLite database.
+     *
+     * @return the matching cells, empty for other files
+     */
+    public List<DatabaseMatch> getDatabaseMatches() {
+        return databaseMatches;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters for a content search. Workers update the counters
+ * concurrently; readers may sample them at any time.
+ */
+public class SearchStats {
+    private final LongAdder filesScanned = new LongAdder();
+    private final LongAdder bytesScanned = new LongAdder();
+    private final LongAdder filesMatched = new LongAdder();
+    private final LongAdder filesSkipped = new LongAdder();
+    private final Queue<File> overBudgetFiles = new ConcurrentLinkedQueue<>();
+    private final int parallelism;
+    private final long startNanos;
+    private volatile long endNanos = -1;
+
+    public SearchStats(int parallelism) {
+        this.parallelism = parallelism;
+        this.startNanos = System.nanoTime();
+    }
+
+    void recordFile(long bytes) {
+        filesScanned.increment();
+        bytesScanned.add(bytes);
+    }
+
+    void recordMatch() {
+        filesMatched.increment();
+    }
+
+    void recordSkipped() {
+        filesSkipped.increment();
+    }
+
+    void recordOverBudget(File file) {
+        overBudgetFiles.add(file);
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getFilesScanned() {
+        return filesScanned.sum();
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned.sum();
+    }
+
+    public long getFilesMatched() {
+        return filesMatched.sum();
+    }
+
+    /**
+     * Returns the number of files a search filter ruled out without reading them.
+     *
+     * @return the number of skipped files
+     */
+    public long getFilesSkipped() {
+        return filesSkipped.sum();
+    }
+
+    /**
+     * Returns the files that were abandoned because they exceeded the per-file
+     * time budget, so they can be searched again or inspected by hand.
+     *
+     * @return the abandoned files
+     */
+    public List<File> getOverBudgetFiles() {
+        return new ArrayList<>(overBudgetFiles);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isFinished() {
+        return endNanos >= 0;
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos >= 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    public double getFilesPerSecond() {
+        return perSecond(getFilesScanned());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(getBytesScanned());
+    }
+
+    private double perSecond(long count) {
+        long millis = Math.max(1, getElapsedMillis());
+        return count * 1000.0 / millis;
+    }
+
+    /**
+     * Returns a one-line summary suitable for a status label.
+     *
+     * @return the summary text
+     */
+    public String getSummary() {
+        String summary = String.format("%d files, %s in %.1f s (%.0f files/s, %s/s, %d threads)",
+                getFilesScanned(), formatBytes(getBytesScanned()), getElapsedMillis() / 1000.0,
+                getFilesPerSecond(), formatBytes((long) getBytesPerSecond()), parallelism);
+        long skipped = getFilesSkipped();
+        if (skipped > 0) {
+            summary += ", " + skipped + " skipped by filters";
+        }
+        int overBudget = overBudgetFiles.size();
+        if (overBudget > 0) {
+            summary += ", " + overBudget + " over time budget";
+        }
+        return summary;
+    }
+
+    /**
+     * Formats a byte count to a human-readable string.
+     *
+     * @param size the number of bytes
+     * @return a human-readable representation of the size
+     */
+    public static String formatBytes(long size) {
+        if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.2f KB", size / 1024.0);
+        } else if (size < 1024 * 1024 * 1024) {
+            return String.format("%.2f MB", size / (1024.0 * 1024.0));
+        } else {
+            return String.format("%.2f GB", size / (1024.0 * 1024.0 * 1024.0));
+        }
+    }
+}
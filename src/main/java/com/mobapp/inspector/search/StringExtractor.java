@@ -0,0 +1,172 @@
+package com.mobapp.inspector.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extracts printable strings from binary files, like the Unix {@code strings}
+ * tool, recognising single-byte ASCII as well as UTF-16LE and UTF-16BE text.
+ * <p>
+ * All encodings are detected in one pass over the file. A UTF-16 run is a
+ * sequence of printable bytes separated by single NUL bytes; whether it is
+ * little or big endian is decided by the NUL that ends or starts it.
+ * Instances are not thread-safe.
+ */
+public class StringExtractor {
+
+    private final int minLength;
+    private final int maxStrings;
+    private final long maxChars;
+
+    private List<ExtractedString> strings;
+    private long totalChars;
+
+    private final StringBuilder narrow = new StringBuilder();
+    private long narrowStart;
+
+    private final StringBuilder wide = new StringBuilder();
+    private long wideStart;
+    private boolean wideExpectZero;
+    private boolean wideLeadingZero;
+
+    private int previous = -1;
+
+    /**
+     * Creates an extractor.
+     *
+     * @param minLength the minimum number of characters in a reported string
+     * @param maxStrings the maximum number of strings to extract
+     * @param maxChars the maximum number of characters to extract over all strings
+     */
+    public StringExtractor(int minLength, int maxStrings, long maxChars) {
+        this.minLength = minLength;
+        this.maxStrings = maxStrings;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Extracts the strings of a file.
+     *
+     * @param file the file to read
+     * @param token checked between windows; extraction stops when it is cancelled
+     * @return the strings found, ordered by offset; at most {@code maxStrings} entries
+     * @throws IOException if the file cannot be read
+     * @throws java.util.concurrent.CancellationException if the token is cancelled
+     */
+    public List<ExtractedString> extract(File file, CancellationToken token) throws IOException {
+        strings = new ArrayList<>();
+        totalChars = 0;
+        narrow.setLength(0);
+        wide.setLength(0);
+        wideExpectZero = false;
+        previous = -1;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileWindows.forEach(channel, 0, token, (window, baseOffset, last) -> {
+                int length = window.limit();
+                for (int i = 0; i < length && !isFull(); i++) {
+                    int b = window.get(i) & 0xFF;
+                    long position = baseOffset + i;
+                    processNarrow(b, position);
+                    processWide(b, position);
+                    previous = b;
+                }
+                return !isFull();
+            });
+        }
+
+        // Flush the runs still open at the end of the file
+        flushNarrow();
+        flushWide(!wideExpectZero);
+
+        List<ExtractedString> result = strings;
+        strings = null;
+        if (result.size() > maxStrings) {
+            result = new ArrayList<>(result.subList(0, maxStrings));
+        }
+        result.sort(Comparator.comparingLong(ExtractedString::getOffset));
+        return result;
+    }
+
+    private boolean isFull() {
+        return strings.size() >= maxStrings || totalChars >= maxChars;
+    }
+
+    private static boolean isPrintable(int b) {
+        return b >= 32 && b <= 126;
+    }
+
+    private void processNarrow(int b, long position) {
+        if (isPrintable(b)) {
+            if (narrow.length() == 0) {
+                narrowStart = position;
+            }
+            narrow.append((char) b);
+        } else {
+            flushNarrow();
+        }
+    }
+
+    private void processWide(int b, long position) {
+        if (wide.length() > 0) {
+            if (wideExpectZero) {
+                if (b == 0) {
+                    wideExpectZero = false;
+                    return;
+                }
+                flushWide(false);
+            } else {
+                if (isPrintable(b)) {
+                    wide.append((char) b);
+                    wideExpectZero = true;
+                    return;
+                }
+                flushWide(true);
+            }
+        }
+
+        if (isPrintable(b)) {
+            wideStart = position;
+            wide.append((char) b);
+            wideExpectZero = true;
+            wideLeadingZero = previous == 0;
+        }
+    }
+
+    private void flushNarrow() {
+        if (narrow.length() >= minLength) {
+            add(new ExtractedString(narrowStart, TextEncoding.ASCII, narrow.toString()));
+        }
+        narrow.setLength(0);
+    }
+
+    /**
+     * Ends the current UTF-16 run and records it if it is long enough.
+     *
+     * @param trailingZero whether the last character of the run was followed by a NUL byte
+     */
+    private void flushWide(boolean trailingZero) {
+        if (trailingZero || !wideLeadingZero) {
+            // Little endian: every character is followed by its NUL. Without a trailing
+            // NUL the last character belongs to whatever follows the run.
+            int length = trailingZero ? wide.length() : wide.length() - 1;
+            if (length >= minLength) {
+                add(new ExtractedString(wideStart, TextEncoding.UTF_16LE, wide.substring(0, length)));
+            }
+        } else if (wide.length() >= minLength) {
+            // Big endian: every character is preceded by its NUL
+            add(new ExtractedString(wideStart - 1, TextEncoding.UTF_16BE, wide.toString()));
+        }
+        wide.setLength(0);
+    }
+
+    private void add(ExtractedString string) {
+        strings.add(string);
+        totalChars += string.getText().length();
+    }
+}
@@ -0,0 +1,26 @@
+package com.mobapp.inspector.search;
+
+/**
+ * Character encodings recognised when matching and extracting text from binary files.
+ */
+public enum TextEncoding {
+    ASCII("ASCII"),
+    UTF_8("UTF-8"),
+    UTF_16LE("UTF-16LE"),
+    UTF_16BE("UTF-16BE");
+
+    private final String label;
+
+    TextEncoding(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,528 @@
+package com.mobapp.inspector.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.mobapp.inspector.fs.CacheDirectory;
+import com.mobapp.inspector.fs.FileSignature;
+
+/**
+ * Persistent trigram index over the files below a root folder.
+ * <p>
+ * For each file the index stores the set of case-folded byte trigrams it
+ * contains, keyed by relative path, size and modification time. A query
+ * can only match a file whose trigram set contains every trigram of the
+ * query, so the content search only has to read the files that pass this
+ * test. Trigrams are also taken from the byte stream with NUL bytes removed,
+ * which turns ASCII text stored as UTF-16LE or UTF-16BE into plain ASCII, so
+ * wide strings stay searchable through the index. Files that are too large
+ * or too diverse to index usefully, and files that are searched in a decoded
+ * form, such as SQLite databases, archives and binary property lists, are
+ * always treated as candidates.
+ * <p>
+ * The index never answers for a file system it has not seen: while an
+ * update is pending or running, or once a folder has gained or lost entries
+ * since the last update, queries fall back to a full walk, and files whose
+ * size or modification time changed since they were indexed are always
+ * candidates.
+ */
+public class TrigramIndex {
+
+    private static final String CACHE_KIND = "trigram-index";
+    private static final int FORMAT_MAGIC = 0x54524935; // "TRI5"
+    private static final long MAX_INDEXED_FILE_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_TRIGRAMS_PER_FILE = 30000;
+    private static final int TRIGRAM_SPACE = 1 << 24;
+
+    private static final ThreadLocal<BitSet> TRIGRAM_SCRATCH = ThreadLocal.withInitial(() -> new BitSet(TRIGRAM_SPACE));
+
+    private final File root;
+    private volatile Map<String, Entry> entries = Collections.emptyMap();
+    // Modification time of each folder when it was last listed, by relative path
+    private volatile Map<String, Long> folders = Collections.emptyMap();
+    private volatile boolean ready;
+    private boolean updating;
+    private boolean updatePending;
+    private int runningUpdates;
+
+    private TrigramIndex(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Opens the index for a root folder, loading a previously saved index if one exists.
+     * The loaded index is not used for queries until {@link #update()} has verified it.
+     *
+     * @param root the root folder
+     * @return the index
+     */
+    public static TrigramIndex open(File root) {
+        TrigramIndex index = new TrigramIndex(root);
+        try {
+            index.load();
+        } catch (IOException e) {
+            System.err.println("Could not load search index for " + root + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether the index has been brought up to date at least once.
+     *
+     * @return true if queries can be answered from the index
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Starts an incremental update on a background thread. If an update is
+     * already running, another one is run as soon as it finishes.
+     */
+    public void updateAsync() {
+        synchronized (this) {
+            if (updating) {
+                updatePending = true;
+                return;
+            }
+            updating = true;
+        }
+
+        Thread indexThread = new Thread(() -> {
+            boolean again;
+            do {
+                try {
+                    update();
+                } catch (IOException e) {
+                    System.err.println("Error updating search index for " + root + ": " + e.getMessage());
+                }
+                synchronized (this) {
+                    again = updatePending;
+                    updatePending = false;
+                    updating = again;
+                }
+            } while (again);
+        }, "trigram-index");
+        indexThread.setDaemon(true);
+        indexThread.setPriority(Thread.MIN_PRIORITY);
+        indexThread.start();
+    }
+
+    /**
+     * Brings the index up to date with the file system. Only files whose
+     * size or modification time changed are read again.
+     *
+     * @throws IOException if the index cannot be saved
+     */
+    public void update() throws IOException {
+        synchronized (this) {
+            runningUpdates++;
+        }
+        try {
+            updateEntries();
+        } finally {
+            synchronized (this) {
+                runningUpdates--;
+            }
+        }
+    }
+
+    private void updateEntries() throws IOException {
+        Map<String, Entry> current = entries;
+        Map<String, Entry> next = new ConcurrentHashMap<>();
+        Map<String, Long> listedFolders = new HashMap<>();
+        List<File> changed = new ArrayList<>();
+
+        for (File file : listFiles(listedFolders)) {
+            String relativePath = relativize(file);
+            Entry entry = current.get(relativePath);
+            if (entry != null && entry.size == file.length() && entry.modified == file.lastModified()) {
+                next.put(relativePath, entry);
+            } else {
+                changed.add(file);
+            }
+        }
+
+        changed.parallelStream().forEach(file -> {
+            Entry entry = indexFile(file);
+            if (entry != null) {
+                next.put(entry.path, entry);
+            }
+        });
+
+        boolean modified = !changed.isEmpty() || next.size() != current.size();
+        entries = next;
+        folders = listedFolders;
+        ready = true;
+
+        if (modified) {
+            save();
+        }
+    }
+
+    /**
+     * Returns the files that may contain the given text. Every indexed file
+     * is checked again: files that were deleted are left out, and files whose
+     * size or modification time changed are always candidates.
+     *
+     * @param searchText the text to search for
+     * @return the candidate files, or null if the index cannot narrow this
+     *         query or may be missing files created since the last update
+     */
+    public List<File> candidates(String searchText) {
+        int[] queryTrigrams = queryTrigrams(searchText);
+        if (!ready || queryTrigrams == null || isUpdating()) {
+            return null;
+        }
+
+        // Creating, deleting or renaming a file changes its folder's modification time
+        for (Map.Entry<String, Long> folder : folders.entrySet()) {
+            if (new File(root, folder.getKey()).lastModified() != folder.getValue()) {
+                return null;
+            }
+        }
+
+        List<File> candidates = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            File file = new File(root, entry.path);
+            long modified = file.lastModified();
+            if (modified == 0 && !file.isFile()) {
+                continue;
+            }
+            if (file.length() != entry.size || modified != entry.modified || entry.mayContain(queryTrigrams)) {
+                candidates.add(file);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns whether an update is running or waiting to run, in which case
+     * the entries may not reflect the file system.
+     *
+     * @return true while an update is pending or running
+     */
+    private synchronized boolean isUpdating() {
+        return updating || runningUpdates > 0;
+    }
+
+    /**
+     * Returns the number of files currently in the index.
+     *
+     * @return the number of indexed files
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Computes the distinct trigrams of a query, or null if the query is too
+     * short or contains characters the byte-level index does not fold.
+     *
+     * @param searchText the query
+     * @return the sorted distinct trigrams, or null
+     */
+    static int[] queryTrigrams(String searchText) {
+        if (searchText == null || searchText.length() < 3) {
+            return null;
+        }
+
+        byte[] bytes = new byte[searchText.length()];
+        for (int i = 0; i < searchText.length(); i++) {
+            char c = searchText.charAt(i);
+            if (c >= 128) {
+                return null;
+            }
+            bytes[i] = (byte) c;
+        }
+
+        int[] trigrams = new int[bytes.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = trigram(bytes[i], bytes[i + 1], bytes[i + 2]);
+        }
+        return Arrays.stream(trigrams).sorted().distinct().toArray();
+    }
+
+    private static int trigram(int b0, int b1, int b2) {
+        return (fold(b0) << 16) | (fold(b1) << 8) | fold(b2);
+    }
+
+    private static int fold(int b) {
+        b &= 0xFF;
+        return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b;
+    }
+
+    /**
+     * Reads a file and records its trigram set.
+     *
+     * @param file the file to index
+     * @return the new entry, or null if the file could not be read
+     */
+    private Entry indexFile(File file) {
+        long size = file.length();
+        long modified = file.lastModified();
+        String relativePath = relativize(file);
+
+        if (size > MAX_INDEXED_FILE_SIZE) {
+            return new Entry(relativePath, size, modified, null);
+        }
+
+        BitSet seen = TRIGRAM_SCRATCH.get();
+        int distinct = 0;
+        boolean overflow = false;
+
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int b0 = -1;
+            int b1 = -1;
+            // Last two non-NUL bytes, for the UTF-16 projection
+            int w0 = -1;
+            int w1 = -1;
+            int bytesRead;
+
+            boolean first = true;
+
+            while (!overflow && (bytesRead = in.read(buffer)) != -1) {
+                if (first) {
+                    // Databases, archives and encoded formats are matched after decoding, so
+                    // their raw bytes say nothing about what they contain
+                    if (ContentMatcher.isSearchedDecoded(FileSignature.detect(ByteBuffer.wrap(buffer, 0, bytesRead)))) {
+                        return new Entry(relativePath, size, modified, null);
+                    }
+                    first = false;
+                }
+
+                for (int i = 0; i < bytesRead; i++) {
+                    int b2 = buffer[i] & 0xFF;
+                    if (b0 != -1) {
+                        int t = trigram(b0, b1, b2);
+                        if (!seen.get(t)) {
+                            seen.set(t);
+                            distinct++;
+                        }
+                    }
+                    b0 = b1;
+                    b1 = b2;
+
+                    if (b2 != 0) {
+                        if (w0 != -1) {
+                            int t = trigram(w0, w1, b2);
+                            if (!seen.get(t)) {
+                                seen.set(t);
+                                distinct++;
+                            }
+                        }
+                        w0 = w1;
+                        w1 = b2;
+                    }
+
+                    if (distinct > MAX_TRIGRAMS_PER_FILE) {
+                        overflow = true;
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            seen.clear();
+            return null;
+        }
+
+        if (overflow) {
+            seen.clear();
+            return new Entry(relativePath, size, modified, null);
+        }
+
+        int[] trigrams = new int[distinct];
+        int n = 0;
+        for (int t = seen.nextSetBit(0); t >= 0; t = seen.nextSetBit(t + 1)) {
+            trigrams[n++] = t;
+        }
+        for (int t : trigrams) {
+            seen.clear(t);
+        }
+        return new Entry(relativePath, size, modified, trigrams);
+    }
+
+    /**
+     * Lists the non-hidden regular files below the root, matching what the content search visits.
+     *
+     * @param listedFolders receives the modification time of each folder, taken before it is listed
+     * @return the files to index
+     */
+    private List<File> listFiles(Map<String, Long> listedFolders) {
+        List<File> result = new ArrayList<>();
+        Deque<File> directories = new ArrayDeque<>();
+        directories.add(root);
+
+        while (!directories.isEmpty()) {
+            File directory = directories.poll();
+            listedFolders.put(relativize(directory), directory.lastModified());
+            File[] files = directory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isHidden()) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    directories.add(file);
+                } else if (file.isFile()) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    private String relativize(File file) {
+        return root.toPath().relativize(file.toPath()).toString();
+    }
+
+    /**
+     * Loads the saved index for this root, if any.
+     *
+     * @throws IOException if the saved index cannot be read
+     */
+    private void load() throws IOException {
+        Path path = CacheDirectory.forRoot(CACHE_KIND, root);
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+
+        Map<String, Entry> loaded = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != FORMAT_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String relativePath = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                int trigramCount = in.readInt();
+                int[] trigrams = null;
+                if (trigramCount >= 0) {
+                    trigrams = new int[trigramCount];
+                    int previous = 0;
+                    for (int t = 0; t < trigramCount; t++) {
+                        previous += readVarInt(in);
+                        trigrams[t] = previous;
+                    }
+                }
+                loaded.put(relativePath, new Entry(relativePath, size, modified, trigrams));
+            }
+        }
+        entries = loaded;
+    }
+
+    /**
+     * Writes the index to its cache file, replacing the previous one atomically.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    private void save() throws IOException {
+        Path path = CacheDirectory.forRoot(CACHE_KIND, root);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<String, Entry> snapshot = entries;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(FORMAT_MAGIC);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot.values()) {
+                out.writeUTF(entry.path);
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                if (entry.trigrams == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(entry.trigrams.length);
+                    int previous = 0;
+                    for (int t : entry.trigrams) {
+                        writeVarInt(out, t - previous);
+                        previous = t;
+                    }
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * The indexed state of one file. A null trigram set means the file was
+     * not indexed and must always be searched.
+     */
+    private static class Entry {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final int[] trigrams;
+
+        Entry(String path, long size, long modified, int[] trigrams) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.trigrams = trigrams;
+        }
+
+        boolean mayContain(int[] queryTrigrams) {
+            if (trigrams == null) {
+                return true;
+            }
+            for (int t : queryTrigrams) {
+                if (Arrays.binarySearch(trigrams, t) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -17,27 +17,46 @@ import javafx.scene.text.Text;
 import javafx.util.Duration;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.sqlite.ProgressHandler;
 
 import com.dd.plist.NSArray;
 import com.dd.plist.NSDictionary;
 import com.dd.plist.NSObject;
 import com.dd.plist.PropertyListFormatException;
 import com.dd.plist.PropertyListParser;
+import com.mobapp.inspector.fs.FileTypeDetector;
+import com.mobapp.inspector.fs.HashIndex;
+import com.mobapp.inspector.fs.MappedTextFile;
+import com.mobapp.inspector.search.CancellationToken;
+import com.mobapp.inspector.search.DatabaseSearcher;
+import com.mobapp.inspector.search.ExtractedString;
+import com.mobapp.inspector.search.StringExtractor;
 
 public class ContentViewPane extends BorderPane {
     
-    private static final int MAX_TEXT_FILE_SIZE = 10 * 1024 * 1024;
     private static final int MAX_PRINTABLE_STRINGS_LENGTH = 100000;
+    private static final int MAX_PRINTABLE_STRINGS = 10000;
+    private static final int PROGRESS_INTERVAL_OPCODES = 10_000;
     
     private Label fileInfoLabel;
+    private Label fileHashLabel;
     private TabPane contentTabPane;
+    private Supplier<HashIndex> hashIndexSupplier = () -> null;
+    private final LatestOnlyExecutor viewLoader = new LatestOnlyExecutor("content-viewer");
+    private final LatestOnlyExecutor hashLoader = new LatestOnlyExecutor("file-hash");
+    private CancellationToken activeLoad;
+    private LoadedView shownView;
     
     public ContentViewPane() {
         initializeUI();
@@ -49,10 +68,25 @@ public class ContentViewPane extends BorderPane {
         fileInfoLabel = new Label("No file selected");
         fileInfoLabel.getStyleClass().add("file-info-label");
         
+        fileHashLabel = new Label();
+        fileHashLabel.getStyleClass().add("file-hash-label");
+        fileHashLabel.setManaged(false);
+        fileHashLabel.visibleProperty().bind(fileHashLabel.managedProperty());
+        MenuItem copyHashItem = new MenuItem("Copy SHA-256");
+        copyHashItem.setOnAction(e -> {
+            String hash = (String) fileHashLabel.getUserData();
+            if (hash != null) {
+                ClipboardContent content = new ClipboardContent();
+                content.putString(hash);
+                Clipboard.getSystemClipboard().setContent(content);
+            }
+        });
+        fileHashLabel.setContextMenu(new ContextMenu(copyHashItem));
+        
         contentTabPane = new TabPane();
         contentTabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
         
-        setTop(fileInfoLabel);
+        setTop(new VBox(fileInfoLabel, fileHashLabel));
         setCenter(contentTabPane);
         
         showWelcomeMessage();
@@ -97,86 +131,189 @@ public class ContentViewPane extends BorderPane {
         contentTabPane.getTabs().add(welcomeTab);
     }
     
+    /**
+     * Sets where the hashes of displayed files are looked up and stored.
+     * 
+     * @param hashIndexSupplier returns the index of the open folder, or null if there is none yet
+     */
+    public void setHashIndexSupplier(Supplier<HashIndex> hashIndexSupplier) {
+        this.hashIndexSupplier = hashIndexSupplier;
+    }
+    
+    /**
+     * Shows a file. Its views are built on a background thread, so selecting
+     * files in quick succession never blocks the JavaFX thread; a newer
+     * selection replaces one that has not started loading yet and cancels
+     * one that is loading, and only the latest file's views are shown.
+     * 
+     * @param file the file to show
+     */
     public void displayFile(File file) {
-        if (file == null || !file.exists() || !file.isFile()) {
+        // A load still running for the previous selection is of no use any more
+        if (activeLoad != null) {
+            activeLoad.cancel();
+        }
+        CancellationToken token = new CancellationToken();
+        activeLoad = token;
+        if (shownView != null) {
+            shownView.dispose();
+            shownView = null;
+        }
+        
+        fileHashLabel.setManaged(false);
+        if (file == null) {
             fileInfoLabel.setText("Invalid file");
             contentTabPane.getTabs().clear();
             return;
         }
         
-        fileInfoLabel.setText(file.getAbsolutePath() + " (" + formatFileSize(file.length()) + ")");
-        contentTabPane.getTabs().clear();
-        
-        String fileName = file.getName().toLowerCase();
+        fileInfoLabel.setText(file.getAbsolutePath());
+        showLoadingTab();
+        viewLoader.submit(() -> loadView(file, token));
+    }
+    
+    /**
+     * Builds the views of a file on the loader thread and publishes them on
+     * the JavaFX thread, unless another file was selected in the meantime.
+     * 
+     * @param file the file to show
+     * @param token cancelled when another file is selected
+     */
+    private void loadView(File file, CancellationToken token) {
+        if (token.isCancelled()) {
+            return;
+        }
         
-        if (isPlistFile(fileName)) {
-            displayPlistFile(file);
-        } else if (isTextFile(fileName)) {
-            displayTextFile(file);
-        } else if (isImageFile(fileName)) {
-            displayImageFile(file);
-        } else if (isDatabaseFile(fileName)) {
-            displayDatabaseFile(file);
-        } else {
-            displayBinaryFile(file);
+        boolean valid = file.isFile();
+        long size = valid ? file.length() : -1;
+        LoadedView view = null;
+        if (valid) {
+            view = new LoadedView();
+            try {
+                switch (FileTypeDetector.detect(file)) {
+                    case PLIST:
+                        addPlistTabs(view, file);
+                        break;
+                    case TEXT:
+                        addTextTabs(view, file);
+                        break;
+                    case IMAGE:
+                        addImageTabs(view, file);
+                        break;
+                    case DATABASE:
+                        addDatabaseTabs(view, file, token);
+                        break;
+                    default:
+                        addBinaryTabs(view, file, token);
+                        break;
+                }
+            } catch (CancellationException e) {
+                view.dispose();
+                return;
+            } catch (RuntimeException e) {
+                // A malformed file must not leave the loading tab up for good
+                System.err.println("Error displaying file: " + file.getAbsolutePath() + " - " + e);
+                view.dispose();
+                view = new LoadedView();
+                view.tabs.add(createErrorTab("Error reading file: " + e.getMessage()));
+            }
         }
+        
+        LoadedView loaded = view;
+        Platform.runLater(() -> {
+            if (token != activeLoad) {
+                if (loaded != null) {
+                    loaded.dispose();
+                }
+                return;
+            }
+            if (loaded == null) {
+                fileInfoLabel.setText("Invalid file");
+                contentTabPane.getTabs().clear();
+                return;
+            }
+            fileInfoLabel.setText(file.getAbsolutePath() + " (" + formatFileSize(size) + ")");
+            shownView = loaded;
+            contentTabPane.getTabs().setAll(loaded.tabs);
+            showFileHash(file, token);
+        });
     }
     
-    private void displayTextFile(File file) {
-        try {
-            if (file.length() > MAX_TEXT_FILE_SIZE) {
-                showErrorMessage("File is too large to display (max size: " + formatFileSize(MAX_TEXT_FILE_SIZE) + ")");
+    /**
+     * Shows a progress indicator while a file's views are loading.
+     */
+    private void showLoadingTab() {
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setMaxSize(100, 100);
+        
+        VBox loadingBox = new VBox(10);
+        loadingBox.setAlignment(Pos.CENTER);
+        loadingBox.getChildren().addAll(
+            progressIndicator,
+            new Label("Loading file...")
+        );
+        
+        Tab loadingTab = new Tab("Loading...");
+        loadingTab.setContent(loadingBox);
+        contentTabPane.getTabs().setAll(loadingTab);
+    }
+    
+    /**
+     * Shows the SHA-256 hash of a file below its name, from the hash index
+     * when it is up to date and otherwise computed in the background.
+     * 
+     * @param file the displayed file
+     * @param token cancelled when another file is selected
+     */
+    private void showFileHash(File file, CancellationToken token) {
+        fileHashLabel.setUserData(null);
+        fileHashLabel.setText("SHA-256: computing...");
+        fileHashLabel.setManaged(true);
+        
+        HashIndex index = hashIndexSupplier.get();
+        hashLoader.submit(() -> {
+            if (token.isCancelled()) {
                 return;
             }
-            
-            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
-            
-            TextArea textArea = new TextArea(content);
-            textArea.setEditable(false);
-            textArea.setWrapText(true);
-            textArea.getStyleClass().add("text-file-view");
-            
-            HBox searchBox = new HBox(5);
-            searchBox.setPadding(new Insets(5));
-            searchBox.setAlignment(Pos.CENTER_LEFT);
-            
-            TextField searchField = new TextField();
-            searchField.setPromptText("Enter search term...");
-            HBox.setHgrow(searchField, Priority.ALWAYS);
-            
-            searchField.setOnKeyPressed(event -> {
-                if (event.getCode() == KeyCode.ENTER) {
-                    searchInTextArea(textArea, searchField.getText());
+            String text;
+            String hash = null;
+            try {
+                hash = index != null ? index.getSha256(file, token) : HashIndex.computeSha256(file, token);
+                text = "SHA-256: " + hash;
+            } catch (CancellationException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                text = "SHA-256: could not read file (" + e.getMessage() + ")";
+            }
+            String hashText = text;
+            String copyText = hash;
+            Platform.runLater(() -> {
+                // Another file may have been selected while this one was read
+                if (token == activeLoad) {
+                    fileHashLabel.setText(hashText);
+                    fileHashLabel.setUserData(copyText);
                 }
             });
-            
-            Button searchButton = new Button("Find");
-            searchButton.setOnAction(e -> searchInTextArea(textArea, searchField.getText()));
-            
-            Button clearButton = new Button("Clear");
-            clearButton.setOnAction(e -> {
-                searchField.clear();
-                textArea.deselect();
-                textArea.setStyle("");
-            });
-            
-            searchBox.getChildren().addAll(searchField, searchButton, clearButton);
-            
-            VBox contentBox = new VBox(5);
-            contentBox.getChildren().addAll(searchBox, textArea);
-            VBox.setVgrow(textArea, Priority.ALWAYS);
+        });
+    }
+    
+    private void addTextTabs(LoadedView view, File file) {
+        try {
+            // Only the visible lines are ever read, so files of any size open at once
+            TextFileView textView = new TextFileView(MappedTextFile.open(file));
+            view.textView = textView;
             
             Tab tab = new Tab("Text View");
-            tab.setContent(contentBox);
+            tab.setContent(textView);
             
-            contentTabPane.getTabs().add(tab);
+            view.tabs.add(tab);
             
         } catch (IOException e) {
-            showErrorMessage("Error reading file: " + e.getMessage());
+            view.tabs.add(createErrorTab("Error reading file: " + e.getMessage()));
         }
     }
     
-    private void displayImageFile(File file) {
+    private void addImageTabs(LoadedView view, File file) {
         try {
             final Image image;
             try (FileInputStream fis = new FileInputStream(file)) {
@@ -307,7 +444,7 @@ public class ContentViewPane extends BorderPane {
             Tab tab = new Tab("Image View");
             tab.setContent(imageContainer);
             
-            contentTabPane.getTabs().add(tab);
+            view.tabs.add(tab);
             
             Tab infoTab = new Tab("Image Info");
             VBox infoBox = new VBox(10);
@@ -321,112 +458,77 @@ public class ContentViewPane extends BorderPane {
                 new Label("Format: " + getFileExtension(file.getName()).toUpperCase())
             );
             infoTab.setContent(infoBox);
-            contentTabPane.getTabs().add(infoTab);
+            view.tabs.add(infoTab);
             
         } catch (Exception e) {
-            showErrorMessage("Error loading image: " + e.getMessage());
+            view.tabs.add(createErrorTab("Error loading image: " + e.getMessage()));
         }
     }
     
-    private void displayDatabaseFile(File file) {
+    /**
+     * Opens a database and adds its data, schema and information tabs. The
+     * connection stays open for paging through tables until the view is disposed.
+     * 
+     * @param view receives the tabs and the connection
+     * @param file the database file
+     * @param token aborts the running query once cancelled
+     */
+    private void addDatabaseTabs(LoadedView view, File file, CancellationToken token) {
+        Connection connection = null;
         try {
-            ProgressIndicator progressIndicator = new ProgressIndicator();
-            progressIndicator.setMaxSize(100, 100);
-            
-            VBox loadingBox = new VBox(10);
-            loadingBox.setAlignment(Pos.CENTER);
-            loadingBox.getChildren().addAll(
-                progressIndicator,
-                new Label("Loading database...")
-            );
-            
-            Tab loadingTab = new Tab("Loading...");
-            loadingTab.setContent(loadingBox);
-            contentTabPane.getTabs().add(loadingTab);
-            
-            Task<Void> loadTask = new Task<Void>() {
+            // Viewing must not change the database, so no journal mode or other write settings are applied
+            connection = DatabaseSearcher.openReadOnly(file);
+            ProgressHandler.setHandler(connection, PROGRESS_INTERVAL_OPCODES, new ProgressHandler() {
                 @Override
-                protected Void call() throws Exception {
-                    Connection connection = null;
-                    try {
-                        String jdbcUrl = "jdbc:sqlite:" + file.toURI().getPath();
-                        connection = DriverManager.getConnection(jdbcUrl);
-                        
-                        try (Statement timeoutStmt = connection.createStatement()) {
-                            timeoutStmt.execute("PRAGMA busy_timeout = 30000;");
-                            timeoutStmt.execute("PRAGMA journal_mode = WAL;");
-                            timeoutStmt.execute("PRAGMA synchronous = NORMAL;");
-                            timeoutStmt.execute("PRAGMA temp_store = MEMORY;");
-                            timeoutStmt.execute("PRAGMA cache_size = 10000;");
-                        }
-                        
-                        // Get the list of tables
-                        final List<String> tableNames = getTableNames(connection);
-                        
-                        if (tableNames.isEmpty()) {
-                            Platform.runLater(() -> {
-                                contentTabPane.getTabs().clear();
-                                showErrorMessage("No tables found in the database");
-                            });
-                            return null;
-                        }
-                        
-                        // Create tabs on the JavaFX thread
-                        final Connection finalConnection = connection;
-                        Platform.runLater(() -> {
-                            try {
-                                contentTabPane.getTabs().clear();
-                                
-                                // Create a single tab for table data with a dropdown selector
-                                Tab dataTab = new Tab("Table Data");
-                                dataTab.setContent(createTableSelectorView(finalConnection, tableNames));
-                                contentTabPane.getTabs().add(dataTab);
-                                
-                                // Create a tab for the database schema
-                                Tab schemaTab = new Tab("Schema");
-                                schemaTab.setContent(createSchemaView(finalConnection, tableNames));
-                                contentTabPane.getTabs().add(schemaTab);
-                                
-                                // Add a tab with database information
-                                Tab infoTab = new Tab("Database Info");
-                                infoTab.setContent(createDatabaseInfoView(file, finalConnection, tableNames));
-                                contentTabPane.getTabs().add(infoTab);
-                                
-                            } catch (SQLException e) {
-                                showErrorMessage("Error loading database content: " + e.getMessage());
-                            }
-                        });
-                        
-                        // Note: We intentionally don't close the connection here
-                        // It will be kept open for the pagination to work
-                        // The connection will be closed when the application exits
-                        
-                    } catch (SQLException e) {
-                        final String errorMessage = e.getMessage();
-                        Platform.runLater(() -> {
-                            contentTabPane.getTabs().clear();
-                            showErrorMessage("Error reading database: " + errorMessage);
-                        });
-                        
-                        if (connection != null) {
-                            try {
-                                connection.close();
-                            } catch (SQLException closeEx) {
-                                // Ignore close exception
-                            }
-                        }
-                    }
-                    return null;
+                protected int progress() {
+                    return token.isCancelled() ? 1 : 0;
                 }
-            };
+            });
             
-            // Start the loading task
-            Thread loadThread = new Thread(loadTask);
-            loadThread.setDaemon(true);
-            loadThread.start();
+            try (Statement timeoutStmt = connection.createStatement()) {
+                timeoutStmt.execute("PRAGMA busy_timeout = 30000;");
+                timeoutStmt.execute("PRAGMA temp_store = MEMORY;");
+                timeoutStmt.execute("PRAGMA cache_size = 10000;");
+            }
             
-        } catch (Exception e) {
-            showErrorMessage("Error opening database: " + e.getMessage());
+            // Get the list of tables
+            List<String> tableNames = getTableNames(connection);
+            
+            if (tableNames.isEmpty()) {
+                view.tabs.add(createErrorTab("No tables found in the database"));
+                connection.close();
+                return;
+            }
+            
+            // Create a single tab for table data with a dropdown selector
+            Tab dataTab = new Tab("Table Data");
+            dataTab.setContent(createTableSelectorView(connection, tableNames));
+            view.tabs.add(dataTab);
+            
+            // Create a tab for the database schema
+            Tab schemaTab = new Tab("Schema");
+            schemaTab.setContent(createSchemaView(connection, tableNames));
+            view.tabs.add(schemaTab);
+            
+            // Add a tab with database information
+            Tab infoTab = new Tab("Database Info");
+            infoTab.setContent(createDatabaseInfoView(file, connection, tableNames));
+            view.tabs.add(infoTab);
+            
+            // Kept open for the pagination to work, and closed when another file is shown
+            view.connection = connection;
+            
+        } catch (SQLException e) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException closeEx) {
+                    // Ignore close exception
+                }
+            }
+            token.throwIfCancelled();
+            view.tabs.clear();
+            view.tabs.add(createErrorTab("Error reading database: " + e.getMessage()));
         }
     }
     
@@ -537,10 +639,11 @@ public class ContentViewPane extends BorderPane {
      * 
      * @param file the binary file to display
      */
-    private void displayBinaryFile(File file) {
+    private void addBinaryTabs(LoadedView view, File file, CancellationToken token) {
         try {
             // Extract printable strings from the binary file
-            List<String> printableStrings = extractPrintableStrings(file);
+            List<String> printableStrings = extractPrintableStrings(file, token);
+            token.throwIfCancelled();
             
             // Create a text area to display the printable strings
             TextArea textArea = new TextArea();
@@ -548,10 +651,12 @@ public class ContentViewPane extends BorderPane {
             textArea.setWrapText(true);
             textArea.getStyleClass().add("printable-strings-view");
             
-            // Add the printable strings to the text area
+            // Add the printable strings to the text area in one go
+            StringBuilder printableText = new StringBuilder();
             for (String str : printableStrings) {
-                textArea.appendText(str + "\n");
+                printableText.append(str).append('\n');
             }
+            textArea.setText(printableText.toString());
             
             // Create a search box
             HBox searchBox = new HBox(5);
@@ -597,16 +702,17 @@ public class ContentViewPane extends BorderPane {
             Tab tab = new Tab("Printable Strings");
             tab.setContent(contentBox);
             
-            // Add the tab to the tab pane
-            contentTabPane.getTabs().add(tab);
+            // Add the tab to the view
+            view.tabs.add(tab);
             
             // Add a hex view tab
             Tab hexTab = new Tab("Hex View");
             hexTab.setContent(createHexView(file));
-            contentTabPane.getTabs().add(hexTab);
+            view.tabs.add(hexTab);
             
         } catch (IOException e) {
-            showErrorMessage("Error reading file: " + e.getMessage());
+            view.tabs.clear();
+            view.tabs.add(createErrorTab("Error reading file: " + e.getMessage()));
         }
     }
     
@@ -1266,49 +1372,32 @@ public class ContentViewPane extends BorderPane {
     }
     
     /**
-     * Extracts printable strings from a binary file.
+     * Extracts printable strings from a binary file. ASCII, UTF-16LE and UTF-16BE
+     * strings are found in a single pass; each line shows the offset and encoding.
      * 
      * @param file the binary file
+     * @param token the load the strings are extracted for; stops extraction when cancelled
      * @return a list of printable strings
      * @throws IOException if an I/O error occurs
      */
-    private List<String> extractPrintableStrings(File file) throws IOException {
+    private List<String> extractPrintableStrings(File file, CancellationToken token) throws IOException {
         if (file == null || !file.exists() || !file.isFile() || !file.canRead()) {
             throw new IOException("File is not accessible or does not exist: " + 
                 (file != null ? file.getAbsolutePath() : "null"));
         }
         
         List<String> strings = new ArrayList<>();
-        StringBuilder currentString = new StringBuilder();
         
-        // Use buffered input stream for better performance
-        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file))) {
-            int totalChars = 0;
-            int c;
-            
-            while ((c = bis.read()) != -1 && totalChars < MAX_PRINTABLE_STRINGS_LENGTH) {
-                char ch = (char) c;
-                
-                if (isPrintableChar(ch)) {
-                    currentString.append(ch);
-                    totalChars++;
-                } else if (currentString.length() >= 4) { // Only keep strings of at least 4 characters
-                    strings.add(currentString.toString());
-                    currentString = new StringBuilder();
-                } else {
-                    currentString = new StringBuilder();
-                }
-                
-                // Safety check to prevent excessive memory usage
-                if (strings.size() > 10000) {
-                    strings.add("... (output truncated, too many strings found)");
-                    break;
-                }
+        try {
+            StringExtractor extractor = new StringExtractor(4, MAX_PRINTABLE_STRINGS, MAX_PRINTABLE_STRINGS_LENGTH);
+            List<ExtractedString> extracted = extractor.extract(file, token);
+            for (ExtractedString string : extracted) {
+                strings.add(string.toString());
             }
             
-            // Add the last string if it's long enough
-            if (currentString.length() >= 4) {
-                strings.add(currentString.toString());
+            // Safety limit to prevent excessive memory usage
+            if (extracted.size() >= MAX_PRINTABLE_STRINGS) {
+                strings.add("... (output truncated, too many strings found)");
             }
         } catch (SecurityException e) {
             throw new IOException("Security error accessing file: " + e.getMessage(), e);
@@ -1368,6 +1457,16 @@ public class ContentViewPane extends BorderPane {
      * @param message the error message
      */
     private void showErrorMessage(String message) {
+        contentTabPane.getTabs().setAll(createErrorTab(message));
+    }
+    
+    /**
+     * Creates a tab that shows an error message. Safe to call off the JavaFX thread.
+     * 
+     * @param message the error message
+     * @return the tab
+     */
+    private Tab createErrorTab(String message) {
         // Create a text area to display the error message
         TextArea textArea = new TextArea(message);
         textArea.setEditable(false);
@@ -1377,10 +1476,7 @@ public class ContentViewPane extends BorderPane {
         // Create a tab for the error message
         Tab tab = new Tab("Error");
         tab.setContent(textArea);
-        
-        // Add the tab to the tab pane
-        contentTabPane.getTabs().clear();
-        contentTabPane.getTabs().add(tab);
+        return tab;
     }
     
     /**
@@ -1414,41 +1510,12 @@ public class ContentViewPane extends BorderPane {
     
 
     
-    /**
-     * Checks if a file is a text file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is a text file, false otherwise
-     */
-    private boolean isTextFile(String fileName) {
-        return fileName.endsWith(".txt") || fileName.endsWith(".xml") || 
-               fileName.endsWith(".py") || fileName.endsWith(".java") || 
-               fileName.endsWith(".json") || fileName.endsWith(".html") || 
-               fileName.endsWith(".css") || fileName.endsWith(".js") || 
-               fileName.endsWith(".md") || fileName.endsWith(".log") || 
-               fileName.endsWith(".csv") || fileName.endsWith(".properties") || 
-               fileName.endsWith(".yml") || fileName.endsWith(".yaml") || 
-               fileName.endsWith(".sh") || fileName.endsWith(".bat") || 
-               fileName.endsWith(".c") || fileName.endsWith(".cpp") || 
-               fileName.endsWith(".h");
-    }
-    
-    /**
-     * Checks if a file is a property list (plist) file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is a plist file, false otherwise
-     */
-    private boolean isPlistFile(String fileName) {
-        return fileName.endsWith(".plist");
-    }
-    
     /**
      * Displays a property list (plist) file.
      * 
      * @param file the plist file to display
      */
-    private void displayPlistFile(File file) {
+    private void addPlistTabs(LoadedView view, File file) {
         try {
             // Parse the plist file
             NSObject rootObject = PropertyListParser.parse(file);
@@ -1471,17 +1538,15 @@ public class ContentViewPane extends BorderPane {
             Tab plistTab = new Tab("Plist View");
             plistTab.setContent(treeView);
             
-            // Add the tab to the tab pane
-            contentTabPane.getTabs().add(plistTab);
-            
-            // Also display as text for reference
-            displayTextFile(file);
+            // Add the tab to the view
+            view.tabs.add(plistTab);
             
         } catch (Exception e) {
-            showErrorMessage("Error parsing plist file: " + e.getMessage());
-            // Fall back to text display
-            displayTextFile(file);
+            view.tabs.add(createErrorTab("Error parsing plist file: " + e.getMessage()));
         }
+        
+        // Also display as text for reference, or as a fallback
+        addTextTabs(view, file);
     }
     
     /**
@@ -1535,28 +1600,59 @@ public class ContentViewPane extends BorderPane {
     }
     
     /**
-     * Checks if a file is an image file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is an image file, false otherwise
+     * The tabs built for one file, and what they hold on to until another
+     * file is shown.
      */
-    private boolean isImageFile(String fileName) {
-        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || 
-               fileName.endsWith(".png") || fileName.endsWith(".gif") ||
-               fileName.endsWith(".bmp") || fileName.endsWith(".tiff") ||
-               fileName.endsWith(".webp") || fileName.endsWith(".svg") ||
-               fileName.endsWith(".ico");
+    private static class LoadedView {
+        private final List<Tab> tabs = new ArrayList<>();
+        private TextFileView textView;
+        private Connection connection;
+        
+        /**
+         * Stops background work for the tabs and closes the database they page through.
+         */
+        void dispose() {
+            if (textView != null) {
+                textView.dispose();
+            }
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    // Ignore close exception
+                }
+            }
+        }
     }
     
     /**
-     * Checks if a file is a database file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is a database file, false otherwise
+     * Runs work on one daemon thread, one piece at a time. Work that is
+     * replaced by newer work before it starts is dropped, so a burst of
+     * selections only loads the last one.
      */
-    private boolean isDatabaseFile(String fileName) {
-        return fileName.endsWith(".db") || fileName.endsWith(".db3") || 
-               fileName.endsWith(".sqlite") || fileName.endsWith(".sqlite3");
+    private static class LatestOnlyExecutor {
+        private final ExecutorService executor;
+        private final AtomicReference<Runnable> pending = new AtomicReference<>();
+        
+        LatestOnlyExecutor(String threadName) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        
+        void submit(Runnable work) {
+            // Only queue a run if none is waiting; a waiting run picks up the latest work
+            if (pending.getAndSet(work) == null) {
+                executor.execute(() -> {
+                    Runnable latest = pending.getAndSet(null);
+                    if (latest != null) {
+                        latest.run();
+                    }
+                });
+            }
+        }
     }
     
     /**
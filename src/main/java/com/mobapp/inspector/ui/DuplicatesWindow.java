@@ -0,0 +1,255 @@
+package com.mobapp.inspector.ui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import com.mobapp.inspector.fs.HashIndex;
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Window that lists the groups of files with identical contents below a
+ * folder, the groups that waste the most space first.
+ */
+public class DuplicatesWindow extends Stage {
+
+    private static final int HASH_PREFIX_LENGTH = 16;
+
+    private final File rootDir;
+    private final Consumer<File> openFileListener;
+
+    private final CompletableFuture<HashIndex> index;
+    private Label statsLabel;
+    private Button scanButton;
+    private TreeTableView<DuplicateRow> duplicatesTable;
+    private CancellationToken activeScan;
+    private final AtomicReference<String> pendingStatus = new AtomicReference<>();
+
+    /**
+     * Creates the duplicates window for a folder and starts looking for duplicates.
+     *
+     * @param rootDir the folder to look in
+     * @param index the hash index of the folder, completed once it is loaded
+     * @param openFileListener called when the user opens a file from the list
+     * @param stylesheets the stylesheets of the owning scene
+     */
+    public DuplicatesWindow(File rootDir, CompletableFuture<HashIndex> index, Consumer<File> openFileListener,
+                            List<String> stylesheets) {
+        this.rootDir = rootDir;
+        this.index = index;
+        this.openFileListener = openFileListener;
+
+        setTitle("Duplicates - " + rootDir.getAbsolutePath());
+
+        BorderPane root = new BorderPane();
+        root.setPadding(new Insets(10));
+        root.setTop(createToolbar());
+        root.setCenter(createDuplicatesTable());
+
+        Scene scene = new Scene(root, 900, 600);
+        scene.getStylesheets().addAll(stylesheets);
+        setScene(scene);
+
+        // Closing the window abandons a scan that is still running; the hashes read so far are kept
+        setOnHidden(e -> {
+            if (activeScan != null) {
+                activeScan.cancel();
+            }
+        });
+
+        startScan();
+    }
+
+    private VBox createToolbar() {
+        Label titleLabel = new Label("Files with identical contents");
+        titleLabel.setStyle("-fx-font-weight: bold;");
+
+        scanButton = new Button("Rescan");
+        scanButton.getStyleClass().addAll("toolbar-button", "primary-action");
+        scanButton.setTooltip(new Tooltip("Look for duplicates again, reading only files that changed"));
+        scanButton.setOnAction(e -> startScan());
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_LEFT);
+        buttonBox.getChildren().addAll(titleLabel, spacer, scanButton);
+
+        statsLabel = new Label();
+        statsLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
+
+        VBox toolbar = new VBox(5);
+        toolbar.setPadding(new Insets(0, 0, 10, 0));
+        toolbar.getChildren().addAll(buttonBox, statsLabel);
+        return toolbar;
+    }
+
+    private TreeTableView<DuplicateRow> createDuplicatesTable() {
+        duplicatesTable = new TreeTableView<>(new TreeItem<>(new DuplicateRow("Duplicates", null, "", "", "")));
+        duplicatesTable.setShowRoot(false);
+        duplicatesTable.setColumnResizePolicy(TreeTableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        duplicatesTable.setPlaceholder(new Label("No duplicates found yet"));
+
+        TreeTableColumn<DuplicateRow, String> nameColumn = new TreeTableColumn<>("Group / File");
+        nameColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().label));
+        nameColumn.setPrefWidth(450);
+
+        TreeTableColumn<DuplicateRow, String> sizeColumn = new TreeTableColumn<>("Size");
+        sizeColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().size));
+        sizeColumn.setPrefWidth(120);
+
+        TreeTableColumn<DuplicateRow, String> wastedColumn = new TreeTableColumn<>("Wasted");
+        wastedColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().wasted));
+        wastedColumn.setPrefWidth(120);
+
+        TreeTableColumn<DuplicateRow, String> hashColumn = new TreeTableColumn<>("SHA-256");
+        hashColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().hash));
+        hashColumn.setPrefWidth(180);
+
+        duplicatesTable.getColumns().add(nameColumn);
+        duplicatesTable.getColumns().add(sizeColumn);
+        duplicatesTable.getColumns().add(wastedColumn);
+        duplicatesTable.getColumns().add(hashColumn);
+
+        duplicatesTable.setRowFactory(table -> {
+            TreeTableRow<DuplicateRow> row = new TreeTableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && row.getItem() != null && row.getItem().file != null
+                        && openFileListener != null) {
+                    openFileListener.accept(row.getItem().file);
+                }
+            });
+            return row;
+        });
+
+        return duplicatesTable;
+    }
+
+    /**
+     * Brings the hash index up to date on a background thread and shows the
+     * duplicate groups once it is done.
+     */
+    private void startScan() {
+        if (activeScan != null) {
+            activeScan.cancel();
+        }
+        CancellationToken token = new CancellationToken();
+        activeScan = token;
+        scanButton.setDisable(true);
+        statsLabel.setText("Looking for files of the same size...");
+
+        Thread scanThread = new Thread(() -> {
+            // Wait for the shared index rather than load a second copy of it
+            HashIndex scanIndex = index.join();
+            String status;
+            List<HashIndex.DuplicateGroup> groups = null;
+            try {
+                groups = scanIndex.updateDuplicates(token, (done, total) ->
+                    showStatus(token, String.format("Reading %,d of %,d candidate files...", done, total)));
+                status = null;
+            } catch (IOException e) {
+                status = "Could not look for duplicates: " + e.getMessage();
+            } catch (CancellationException e) {
+                return;
+            }
+
+            List<HashIndex.DuplicateGroup> found = groups;
+            String error = status;
+            Platform.runLater(() -> {
+                if (token != activeScan) {
+                    return;
+                }
+                scanButton.setDisable(false);
+                pendingStatus.set(null);
+                if (found != null) {
+                    showGroups(found);
+                } else {
+                    statsLabel.setText(error);
+                }
+            });
+        }, "duplicate-scan");
+        scanThread.setDaemon(true);
+        scanThread.start();
+    }
+
+    /**
+     * Shows a progress message, posting at most one update to the JavaFX
+     * thread at a time however fast files are read.
+     *
+     * @param token the scan reporting the progress
+     * @param status the message
+     */
+    private void showStatus(CancellationToken token, String status) {
+        if (pendingStatus.getAndSet(status) == null) {
+            Platform.runLater(() -> {
+                String latest = pendingStatus.getAndSet(null);
+                if (latest != null && token == activeScan) {
+                    statsLabel.setText(latest);
+                }
+            });
+        }
+    }
+
+    private void showGroups(List<HashIndex.DuplicateGroup> groups) {
+        TreeItem<DuplicateRow> rootItem = duplicatesTable.getRoot();
+        rootItem.getChildren().clear();
+
+        long files = 0;
+        long wasted = 0;
+        for (HashIndex.DuplicateGroup group : groups) {
+            TreeItem<DuplicateRow> groupItem = new TreeItem<>(new DuplicateRow(
+                group.getFiles().size() + " copies", null,
+                String.format("%,d bytes", group.getSize()),
+                String.format("%,d bytes", group.getWastedBytes()),
+                group.getSha256().substring(0, HASH_PREFIX_LENGTH)));
+            for (File file : group.getFiles()) {
+                String relativePath = rootDir.toPath().relativize(file.toPath()).toString();
+                groupItem.getChildren().add(new TreeItem<>(new DuplicateRow(relativePath, file, "", "", "")));
+            }
+            rootItem.getChildren().add(groupItem);
+            files += group.getFiles().size();
+            wasted += group.getWastedBytes();
+        }
+
+        statsLabel.setText(groups.isEmpty()
+            ? "No files with identical contents"
+            : String.format("%,d groups, %,d files, %,d bytes in redundant copies", groups.size(), files, wasted));
+    }
+
+    /**
+     * One row of the duplicates table: a group summary or a file in it.
+     */
+    private static class DuplicateRow {
+        private final String label;
+        private final File file;
+        private final String size;
+        private final String wasted;
+        private final String hash;
+
+        DuplicateRow(String label, File file, String size, String wasted, String hash) {
+            this.label = label;
+            this.file = file;
+            this.size = size;
+            this.wasted = wasted;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.mobapp.inspector.ui;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.FadeTransition;
 import javafx.animation.PauseTransition;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
@@ -12,39 +15,107 @@ import javafx.scene.image.ImageView;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
 import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.*;
 import javafx.scene.text.TextAlignment;
 import javafx.stage.DirectoryChooser;
 import javafx.util.Duration;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.mobapp.inspector.fs.DirectoryWatcher;
+import com.mobapp.inspector.fs.FileNode;
+import com.mobapp.inspector.fs.FileType;
+import com.mobapp.inspector.fs.FolderSizeCalculator;
+import com.mobapp.inspector.fs.HashIndex;
+import com.mobapp.inspector.search.CancellationToken;
+import com.mobapp.inspector.search.ContentMatcher;
+import com.mobapp.inspector.search.ContentSearchEngine;
+import com.mobapp.inspector.search.FileMatcher;
+import com.mobapp.inspector.search.FilenameIndex;
+import com.mobapp.inspector.search.FormatDecoder;
+import com.mobapp.inspector.search.PatternCache;
+import com.mobapp.inspector.search.QueryNarrowing;
+import com.mobapp.inspector.search.RegexMatcher;
+import com.mobapp.inspector.search.SearchListener;
+import com.mobapp.inspector.search.SearchFilter;
+import com.mobapp.inspector.search.SearchResult;
+import com.mobapp.inspector.search.SearchStats;
+import com.mobapp.inspector.search.TrigramIndex;
 
 public class FileSystemTreeView extends VBox {
     
+    private static final int MAX_FILENAME_HITS = 5000;
+    private static final int MAX_FUZZY_FILENAME_HITS = 200;
+    private static final String SEARCH_FIELD_TOOLTIP = "Enter: Search\nEscape: Clear search";
+    private static final double SIZE_BADGE_GAP = 12;
+    
     private TreeView<File> treeView;
     private Consumer<File> fileSelectedListener;
     private TextField searchField;
     private HBox breadcrumbBar;
     private List<Hyperlink> breadcrumbs = new ArrayList<>();
     private PauseTransition searchDebounceTimer;
+    private CancellationToken activeSearch;
     private ToggleButton contentSearchToggle;
     private ProgressIndicator searchProgressIndicator;
     private VBox searchResultsBox;
-    private ScrollPane searchResultsScrollPane;
+    private Label searchResultsHeaderLabel;
+    private Label searchingLabel;
+    private HBox searchProgressBox;
+    private ListView<SearchResult> searchResultsList;
+    private Label noResultsLabel;
+    private TitledPane overBudgetPane;
+    private ListView<File> overBudgetList;
+    private Label searchStatsLabel;
+    private final ObservableList<SearchResult> searchResults = FXCollections.observableArrayList();
+    private ConcurrentLinkedQueue<SearchResult> pendingSearchResults = new ConcurrentLinkedQueue<>();
+    private AnimationTimer searchResultsPulse;
+    private final ContentSearchEngine contentSearchEngine = new ContentSearchEngine();
+    private final FormatDecoder formatDecoder = new FormatDecoder();
+    private SearchFilter searchFilter = SearchFilter.NONE;
+    private TrigramIndex trigramIndex;
+    private FilenameIndex filenameIndex;
+    private CancellationToken filenameIndexToken;
+    private final QueryNarrowing<FilenameIndex.Hit> filenameNarrowing = new QueryNarrowing<>();
+    private final QueryNarrowing<File> contentNarrowing = new QueryNarrowing<>();
+    private FileTreeItem browseRoot;
+    private DirectoryWatcher directoryWatcher;
+    private final Map<File, FileTreeItem> watchedFolders = new HashMap<>();
+    private PauseTransition indexRefreshTimer;
+    private final FolderSizeCalculator folderSizeCalculator = new FolderSizeCalculator();
+    private final Map<File, FolderSizeCalculator.FolderSize> folderSizes = new ConcurrentHashMap<>();
+    private CancellationToken folderSizeToken;
+    private final AtomicBoolean sizeRedrawPending = new AtomicBoolean();
+    private PauseTransition sizeRedrawTimer;
+    private boolean sortBySize = false;
+    // The one hash index of the root, completed once its saved hashes are loaded
+    private CompletableFuture<HashIndex> hashIndex;
+    private File hashIndexRoot;
+    private CancellationToken hashIndexToken;
+    private boolean backgroundHashingEnabled = true;
+    private boolean contentIndexingEnabled = true;
     private boolean isSearchingContent = false;
+    private boolean isRegexSearch = false;
     private Scene scene;
     private File rootDir;
     private boolean isDarkTheme = false;
@@ -76,22 +147,38 @@ public class FileSystemTreeView extends VBox {
         
         VBox searchContainer = createSearchBox();
         
+        // Keep expanded folders live while files are still being copied into them
+        try {
+            directoryWatcher = new DirectoryWatcher(folders ->
+                javafx.application.Platform.runLater(() -> applyFolderChanges(folders)));
+        } catch (IOException e) {
+            System.err.println("Folder changes won't be shown automatically: " + e.getMessage());
+        }
+        indexRefreshTimer = new PauseTransition(Duration.seconds(2));
+        indexRefreshTimer.setOnFinished(e -> {
+            updateFilenameIndex();
+            updateContentIndex();
+            updateFolderSizes();
+            updateHashIndex();
+        });
+        // Folder sizes arrive by the thousand; redraw the visible rows a few times a second at most
+        sizeRedrawTimer = new PauseTransition(Duration.millis(250));
+        sizeRedrawTimer.setOnFinished(e -> {
+            sizeRedrawPending.set(false);
+            treeView.refresh();
+        });
+        
         treeView = new TreeView<>();
         treeView.setShowRoot(false);
         treeView.getStyleClass().add("file-tree");
         
-        treeView.setCellFactory(tv -> new TreeCell<File>() {
-            @Override
-            protected void updateItem(File file, boolean empty) {
-                super.updateItem(file, empty);
-                
-                if (empty || file == null) {
-                    setText(null);
-                    setGraphic(null);
-                } else {
-                    setText(file.getName().isEmpty() ? file.getPath() : file.getName());
-                    setGraphic(new ImageView(getIconForFile(file)));
-                }
+        treeView.setCellFactory(tv -> new FileTreeCell());
+        // The next chunk of a large folder is paged in on request, never just because its row was laid out
+        treeView.addEventHandler(KeyEvent.KEY_PRESSED, e -> {
+            TreeItem<File> selected = treeView.getSelectionModel().getSelectedItem();
+            if (e.getCode() == KeyCode.ENTER && selected instanceof FileTreeItem.MoreItem) {
+                ((FileTreeItem.MoreItem) selected).requestMore();
+                e.consume();
             }
         });
         
@@ -118,7 +205,7 @@ public class FileSystemTreeView extends VBox {
         treeView.setRoot(null);
         
         StackPane treeContainer = new StackPane();
-        treeContainer.getChildren().addAll(placeholderBox, treeView, searchResultsScrollPane);
+        treeContainer.getChildren().addAll(placeholderBox, treeView, searchResultsBox);
         VBox.setVgrow(treeContainer, Priority.ALWAYS);
         
         treeView.rootProperty().addListener((obs, oldRoot, newRoot) -> {
@@ -131,13 +218,14 @@ public class FileSystemTreeView extends VBox {
         
         getChildren().addAll(toolbar, breadcrumbBar, searchContainer, treeContainer);
         
+        // Arrowing through the tree must not wait on the filesystem either, so the kind comes from the node
         treeView.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
-            if (newValue != null && fileSelectedListener != null) {
-                File selectedFile = newValue.getValue();
-                if (selectedFile.isFile()) {
-                    fileSelectedListener.accept(selectedFile);
+            if (newValue instanceof FileTreeItem && fileSelectedListener != null) {
+                FileNode node = ((FileTreeItem) newValue).getNode();
+                if (!node.isDirectory()) {
+                    fileSelectedListener.accept(node.getFile());
                 }
-                updateBreadcrumbs(selectedFile);
+                updateBreadcrumbs(node.getFile(), node.isDirectory());
             }
         });
         
@@ -185,20 +273,99 @@ public class FileSystemTreeView extends VBox {
         refreshIcon.getStyleClass().add("button-icon");
         refreshButton.setGraphic(refreshIcon);
         
-        refreshButton.setOnAction(e -> refreshCurrentFolder());
+        refreshButton.setOnAction(e -> {
+            // Files may have changed, so previous results can no longer be narrowed
+            contentNarrowing.clear();
+            refreshCurrentFolder();
+            updateFilenameIndex();
+            updateContentIndex();
+            updateFolderSizes();
+            updateHashIndex();
+        });
+        
+        Button scanSecretsButton = new Button("Scan Secrets");
+        scanSecretsButton.getStyleClass().add("toolbar-button");
+        scanSecretsButton.setTooltip(new Tooltip("Scan the current folder for API keys, tokens, passwords and other secrets"));
+        scanSecretsButton.setOnAction(e -> openIndicatorScan());
+        
+        Button compareButton = new Button("Compare");
+        compareButton.getStyleClass().add("toolbar-button");
+        compareButton.setTooltip(new Tooltip("Compare the current folder with another dump of the same app"));
+        compareButton.setOnAction(e -> openSnapshotDiff());
+        
+        Button duplicatesButton = new Button("Duplicates");
+        duplicatesButton.getStyleClass().add("toolbar-button");
+        duplicatesButton.setTooltip(new Tooltip("List files with identical contents in the current folder"));
+        duplicatesButton.setOnAction(e -> openDuplicates());
         
         toolbar.getItems().addAll(
             openFolderButton, 
             new Separator(Orientation.VERTICAL),
             homeButton, 
             upButton,
-            refreshButton
+            refreshButton,
+            new Separator(Orientation.VERTICAL),
+            scanSecretsButton,
+            compareButton,
+            duplicatesButton
         );
         
         return toolbar;
     }
     
 
+    /**
+     * Opens a secret scan window for the current folder.
+     */
+    private void openIndicatorScan() {
+        if (rootDir == null) {
+            return;
+        }
+        
+        Scene scene = getScene();
+        List<String> stylesheets = scene != null ? scene.getStylesheets() : List.of();
+        IndicatorScanWindow scanWindow = new IndicatorScanWindow(rootDir, contentSearchEngine, fileSelectedListener, stylesheets);
+        if (scene != null) {
+            scanWindow.initOwner(scene.getWindow());
+        }
+        scanWindow.show();
+    }
+    
+
+    /**
+     * Opens a window that compares the current folder, as the snapshot taken
+     * before, with another snapshot of the same app.
+     */
+    private void openSnapshotDiff() {
+        Scene scene = getScene();
+        List<String> stylesheets = scene != null ? scene.getStylesheets() : List.of();
+        SnapshotDiffWindow diffWindow = new SnapshotDiffWindow(rootDir, fileSelectedListener, stylesheets);
+        if (scene != null) {
+            diffWindow.initOwner(scene.getWindow());
+        }
+        diffWindow.show();
+    }
+    
+
+    /**
+     * Opens a window that lists the files with identical contents in the
+     * current folder.
+     */
+    private void openDuplicates() {
+        if (rootDir == null) {
+            return;
+        }
+        
+        Scene scene = getScene();
+        List<String> stylesheets = scene != null ? scene.getStylesheets() : List.of();
+        DuplicatesWindow duplicatesWindow = new DuplicatesWindow(rootDir, hashIndexFor(rootDir), fileSelectedListener, stylesheets);
+        if (scene != null) {
+            duplicatesWindow.initOwner(scene.getWindow());
+        }
+        duplicatesWindow.show();
+    }
+    
+
     private HBox createBreadcrumbBar() {
         HBox breadcrumbBar = new HBox(5);
         breadcrumbBar.setPadding(new Insets(5, 10, 5, 10));
@@ -218,7 +385,7 @@ public class FileSystemTreeView extends VBox {
         searchField = new TextField();
         searchField.setPromptText("Enter search term...");
         searchField.getStyleClass().add("search-field");
-        searchField.setTooltip(new Tooltip("Enter: Search\nEscape: Clear search"));
+        searchField.setTooltip(new Tooltip(SEARCH_FIELD_TOOLTIP));
         HBox.setHgrow(searchField, Priority.ALWAYS);
         
         RadioButton filenameRadio = new RadioButton("Filename");
@@ -232,8 +399,36 @@ public class FileSystemTreeView extends VBox {
         filenameRadio.setToggleGroup(searchModeGroup);
         contentRadio.setToggleGroup(searchModeGroup);
         
+        Button filtersButton = new Button("Filters...");
+        filtersButton.getStyleClass().add("toolbar-button");
+        filtersButton.setTooltip(new Tooltip("Choose which files content search reads"));
+        filtersButton.setOnAction(e -> {
+            new SearchFilterDialog(searchFilter).showAndWait().ifPresent(filter -> {
+                searchFilter = filter;
+                filtersButton.setText(filter.isEmpty() ? "Filters..." : "Filters (active)...");
+                if (isSearchingContent && !searchField.getText().isEmpty()) {
+                    searchFiles(searchField.getText());
+                }
+            });
+        });
+        
+        CheckBox regexCheckBox = new CheckBox("Regex");
+        regexCheckBox.setTooltip(new Tooltip("Treat the search term as a regular expression"));
+        regexCheckBox.setOnAction(e -> {
+            isRegexSearch = regexCheckBox.isSelected();
+            if (searchDebounceTimer != null) {
+                searchDebounceTimer.stop();
+            }
+            if (!searchField.getText().isEmpty()) {
+                searchFiles(searchField.getText());
+            } else {
+                markSearchPatternValid();
+            }
+        });
+        
         HBox searchModeBox = new HBox(10);
-        searchModeBox.getChildren().addAll(filenameRadio, contentRadio);
+        searchModeBox.setAlignment(Pos.CENTER_LEFT);
+        searchModeBox.getChildren().addAll(filenameRadio, contentRadio, regexCheckBox, filtersButton);
         
         searchModeGroup.selectedToggleProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal == contentRadio) {
@@ -259,6 +454,10 @@ public class FileSystemTreeView extends VBox {
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
             if (!newValue.equals(oldValue)) {
                 if (newValue.isEmpty()) {
+                    if (searchDebounceTimer != null) {
+                        searchDebounceTimer.stop();
+                    }
+                    cancelActiveSearch();
                     refreshCurrentFolder();
                 } else {
                     if (searchDebounceTimer != null) {
@@ -298,7 +497,8 @@ public class FileSystemTreeView extends VBox {
         copyPathButton.setTooltip(new Tooltip("Copy path of selected file/folder"));
         copyPathButton.setOnAction(e -> {
             TreeItem<File> selectedItem = treeView.getSelectionModel().getSelectedItem();
-            if (selectedItem != null) {
+            // The "Loading..." placeholder and the "Show more" row have no file
+            if (selectedItem instanceof FileTreeItem) {
                 File selectedFile = selectedItem.getValue();
                 ClipboardContent content = new ClipboardContent();
                 content.putString(selectedFile.getAbsolutePath());
@@ -316,16 +516,7 @@ public class FileSystemTreeView extends VBox {
             }
         });
         
-        searchResultsBox = new VBox(5);
-        searchResultsBox.setPadding(new Insets(5));
-        searchResultsBox.getStyleClass().add("search-results-box");
-        searchResultsBox.setVisible(false);
-        
-        searchResultsScrollPane = new ScrollPane(searchResultsBox);
-        searchResultsScrollPane.setFitToWidth(true);
-        searchResultsScrollPane.setFitToHeight(true);
-        searchResultsScrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
-        searchResultsScrollPane.setVisible(false);
+        searchResultsBox = createSearchResultsBox();
         
         VBox searchFieldBox = new VBox(5);
         searchFieldBox.setPadding(new Insets(0, 0, 0, 0));
@@ -363,8 +554,59 @@ public class FileSystemTreeView extends VBox {
         darkThemeItem.setOnAction(e -> toggleTheme(true));
         
         themeMenu.getItems().addAll(lightThemeItem, darkThemeItem);
-        
-        menuButton.getItems().addAll(aboutItem, new SeparatorMenuItem(), themeMenu);
+
+        CheckMenuItem indexContentItem = new CheckMenuItem("Index Folders for Content Search");
+        indexContentItem.setSelected(contentIndexingEnabled);
+        indexContentItem.setOnAction(e -> {
+            contentIndexingEnabled = indexContentItem.isSelected();
+            if (contentIndexingEnabled) {
+                updateContentIndex();
+            } else {
+                trigramIndex = null;
+            }
+        });
+
+        CheckMenuItem hashFilesItem = new CheckMenuItem("Hash Files in Background");
+        hashFilesItem.setSelected(backgroundHashingEnabled);
+        hashFilesItem.setOnAction(e -> {
+            backgroundHashingEnabled = hashFilesItem.isSelected();
+            if (backgroundHashingEnabled) {
+                updateHashIndex();
+            } else if (hashIndexToken != null) {
+                hashIndexToken.cancel();
+            }
+        });
+
+        // How long content search may spend on one file before listing it as not fully searched
+        Menu budgetMenu = new Menu("Per-File Time Budget");
+        ToggleGroup budgetToggleGroup = new ToggleGroup();
+        for (long millis : new long[] { 5_000, 30_000, 120_000, 600_000, 0 }) {
+            RadioMenuItem budgetItem = new RadioMenuItem(millis > 0 ? formatBudget(millis) : "Unlimited");
+            budgetItem.setToggleGroup(budgetToggleGroup);
+            budgetItem.setSelected(millis == contentSearchEngine.getFileTimeBudgetMillis());
+            budgetItem.setOnAction(e -> contentSearchEngine.setFileTimeBudgetMillis(millis));
+            budgetMenu.getItems().add(budgetItem);
+        }
+
+        Menu sortMenu = new Menu("Sort By");
+        ToggleGroup sortToggleGroup = new ToggleGroup();
+        RadioMenuItem sortByNameItem = new RadioMenuItem("Name");
+        RadioMenuItem sortBySizeItem = new RadioMenuItem("Size");
+        sortByNameItem.setToggleGroup(sortToggleGroup);
+        sortBySizeItem.setToggleGroup(sortToggleGroup);
+        sortByNameItem.setSelected(!sortBySize);
+        sortBySizeItem.setSelected(sortBySize);
+        sortByNameItem.setOnAction(e -> {
+            sortBySize = false;
+            applySortOrder();
+        });
+        sortBySizeItem.setOnAction(e -> {
+            sortBySize = true;
+            applySortOrder();
+        });
+        sortMenu.getItems().addAll(sortByNameItem, sortBySizeItem);
+
+        menuButton.getItems().addAll(aboutItem, new SeparatorMenuItem(), themeMenu, sortMenu, indexContentItem, hashFilesItem, budgetMenu);
         
         HBox searchInputBox = new HBox(5);
         searchInputBox.getChildren().addAll(
@@ -385,7 +627,13 @@ public class FileSystemTreeView extends VBox {
     }
     
 
-    private void updateBreadcrumbs(File file) {
+    /**
+     * Shows the path from the root folder to a file as a row of links.
+     * 
+     * @param file the file
+     * @param directory whether the file is a folder, which adds a menu of its sibling folders
+     */
+    private void updateBreadcrumbs(File file, boolean directory) {
         breadcrumbBar.getChildren().clear();
         breadcrumbs.clear();
         
@@ -487,7 +735,8 @@ public class FileSystemTreeView extends VBox {
         }
         
         // Add a dropdown menu for sibling directories if this is a directory
-        if (file.isDirectory()) {
+        File parentDir = file.getParentFile();
+        if (directory && parentDir != null) {
             // Add a separator
             Label separator = new Label(" ");
             breadcrumbBar.getChildren().add(separator);
@@ -496,31 +745,32 @@ public class FileSystemTreeView extends VBox {
             MenuButton siblingDirsButton = new MenuButton("▼");
             siblingDirsButton.getStyleClass().add("breadcrumb-dropdown");
             siblingDirsButton.setTooltip(new Tooltip("Show sibling directories"));
-            
-            // Get parent directory
-            File parentDir = file.getParentFile();
-            if (parentDir != null) {
-                // Get all sibling directories
+            // Placeholder so the menu can open; the siblings are only listed when it does
+            siblingDirsButton.getItems().add(new MenuItem("Loading..."));
+            siblingDirsButton.setOnShowing(e -> {
+                siblingDirsButton.getItems().clear();
+                
+                // Get all sibling directories, sorted alphabetically
                 File[] siblings = parentDir.listFiles(File::isDirectory);
                 if (siblings != null) {
-                    // Sort alphabetically
                     Arrays.sort(siblings, Comparator.comparing(File::getName));
                     
                     // Add menu items for each sibling
                     for (File sibling : siblings) {
                         if (!sibling.isHidden()) {
                             MenuItem item = new MenuItem(sibling.getName());
-                            item.setOnAction(e -> navigateToFolder(sibling));
+                            item.setOnAction(event -> navigateToFolder(sibling));
                             siblingDirsButton.getItems().add(item);
                         }
                     }
-                    
-                    // Add the dropdown to the breadcrumb bar if it has items
-                    if (!siblingDirsButton.getItems().isEmpty()) {
-                        breadcrumbBar.getChildren().add(siblingDirsButton);
-                    }
                 }
-            }
+                if (siblingDirsButton.getItems().isEmpty()) {
+                    MenuItem noneItem = new MenuItem("No other folders");
+                    noneItem.setDisable(true);
+                    siblingDirsButton.getItems().add(noneItem);
+                }
+            });
+            breadcrumbBar.getChildren().add(siblingDirsButton);
         }
     }
     
@@ -533,7 +783,7 @@ public class FileSystemTreeView extends VBox {
         
         // Set initial directory to current directory if available
         TreeItem<File> selectedItem = treeView.getSelectionModel().getSelectedItem();
-        if (selectedItem != null) {
+        if (selectedItem instanceof FileTreeItem) {
             File selectedFile = selectedItem.getValue();
             if (selectedFile.isDirectory()) {
                 directoryChooser.setInitialDirectory(selectedFile);
@@ -575,42 +825,132 @@ public class FileSystemTreeView extends VBox {
     }
     
     /**
-     * Refreshes the current folder view to show any changes made outside the application.
+     * Shows the folder tree again in place of filename search hits, and lists
+     * every expanded folder again to show any changes made outside the
+     * application. Folders keep their expansion state.
      */
     private void refreshCurrentFolder() {
-        // Get the current root directory
-        TreeItem<File> rootItem = treeView.getRoot();
-        if (rootItem != null && rootItem.getValue() != null) {
-            File currentDir = rootItem.getValue();
-            
-            // Only refresh if it's a directory
-            if (currentDir.isDirectory()) {
-                // Clear existing children
-                rootItem.getChildren().clear();
-                
-                // Reload the directory contents
-                loadDirectoryContents(rootItem);
-                
-                // Expand the root to show the refreshed contents
-                rootItem.setExpanded(true);
+        if (browseRoot == null) {
+            return;
+        }
+        if (treeView.getRoot() != browseRoot) {
+            treeView.setRoot(browseRoot);
+        }
+        // Each new listing is applied to the existing children once it is ready
+        for (FileTreeItem folder : new ArrayList<>(watchedFolders.values())) {
+            if (isInFolderTree(folder)) {
+                folder.loadChildren(null);
+            }
+        }
+        browseRoot.setExpanded(true);
+    }
+    
+    /**
+     * Starts watching a folder of the folder tree when it is expanded.
+     * 
+     * @param item the expanded item
+     */
+    private void watchFolder(TreeItem<File> item) {
+        if (item instanceof FileTreeItem) {
+            watchedFolders.put(item.getValue(), (FileTreeItem) item);
+            if (directoryWatcher != null) {
+                directoryWatcher.watch(item.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Stops watching a folder of the folder tree when it is collapsed; it is
+     * listed again when it is next expanded.
+     * 
+     * @param item the collapsed item
+     */
+    private void unwatchFolder(TreeItem<File> item) {
+        if (watchedFolders.remove(item.getValue(), item) && directoryWatcher != null) {
+            directoryWatcher.unwatch(item.getValue());
+        }
+    }
+    
+    /**
+     * Lists the folders that changed again, applying the differences to the
+     * tree, and schedules the search indexes to catch up once the changes settle.
+     * 
+     * @param folders the folders reported by the watcher
+     */
+    private void applyFolderChanges(Set<File> folders) {
+        for (File folder : folders) {
+            FileTreeItem item = watchedFolders.get(folder);
+            if (item == null) {
+                continue;
+            }
+            if (isInFolderTree(item)) {
+                item.loadChildren(null);
+            } else {
+                // Removed from the tree along with a deleted or re-listed parent
+                unwatchFolder(item);
             }
         }
+        
+        // Files may have changed, so previous results can no longer be narrowed
+        contentNarrowing.clear();
+        indexRefreshTimer.playFromStart();
+    }
+    
+    /**
+     * Checks whether an item still belongs to the folder tree of the current root.
+     * 
+     * @param item the item
+     * @return true if the item's ancestors lead up to the current root
+     */
+    private boolean isInFolderTree(TreeItem<File> item) {
+        TreeItem<File> top = item;
+        while (top.getParent() != null) {
+            top = top.getParent();
+        }
+        return top == browseRoot;
     }
     
+    /**
+     * Incrementally updates the trigram index for the current root folder in
+     * the background, opening the saved index first if the root changed.
+     */
+    private void updateContentIndex() {
+        if (!contentIndexingEnabled || rootDir == null) {
+            return;
+        }
+
+        if (trigramIndex == null || !trigramIndex.getRoot().equals(rootDir)) {
+            File indexRoot = rootDir;
+            Thread openThread = new Thread(() -> {
+                TrigramIndex index = TrigramIndex.open(indexRoot);
+                javafx.application.Platform.runLater(() -> {
+                    if (contentIndexingEnabled && indexRoot.equals(rootDir)) {
+                        trigramIndex = index;
+                        index.updateAsync();
+                    }
+                });
+            }, "trigram-index-open");
+            openThread.setDaemon(true);
+            openThread.start();
+        } else {
+            trigramIndex.updateAsync();
+        }
+    }
+
     /**
      * Searches for files in the current directory tree.
      * 
      * @param searchText the text to search for
      */
     private void searchFiles(String searchText) {
+        // Abandon the search in flight; its late results must not replace this one's
+        cancelActiveSearch();
+        
         // Clear previous search results
-        searchResultsBox.getChildren().clear();
-        searchResultsBox.setVisible(false);
-        searchResultsScrollPane.setVisible(false);
+        clearSearchResults();
         
         if (searchText == null || searchText.trim().isEmpty()) {
             refreshCurrentFolder(); // Reset to normal view
-            treeView.setVisible(true); // Make sure tree is visible
             return;
         }
         
@@ -622,105 +962,450 @@ public class FileSystemTreeView extends VBox {
         
         File rootDir = rootItem.getValue();
         
+        // Compile a regular expression once for the whole query, and don't search with an invalid one
+        Pattern pattern = null;
+        if (isRegexSearch) {
+            try {
+                pattern = PatternCache.compile(searchText);
+            } catch (PatternSyntaxException e) {
+                markSearchPatternInvalid(e.getDescription());
+                return;
+            }
+        }
+        markSearchPatternValid();
+        Pattern searchPattern = pattern;
+        
         // If content search is enabled, perform content search
         if (isSearchingContent) {
             // Show progress indicator in the search results area
-            searchResultsBox.getChildren().clear();
+            searchResultsHeaderLabel.setText("Search Results (0 files)");
+            noResultsLabel.setText("");
             searchResultsBox.setVisible(true);
-            searchResultsScrollPane.setVisible(true);
             treeView.setVisible(false);
             
-            // Add a label and the progress indicator
-            Label searchingLabel = new Label("Searching file contents for \"" + searchText + "\"...");
-            searchingLabel.setStyle("-fx-font-weight: bold;");
+            // When the query extends the previous one, only the files that matched before can match now
+            // Results are only reusable under the same filters, and never for regular expressions,
+            // as extending a pattern can widen what it matches
+            SearchFilter filter = searchFilter;
+            List<Object> narrowingSource = List.of(rootDir, filter);
+            List<File> narrowedFiles = searchPattern == null
+                ? contentNarrowing.candidates(narrowingSource, searchText) : null;
+            
+            // Label the progress indicator
+            searchingLabel.setText(narrowedFiles != null
+                ? "Searching " + narrowedFiles.size() + " previously matching files for \"" + searchText + "\"..."
+                : "Searching file contents for \"" + searchText + "\"...");
             
             // Configure progress indicator
             searchProgressIndicator.setVisible(true);
             searchProgressIndicator.setProgress(-1); // Indeterminate progress
             searchProgressIndicator.setPrefSize(30, 30);
             
-            // Add to search results box
-            HBox progressBox = new HBox(10);
-            progressBox.setAlignment(Pos.CENTER);
-            progressBox.getChildren().addAll(searchingLabel, searchProgressIndicator);
-            searchResultsBox.getChildren().add(progressBox);
+            searchProgressBox.getChildren().setAll(searchingLabel, searchProgressIndicator);
+            searchProgressBox.setVisible(true);
+            searchProgressBox.setManaged(true);
+            searchStatsLabel.setText("");
+
+            // Every search gets its own token; results are only shown while it is the active one
+            CancellationToken token = new CancellationToken();
+            activeSearch = token;
+            
+            // Results are queued by the search thread and appended once per pulse
+            ConcurrentLinkedQueue<SearchResult> pending = pendingSearchResults;
+            searchResultsPulse.start();
             
-            // Use a background thread for content search to keep UI responsive
+            // Use a background thread to drive the parallel content search and keep the UI responsive
             Thread searchThread = new Thread(() -> {
-                List<SearchResult> results = new ArrayList<>();
-                
-                // Perform the content search
-                searchFileContents(rootDir, searchText.toLowerCase(), results);
-                
-                // Update UI on JavaFX thread
+                Predicate<File> textFilePredicate = file -> {
+                    // Line numbers are worth counting in text and XML property lists
+                    FileType type = FileType.fromName(file.getName());
+                    return type == FileType.TEXT || type == FileType.PLIST;
+                };
+                FileMatcher<SearchResult> matcher = searchPattern != null
+                    ? new RegexMatcher(searchPattern, textFilePredicate, formatDecoder)
+                    : new ContentMatcher(searchText, textFilePredicate, formatDecoder);
+                SearchListener<SearchResult> listener = new SearchListener<>() {
+                        @Override
+                        public void onResult(SearchResult result) {
+                            pending.add(result);
+                        }
+
+                        @Override
+                        public void onProgress(SearchStats stats) {
+                            String summary = stats.getSummary();
+                            javafx.application.Platform.runLater(() -> {
+                                if (isActiveSearch(token)) {
+                                    searchStatsLabel.setText(summary);
+                                }
+                            });
+                        }
+                };
+
+                // Narrow the previous results if possible, otherwise let the index rule out files
+                // before any bytes are read, falling back to a full walk
+                TrigramIndex index = trigramIndex;
+                List<File> candidates = narrowedFiles;
+                if (candidates == null && searchPattern == null && index != null && index.getRoot().equals(rootDir)) {
+                    candidates = index.candidates(searchText);
+                }
+
+                // Perform the content search, publishing interim results and throughput as we go
+                List<File> overBudgetFiles = new ArrayList<>();
+                try {
+                    SearchStats finalStats = candidates != null
+                        ? contentSearchEngine.searchFiles(rootDir, candidates, filter, matcher, listener, token)
+                        : contentSearchEngine.search(rootDir, filter, matcher, listener, token);
+                    overBudgetFiles.addAll(finalStats.getOverBudgetFiles());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                // Update UI on JavaFX thread, unless a newer search has taken over
                 javafx.application.Platform.runLater(() -> {
+                    if (!isActiveSearch(token)) {
+                        return;
+                    }
+                    
+                    // Append the last results and stop polling for more
+                    appendPendingSearchResults();
+                    searchResultsPulse.stop();
+                    
                     // Hide progress indicator
                     searchProgressIndicator.setVisible(false);
+                    searchProgressBox.setVisible(false);
+                    searchProgressBox.setManaged(false);
+                    
+                    // List the files that were abandoned so they don't pass for files without matches
+                    showOverBudgetFiles(overBudgetFiles);
                     
-                    // Display results
-                    if (!results.isEmpty()) {
-                        displaySearchResults(results);
+                    // A search that ran to completion can seed the next, longer query; one with
+                    // abandoned files can't, as those files might still match
+                    if (overBudgetFiles.isEmpty() && searchPattern == null) {
+                        List<File> matchedFiles = new ArrayList<>();
+                        for (SearchResult result : searchResults) {
+                            matchedFiles.add(result.getFile());
+                        }
+                        contentNarrowing.remember(narrowingSource, searchText, matchedFiles);
                     } else {
-                        Label noResultsLabel = new Label("No matches found for '" + searchText + "'");
-                        noResultsLabel.getStyleClass().add("no-results-label");
-                        searchResultsBox.getChildren().add(noResultsLabel);
-                        searchResultsBox.setVisible(true);
-                        searchResultsScrollPane.setVisible(true);
+                        contentNarrowing.clear();
                     }
+                    
+                    noResultsLabel.setText("No matches found for '" + searchText + "'");
                 });
             });
             
+            searchThread.setName("content-search");
             searchThread.setDaemon(true);
             searchThread.start();
         } else {
-            // Perform regular filename search
+            // Answer filename searches from the in-memory index; if it is still being
+            // built, the search runs again as soon as it is ready
+            FilenameIndex index = filenameIndex;
+            if (index == null || !index.getRoot().equals(rootDir)) {
+                return;
+            }
+            
+            // Regular expressions are matched against every name; their hits can't be narrowed
+            if (searchPattern != null) {
+                filenameNarrowing.clear();
+                treeView.setRoot(createFilteredTree(rootDir, index.findRegex(searchPattern, MAX_FILENAME_HITS)));
+                return;
+            }
+            
+            // Re-filter the previous hits when the query extends the previous one
+            String lowerSearchText = searchText.toLowerCase();
+            List<FilenameIndex.Hit> hits = filenameNarrowing.narrow(index, searchText,
+                hit -> hit.getFile().getName().toLowerCase().contains(lowerSearchText));
+            if (hits == null) {
+                hits = index.find(searchText, MAX_FILENAME_HITS);
+            }
             
-            // Clear the current tree and create a new filtered tree
-            TreeItem<File> newRoot = createTreeItem(rootDir);
-            newRoot.setExpanded(true);
+            // Only a complete hit list can be narrowed later
+            if (hits.size() < MAX_FILENAME_HITS) {
+                filenameNarrowing.remember(index, searchText, hits);
+            } else {
+                filenameNarrowing.clear();
+            }
             
-            // Perform the search
-            searchDirectory(rootDir, searchText.toLowerCase(), newRoot);
+            // Fall back to fuzzy matching when no name contains the text as typed
+            if (hits.isEmpty()) {
+                hits = index.findFuzzy(searchText, MAX_FUZZY_FILENAME_HITS);
+            }
             
-            // Update the tree view
-            treeView.setRoot(newRoot);
+            // Update the tree view with a filtered tree built from the hits
+            treeView.setRoot(createFilteredTree(rootDir, hits));
         }
     }
     
     /**
-     * Recursively searches a directory for files matching the search text.
+     * Highlights the search field and explains why its regular expression can't be used.
      * 
-     * @param directory the directory to search
-     * @param searchText the text to search for
-     * @param parentItem the parent tree item to add matching files to
+     * @param description the description of the syntax error
+     */
+    private void markSearchPatternInvalid(String description) {
+        searchField.setStyle("-fx-border-color: #cc0000;");
+        searchField.setTooltip(new Tooltip("Invalid regular expression: " + description));
+    }
+    
+    /**
+     * Removes the highlight of an invalid regular expression from the search field.
+     */
+    private void markSearchPatternValid() {
+        searchField.setStyle("");
+        searchField.setTooltip(new Tooltip(SEARCH_FIELD_TOOLTIP));
+    }
+    
+    /**
+     * Builds a tree of filename search hits. Each hit is placed below the
+     * closest folder that is itself a hit, or below the root.
+     * 
+     * @param root the root folder of the search
+     * @param hits the hits, with every folder preceding its contents
+     * @return the root item of the filtered tree
+     */
+    private TreeItem<File> createFilteredTree(File root, List<FilenameIndex.Hit> hits) {
+        // Drop the placeholder before expanding, so the hits aren't replaced by a listing
+        TreeItem<File> newRoot = createTreeItem(root, true);
+        newRoot.getChildren().clear();
+        newRoot.setExpanded(true);
+        Map<File, TreeItem<File>> folderItems = new HashMap<>();
+        List<TreeItem<File>> hitItems = new ArrayList<>(hits.size());
+        
+        for (FilenameIndex.Hit hit : hits) {
+            TreeItem<File> parentItem = newRoot;
+            for (File parent = hit.getFile().getParentFile(); parent != null && !parent.equals(root); parent = parent.getParentFile()) {
+                TreeItem<File> folderItem = folderItems.get(parent);
+                if (folderItem != null) {
+                    parentItem = folderItem;
+                    break;
+                }
+            }
+            
+            // Drop the placeholder child first so expanding doesn't load the whole folder
+            parentItem.getChildren().removeIf(child -> child.getValue() == null);
+            TreeItem<File> item = createTreeItem(hit.getFile(), hit.isDirectory());
+            parentItem.getChildren().add(item);
+            parentItem.setExpanded(true);
+            hitItems.add(item);
+            
+            if (hit.isDirectory()) {
+                folderItems.put(hit.getFile(), item);
+            }
+        }
+        
+        // Renamed databases and images among the hits get their icons once their bytes are read
+        FileTreeItem.readTypes(hitItems);
+        return newRoot;
+    }
+    
+    /**
+     * Rebuilds the filename index for the current root folder in the background.
+     * When it is ready, a pending filename search is answered from it.
      */
-    private void searchDirectory(File directory, String searchText, TreeItem<File> parentItem) {
-        File[] files = directory.listFiles();
-        if (files == null) {
+    private void updateFilenameIndex() {
+        if (rootDir == null) {
             return;
         }
         
-        for (File file : files) {
-            if (file.isHidden()) {
-                continue;
+        if (filenameIndexToken != null) {
+            filenameIndexToken.cancel();
+        }
+        CancellationToken token = new CancellationToken();
+        filenameIndexToken = token;
+        File indexRoot = rootDir;
+        
+        Thread indexThread = new Thread(() -> {
+            try {
+                FilenameIndex index = FilenameIndex.build(indexRoot, token);
+                javafx.application.Platform.runLater(() -> {
+                    if (token.isCancelled() || !indexRoot.equals(rootDir)) {
+                        return;
+                    }
+                    filenameIndex = index;
+                    
+                    // Answer the filename search typed while the index was being built
+                    String searchText = searchField.getText();
+                    if (!isSearchingContent && searchText != null && !searchText.trim().isEmpty()) {
+                        searchFiles(searchText);
+                    }
+                });
+            } catch (CancellationException e) {
+                // A newer index build has taken over
+            } catch (IOException e) {
+                System.err.println("Error indexing file names: " + e.getMessage());
             }
-            
-            boolean matches = file.getName().toLowerCase().contains(searchText);
-            
-            if (matches) {
-                TreeItem<File> item = createTreeItem(file);
-                parentItem.getChildren().add(item);
-                
-                // If it's a directory, expand it and continue searching
-                if (file.isDirectory()) {
-                    item.setExpanded(true);
-                    searchDirectory(file, searchText, item);
-                }
-            } else if (file.isDirectory()) {
-                // Continue searching in subdirectories even if the directory name doesn't match
-                searchDirectory(file, searchText, parentItem);
+        }, "filename-index");
+        indexThread.setPriority(Thread.MIN_PRIORITY);
+        indexThread.setDaemon(true);
+        indexThread.start();
+    }
+    
+    /**
+     * Adds up the size and number of files below every folder of the current
+     * root in the background. Each folder's badge shows up as soon as its
+     * subtree is done; a walk still in flight is cancelled.
+     */
+    private void updateFolderSizes() {
+        if (folderSizeToken != null) {
+            folderSizeToken.cancel();
+        }
+        if (rootDir == null) {
+            return;
+        }
+        
+        CancellationToken token = new CancellationToken();
+        folderSizeToken = token;
+        File sizeRoot = rootDir;
+        
+        Thread sizeThread = new Thread(() -> {
+            try {
+                folderSizeCalculator.calculate(sizeRoot, (folder, size) -> {
+                    folderSizes.put(folder, size);
+                    requestSizeRedraw();
+                }, token);
+                javafx.application.Platform.runLater(() -> {
+                    // Sorting by size waits for all sizes, so rows don't jump around while they come in
+                    if (!token.isCancelled() && sortBySize) {
+                        applySortOrder();
+                    }
+                });
+            } catch (CancellationException e) {
+                // A newer walk has taken over
+            }
+        }, "folder-size");
+        sizeThread.setPriority(Thread.MIN_PRIORITY);
+        sizeThread.setDaemon(true);
+        sizeThread.start();
+    }
+    
+    /**
+     * Opens the hash index of the current root folder if the root changed,
+     * then hashes the files that are new or changed in the background, the
+     * possible duplicates first. Files already hashed when the folder was
+     * last open are not read again.
+     */
+    private void updateHashIndex() {
+        if (hashIndexToken != null) {
+            hashIndexToken.cancel();
+        }
+        if (rootDir == null) {
+            return;
+        }
+        
+        CancellationToken token = new CancellationToken();
+        hashIndexToken = token;
+        File indexRoot = rootDir;
+        CompletableFuture<HashIndex> indexFuture = hashIndexFor(indexRoot);
+        boolean hashFiles = backgroundHashingEnabled;
+        
+        Thread hashThread = new Thread(() -> {
+            if (!hashFiles) {
+                return;
             }
+            HashIndex index = indexFuture.join();
+            try {
+                index.updateDuplicates(token, null);
+                index.hashAll(token, null);
+            } catch (IOException e) {
+                System.err.println("Could not save file hashes for " + indexRoot + ": " + e.getMessage());
+            } catch (CancellationException e) {
+                // A newer update has taken over, or background hashing was turned off
+            }
+        }, "content-hash-update");
+        hashThread.setPriority(Thread.MIN_PRIORITY);
+        hashThread.setDaemon(true);
+        hashThread.start();
+    }
+    
+    /**
+     * Returns the hash index of a root folder, and starts loading it if the
+     * root changed. Everyone working on the root shares the one index, so
+     * hashes are never loaded twice or saved over each other.
+     * 
+     * @param root the root folder
+     * @return the index, completed once its saved hashes are loaded
+     */
+    private CompletableFuture<HashIndex> hashIndexFor(File root) {
+        if (hashIndex == null || !root.equals(hashIndexRoot)) {
+            CompletableFuture<HashIndex> loading = new CompletableFuture<>();
+            hashIndex = loading;
+            hashIndexRoot = root;
+            Thread loadThread = new Thread(() -> loading.complete(HashIndex.open(root)), "content-hash-load");
+            loadThread.setDaemon(true);
+            loadThread.start();
         }
+        return hashIndex;
+    }
+    
+    /**
+     * Returns the hash index of the current root folder.
+     * 
+     * @return the index, or null while it is being opened
+     */
+    public HashIndex getHashIndex() {
+        return hashIndex != null && hashIndexRoot.equals(rootDir) ? hashIndex.getNow(null) : null;
+    }
+    
+    /**
+     * Schedules a redraw of the visible rows of the tree, unless one is
+     * already pending. Safe to call from any thread.
+     */
+    private void requestSizeRedraw() {
+        if (sizeRedrawPending.compareAndSet(false, true)) {
+            javafx.application.Platform.runLater(() -> sizeRedrawTimer.playFromStart());
+        }
+    }
+    
+    /**
+     * Orders the folder tree by name or by size, as chosen in the preferences
+     * menu. Size order uses the folder sizes known at this point.
+     */
+    private void applySortOrder() {
+        if (browseRoot == null) {
+            return;
+        }
+        browseRoot.setOrder(sortBySize ? sizeOrder(new HashMap<>(folderSizes)) : FileNode.FOLDERS_FIRST);
+    }
+    
+    /**
+     * Creates an order that puts folders first, then the largest entries
+     * first. Folders whose size is not known yet go last among the folders.
+     * 
+     * @param sizes a snapshot of the folder sizes, which must not change while sorting
+     * @return the order
+     */
+    private static Comparator<FileNode> sizeOrder(Map<File, FolderSizeCalculator.FolderSize> sizes) {
+        return Comparator.comparing((FileNode node) -> !node.isDirectory())
+            .thenComparing(Comparator.comparingLong((FileNode node) -> {
+                if (!node.isDirectory()) {
+                    return node.getSize();
+                }
+                FolderSizeCalculator.FolderSize size = sizes.get(node.getFile());
+                return size != null ? size.getBytes() : -1;
+            }).reversed())
+            .thenComparing(FileNode.FOLDERS_FIRST);
+    }
+    
+    /**
+     * Cancels the content search in flight, if any, so it stops reading files
+     * and none of its remaining results reach the UI.
+     */
+    private void cancelActiveSearch() {
+        if (activeSearch != null) {
+            activeSearch.cancel();
+            activeSearch = null;
+        }
+        searchResultsPulse.stop();
+    }
+    
+    /**
+     * Checks whether results produced under a token may still be shown.
+     * 
+     * @param token the token of the search that produced the results
+     * @return true if the token belongs to the search the user is looking at
+     */
+    private boolean isActiveSearch(CancellationToken token) {
+        return token == activeSearch && !token.isCancelled();
     }
     
     /**
@@ -729,7 +1414,20 @@ public class FileSystemTreeView extends VBox {
      * @param folder the folder to navigate to
      */
     private void navigateToFolder(File folder) {
+        navigateToFolder(folder, null);
+    }
+    
+    /**
+     * Navigates to the specified folder and runs an action once its contents are listed.
+     * 
+     * @param folder the folder to navigate to
+     * @param onLoaded run on the JavaFX thread once the folder's contents are in the tree, or null
+     */
+    private void navigateToFolder(File folder, Runnable onLoaded) {
         if (folder != null && folder.exists() && folder.isDirectory()) {
+            // A search of the previous folder is of no use any more
+            cancelActiveSearch();
+            
             try {
                 // Normalize the path for cross-platform compatibility
                 folder = folder.getCanonicalFile();
@@ -737,17 +1435,26 @@ public class FileSystemTreeView extends VBox {
                 // Clear the current tree first
                 treeView.setRoot(null);
                 
-                // Create a new root item for the selected folder without using createTreeItem
-                // to avoid adding a dummy child that would cause duplication
-                TreeItem<File> newRoot = new TreeItem<>(folder);
-                newRoot.setExpanded(true);
+                // Watch the new root and whichever of its folders are expanded
+                if (directoryWatcher != null) {
+                    directoryWatcher.unwatchAll();
+                }
+                watchedFolders.clear();
+                indexRefreshTimer.stop();
+                FileTreeItem newRoot = new FileTreeItem(FileNode.read(folder));
+                newRoot.addEventHandler(TreeItem.<File>branchExpandedEvent(), e -> watchFolder(e.getTreeItem()));
+                newRoot.addEventHandler(TreeItem.<File>branchCollapsedEvent(), e -> unwatchFolder(e.getTreeItem()));
+                browseRoot = newRoot;
+                folderSizes.clear();
+                applySortOrder();
                 
-                // Set the new root and load its contents
+                // Set the new root and list its contents in the background
                 treeView.setRoot(newRoot);
-                loadDirectoryContents(newRoot);
+                newRoot.loadChildren(onLoaded);
+                newRoot.setExpanded(true);
                 
                 // Update breadcrumbs
-                updateBreadcrumbs(folder);
+                updateBreadcrumbs(folder, true);
                 
                 // Make sure the tree is visible and the placeholder is hidden
                 treeView.setVisible(true);
@@ -764,6 +1471,12 @@ public class FileSystemTreeView extends VBox {
                 
                 // Store the current directory for future reference
                 rootDir = folder;
+
+                // Build the filename index, refresh the content index, add up folder sizes and hash files in the background
+                updateFilenameIndex();
+                updateContentIndex();
+                updateFolderSizes();
+                updateHashIndex();
             } catch (IOException e) {
                 showErrorDialog("Navigation Error", "Could not navigate to folder: " + e.getMessage());
             }
@@ -771,83 +1484,74 @@ public class FileSystemTreeView extends VBox {
     }
     
     /**
-     * Creates a tree item for the specified file.
+     * Creates a tree item for a file whose type is already known, such as a
+     * search hit. Its size and modification time are left unknown.
      * 
-     * @param file the file to create a tree item for
-     * @return the created tree item
+     * @param file the file
+     * @param directory whether the file is a directory
+     * @return the tree item
      */
-    private TreeItem<File> createTreeItem(File file) {
-        // Create a tree item for the file
-        TreeItem<File> item = new TreeItem<>(file);
-        
-        // Add a dummy child if the file is a directory to enable the expand arrow
-        if (file.isDirectory()) {
-            item.getChildren().add(new TreeItem<>());
-            
-            // Set up the expand listener to load children on demand
-            item.expandedProperty().addListener((observable, oldValue, newValue) -> {
-                if (newValue && item.getChildren().size() == 1 && item.getChildren().get(0).getValue() == null) {
-                    item.getChildren().clear();
-                    loadDirectoryContents(item);
-                }
-            });
+    private TreeItem<File> createTreeItem(File file, boolean directory) {
+        return new FileTreeItem(new FileNode(file, directory, false, -1, -1));
+    }
+    
+    /**
+     * Describes the size shown in the badge of a row: the totals below a
+     * folder once they are known, or the size of a file.
+     * 
+     * @param node the row's file or folder
+     * @return the badge text, or null if there is nothing to show yet
+     */
+    private String getSizeBadgeText(FileNode node) {
+        if (!node.isDirectory()) {
+            return node.getSize() >= 0 ? formatFileSize(node.getSize()) : null;
         }
-        
-        return item;
+        FolderSizeCalculator.FolderSize size = folderSizes.get(node.getFile());
+        if (size == null) {
+            return null;
+        }
+        return formatFileSize(size.getBytes()) + " · "
+            + String.format(size.getFiles() == 1 ? "%,d file" : "%,d files", size.getFiles());
     }
     
     /**
-     * Loads the contents of a directory into a tree item.
+     * Formats a size in bytes to a short human-readable string.
      * 
-     * @param directoryItem the tree item to load the directory contents into
+     * @param size the size in bytes
+     * @return the size with a unit
      */
-    private void loadDirectoryContents(TreeItem<File> directoryItem) {
-        File directory = directoryItem.getValue();
-        if (directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                // Sort files: directories first, then files, both in alphabetical order
-                java.util.Arrays.sort(files, (f1, f2) -> {
-                    if (f1.isDirectory() && !f2.isDirectory()) {
-                        return -1;
-                    } else if (!f1.isDirectory() && f2.isDirectory()) {
-                        return 1;
-                    } else {
-                        return f1.getName().compareToIgnoreCase(f2.getName());
-                    }
-                });
-                
-                // Add the files to the tree item
-                for (File file : files) {
-                    // Skip hidden files
-                    if (!file.isHidden()) {
-                        directoryItem.getChildren().add(createTreeItem(file));
-                    }
-                }
-            }
+    private String formatFileSize(long size) {
+        if (size < 1024) {
+            return size + " B";
+        } else if (size < 1024 * 1024) {
+            return String.format("%.1f KB", size / 1024.0);
+        } else if (size < 1024 * 1024 * 1024) {
+            return String.format("%.1f MB", size / (1024.0 * 1024.0));
+        } else {
+            return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
         }
     }
     
     /**
-     * Gets the appropriate icon for a file based on its type.
+     * Gets the appropriate icon for a file based on the type in its node.
      * 
-     * @param file the file to get the icon for
+     * @param node the file to get the icon for
      * @return the icon for the file
      */
-    private Image getIconForFile(File file) {
-        if (file.isDirectory()) {
+    private Image getIconForFile(FileNode node) {
+        if (node.isDirectory()) {
             return folderIcon;
-        } else {
-            String fileName = file.getName().toLowerCase();
-            if (isTextFile(fileName)) {
+        }
+        switch (node.getType()) {
+            case TEXT:
+            case PLIST:
                 return textFileIcon;
-            } else if (isImageFile(fileName)) {
+            case IMAGE:
                 return imageFileIcon;
-            } else if (isDatabaseFile(fileName)) {
+            case DATABASE:
                 return databaseFileIcon;
-            } else {
+            default:
                 return fileIcon;
-            }
         }
     }
     
@@ -861,395 +1565,194 @@ public class FileSystemTreeView extends VBox {
     }
     
     /**
-     * Checks if a file is a text file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is a text file, false otherwise
-     */
-    private boolean isTextFile(String fileName) {
-        return fileName.endsWith(".txt") || fileName.endsWith(".xml") || 
-               fileName.endsWith(".plist") || fileName.endsWith(".py") ||
-               fileName.endsWith(".java") || fileName.endsWith(".json") ||
-               fileName.endsWith(".html") || fileName.endsWith(".css") ||
-               fileName.endsWith(".js") || fileName.endsWith(".md") ||
-               fileName.endsWith(".log") || fileName.endsWith(".csv") ||
-               fileName.endsWith(".properties") || fileName.endsWith(".yml") ||
-               fileName.endsWith(".yaml") || fileName.endsWith(".sh") ||
-               fileName.endsWith(".bat") || fileName.endsWith(".c") ||
-               fileName.endsWith(".cpp") || fileName.endsWith(".h");
-    }
-    
-    /**
-     * Checks if a file is an image file based on its extension.
-     * 
-     * @param fileName the file name
-     * @return true if the file is an image file, false otherwise
-     */
-    private boolean isImageFile(String fileName) {
-        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || 
-               fileName.endsWith(".png") || fileName.endsWith(".gif") ||
-               fileName.endsWith(".bmp") || fileName.endsWith(".tiff") ||
-               fileName.endsWith(".webp") || fileName.endsWith(".svg") ||
-               fileName.endsWith(".ico");
-    }
-    
-    /**
-     * Checks if a file is a database file based on its extension.
+     * Creates the content search results area: a header, the search progress and
+     * a virtualized list that only creates cells for the visible results.
      * 
-     * @param fileName the file name
-     * @return true if the file is a database file, false otherwise
+     * @return the results area, initially hidden
      */
-    private boolean isDatabaseFile(String fileName) {
-        return fileName.endsWith(".db") || fileName.endsWith(".db3") || 
-               fileName.endsWith(".sqlite") || fileName.endsWith(".sqlite3");
-    }
-    
-    /**
-     * Searches for the given text in file contents.
-     * 
-     * @param directory the directory to search
-     * @param searchText the text to search for
-     * @param results the list to add results to
-     */
-    private void searchFileContents(File directory, String searchText, List<SearchResult> results) {
-        // Use a queue to avoid deep recursion which can cause stack overflow
-        java.util.Queue<File> directoriesToSearch = new java.util.LinkedList<>();
-        directoriesToSearch.add(directory);
-        
-        int filesProcessed = 0;
-        int maxFilesToProcess = 1000; // Limit the number of files to process to prevent UI freezing
-        
-        while (!directoriesToSearch.isEmpty() && filesProcessed < maxFilesToProcess) {
-            File currentDir = directoriesToSearch.poll();
-            File[] files = currentDir.listFiles();
-            
-            if (files == null) {
-                continue;
-            }
-            
-            for (File file : files) {
-                if (file.isHidden()) {
-                    continue;
-                }
-                
-                if (file.isDirectory()) {
-                    // Add directory to queue instead of recursing
-                    directoriesToSearch.add(file);
-                } else if (file.isFile() && file.length() < 10 * 1024 * 1024) { // Limit to 10MB files
-                    // Search file contents
-                    try {
-                        List<String> matchingLines = searchInFile(file, searchText);
-                        if (!matchingLines.isEmpty()) {
-                            results.add(new SearchResult(file, matchingLines));
-                            
-                            // Update UI periodically to show progress
-                            if (results.size() % 5 == 0) {
-                                final int resultCount = results.size();
-                                javafx.application.Platform.runLater(() -> {
-                                    // Update progress indicator text
-                                    searchProgressIndicator.setProgress(-1); // Keep indeterminate
-                                    // Update UI with interim results
-                                    if (resultCount > 0) {
-                                        displaySearchResults(new ArrayList<>(results));
-                                    }
-                                });
-                            }
-                        }
-                    } catch (IOException e) {
-                        // Skip files that can't be read
-                        System.err.println("Error reading file: " + file.getAbsolutePath() + " - " + e.getMessage());
-                    }
-                    
-                    filesProcessed++;
-                    if (filesProcessed >= maxFilesToProcess) {
-                        break;
-                    }
-                }
-            }
-        }
-        
-        // If we hit the file limit, add a note to the results
-        if (filesProcessed >= maxFilesToProcess) {
-            javafx.application.Platform.runLater(() -> {
-                Label limitLabel = new Label("Search limited to " + maxFilesToProcess + " files. Narrow your search or specify a subfolder.");
-                limitLabel.setStyle("-fx-text-fill: #cc6600; -fx-font-style: italic;");
-                searchResultsBox.getChildren().add(0, limitLabel);
-            });
-        }
-    }
-    
-    /**
-     * Searches for the given text in a file.
-     * 
-     * @param file the file to search
-     * @param searchText the text to search for
-     * @return a list of matching lines with context
-     */
-    private List<String> searchInFile(File file, String searchText) throws IOException {
-        List<String> matchingLines = new ArrayList<>();
-        
-        // For text files, use line-by-line search
-        if (isTextFile(file.getName())) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line;
-                int lineNumber = 0;
-                
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    
-                    if (line.toLowerCase().contains(searchText)) {
-                        // Add line number and content
-                        matchingLines.add("Line " + lineNumber + ": " + line.trim());
-                        
-                        // Limit the number of matches per file to avoid overwhelming the UI
-                        if (matchingLines.size() >= 10) {
-                            matchingLines.add("... (more matches found)");
-                            break;
-                        }
-                    }
-                }
-            }
-        } 
-        // For binary files, use a different approach
-        else {
-            try (InputStream is = new FileInputStream(file)) {
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long offset = 0;
-                StringBuilder context = new StringBuilder();
-                boolean foundMatch = false;
-                
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    // Convert buffer to string for searching
-                    String chunk = new String(buffer, 0, bytesRead, StandardCharsets.ISO_8859_1);
-                    
-                    if (chunk.toLowerCase().contains(searchText)) {
-                        foundMatch = true;
-                        matchingLines.add("Binary file contains match at offset: " + offset);
-                        
-                        // Try to extract some context around the match
-                        int matchIndex = chunk.toLowerCase().indexOf(searchText);
-                        int contextStart = Math.max(0, matchIndex - 20);
-                        int contextEnd = Math.min(chunk.length(), matchIndex + searchText.length() + 20);
-                        
-                        // Extract printable characters for context
-                        context.setLength(0);
-                        for (int i = contextStart; i < contextEnd; i++) {
-                            char c = chunk.charAt(i);
-                            if (c >= 32 && c <= 126) { // Printable ASCII
-                                context.append(c);
-                            } else {
-                                context.append('.');
-                            }
-                        }
-                        
-                        matchingLines.add("Context: \"" + context.toString() + "\"");
-                        break; // Just report the first match for binary files
-                    }
-                    
-                    offset += bytesRead;
-                }
-                
-                if (foundMatch) {
-                    matchingLines.add("Note: This is a binary file. Content may not display correctly.");
-                }
-            }
-        }
-        
-        return matchingLines;
-    }
-    
-    /**
-     * Displays search results in the UI.
-     * 
-     * @param results the search results to display
-     */
-    private void displaySearchResults(List<SearchResult> results) {
-        searchResultsBox.getChildren().clear();
-        
+    private VBox createSearchResultsBox() {
         // Add a header with result count and clear button
         HBox headerBox = new HBox(10);
         headerBox.setAlignment(Pos.CENTER_LEFT);
         
-        Label headerLabel = new Label("Search Results (" + results.size() + " files)");
-        headerLabel.getStyleClass().add("search-results-header");
-        headerLabel.setStyle("-fx-font-weight: bold;");
+        searchResultsHeaderLabel = new Label();
+        searchResultsHeaderLabel.getStyleClass().add("search-results-header");
+        searchResultsHeaderLabel.setStyle("-fx-font-weight: bold;");
         
         Button clearResultsButton = new Button("Clear");
-        clearResultsButton.setOnAction(e -> {
-            searchResultsBox.getChildren().clear();
-            searchResultsBox.setVisible(false);
-            searchResultsScrollPane.setVisible(false);
-            
-            // Show the tree view again
-            treeView.setVisible(true);
-        });
+        clearResultsButton.setOnAction(e -> clearSearchResults());
         
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
-        headerBox.getChildren().addAll(headerLabel, spacer, clearResultsButton);
-        searchResultsBox.getChildren().add(headerBox);
+        headerBox.getChildren().addAll(searchResultsHeaderLabel, spacer, clearResultsButton);
+        
+        searchingLabel = new Label();
+        searchingLabel.setStyle("-fx-font-weight: bold;");
+        
+        searchProgressBox = new HBox(10);
+        searchProgressBox.setAlignment(Pos.CENTER);
+        
+        searchStatsLabel = new Label();
+        searchStatsLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
         
         // Add a separator
         Separator separator = new Separator();
         separator.setPadding(new Insets(5, 0, 5, 0));
-        searchResultsBox.getChildren().add(separator);
         
-        // If no results, show a message
-        if (results.isEmpty()) {
-            Label noResultsLabel = new Label("No matches found");
-            noResultsLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #888888;");
-            searchResultsBox.getChildren().add(noResultsLabel);
-        } else {
-            // Add results for each file
-            for (SearchResult result : results) {
-                // Create a flat panel for each file instead of a titled pane
-                VBox filePanel = new VBox(5);
-                filePanel.setPadding(new Insets(10, 5, 10, 5));
-                filePanel.setStyle("-fx-background-color: #f5f5f5; -fx-border-color: #e0e0e0; -fx-border-width: 1; -fx-border-radius: 5;");
-                
-                // Add file name as a header
-                Label fileNameLabel = new Label(result.getFile().getName());
-                fileNameLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
-                
-                // Add file path
-                Label pathLabel = new Label("Path: " + result.getFile().getParentFile().getAbsolutePath());
-                pathLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
-                
-                // Create a VBox to hold the matching lines
-                VBox matchesBox = new VBox(5);
-                matchesBox.setPadding(new Insets(5));
-                
-                // Add file name and path
-                filePanel.getChildren().addAll(fileNameLabel, pathLabel);
-                
-                // Add a separator
-                Separator lineSeparator = new Separator();
-                lineSeparator.setPadding(new Insets(2, 0, 5, 0));
-                filePanel.getChildren().add(lineSeparator);
-                
-                // Create a label for match count
-                Label matchCountLabel = new Label(result.getMatchingLines().size() + " matches found");
-                matchCountLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #007700;");
-                filePanel.getChildren().add(matchCountLabel);
-                
-                // Add each matching line (limited to 5 for better display)
-                int displayLimit = Math.min(5, result.getMatchingLines().size());
-                for (int i = 0; i < displayLimit; i++) {
-                    String line = result.getMatchingLines().get(i);
-                    Label lineLabel = new Label("• " + line);
-                    lineLabel.setWrapText(true);
-                    lineLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 12px;");
-                    filePanel.getChildren().add(lineLabel);
-                }
-                
-                // If there are more matches, show a "more" label
-                if (result.getMatchingLines().size() > 5) {
-                    Label moreLabel = new Label("... and " + (result.getMatchingLines().size() - 5) + " more matches");
-                    moreLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666;");
-                    filePanel.getChildren().add(moreLabel);
-                }
-                
-                // Add buttons in a horizontal box
-                HBox buttonBox = new HBox(10);
-                buttonBox.setPadding(new Insets(10, 0, 0, 0));
-                buttonBox.setAlignment(Pos.CENTER_RIGHT);
-                
-                // Add a button to open the file
-                Button openButton = new Button("Open File");
-                openButton.setOnAction(e -> {
-                    if (fileSelectedListener != null) {
-                        fileSelectedListener.accept(result.getFile());
-                    }
-                    
-                    // Find and select the file in the tree
-                    selectFileInTree(result.getFile());
-                });
-                
-                // Add a button to copy the file path
-                Button copyPathButton = new Button("Copy Path");
-                copyPathButton.setOnAction(e -> {
-                    ClipboardContent content = new ClipboardContent();
-                    content.putString(result.getFile().getAbsolutePath());
-                    Clipboard.getSystemClipboard().setContent(content);
-                    
-                    // Show a tooltip that the path was copied
-                    Tooltip tooltip = new Tooltip("Path copied to clipboard!");
-                    tooltip.setAutoHide(true);
-                    tooltip.show(copyPathButton, 
-                                copyPathButton.localToScreen(copyPathButton.getBoundsInLocal()).getMinX(),
-                                copyPathButton.localToScreen(copyPathButton.getBoundsInLocal()).getMaxY());
-                    
-                    // Hide the tooltip after 1.5 seconds
-                    PauseTransition delay = new PauseTransition(Duration.seconds(1.5));
-                    delay.setOnFinished(event -> tooltip.hide());
-                    delay.play();
-                });
-                
-                buttonBox.getChildren().addAll(copyPathButton, openButton);
-                filePanel.getChildren().add(buttonBox);
-                
-                // Add spacing between file panels
-                Region fileSpacer = new Region();
-                fileSpacer.setPrefHeight(10);
-                
-                // Add the file panel to the results box
-                searchResultsBox.getChildren().addAll(filePanel, fileSpacer);
+        noResultsLabel = new Label();
+        noResultsLabel.getStyleClass().add("no-results-label");
+        
+        // Files abandoned after exceeding the per-file time budget
+        overBudgetList = new ListView<>();
+        overBudgetList.setPrefHeight(120);
+        overBudgetList.setOnMouseClicked(e -> {
+            File file = overBudgetList.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && file != null && fileSelectedListener != null) {
+                fileSelectedListener.accept(file);
             }
+        });
+        overBudgetPane = new TitledPane("", overBudgetList);
+        overBudgetPane.setExpanded(false);
+        overBudgetPane.setVisible(false);
+        overBudgetPane.setManaged(false);
+        
+        searchResultsList = new ListView<>(searchResults);
+        searchResultsList.setCellFactory(list -> new SearchResultCell());
+        searchResultsList.setPlaceholder(noResultsLabel);
+        VBox.setVgrow(searchResultsList, Priority.ALWAYS);
+        
+        // Results arrive from the search thread into a queue that is drained once per pulse
+        searchResultsPulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                appendPendingSearchResults();
+            }
+        };
+        
+        VBox box = new VBox(5);
+        box.setPadding(new Insets(5));
+        box.getStyleClass().add("search-results-box");
+        box.getChildren().addAll(headerBox, searchProgressBox, searchStatsLabel, overBudgetPane, separator,
+            searchResultsList);
+        box.setVisible(false);
+        return box;
+    }
+    
+    /**
+     * Appends the results that arrived since the last pulse to the results list.
+     * Runs once per pulse while a content search is active, so each frame only
+     * pays for the results that arrived during it, however long the list grows.
+     */
+    private void appendPendingSearchResults() {
+        List<SearchResult> batch = new ArrayList<>();
+        SearchResult result;
+        while ((result = pendingSearchResults.poll()) != null) {
+            batch.add(result);
         }
         
-        // Show the results and hide the tree view
-        searchResultsBox.setVisible(true);
-        searchResultsScrollPane.setVisible(true);
-        
-        // Hide the tree view when showing search results
-        treeView.setVisible(false);
+        if (!batch.isEmpty()) {
+            searchResults.addAll(batch);
+            searchResultsHeaderLabel.setText("Search Results (" + searchResults.size() + " files)");
+        }
+    }
+    
+    /**
+     * Shows the files a content search abandoned because they exceeded the
+     * per-file time budget, or hides the list if there are none.
+     * 
+     * @param files the abandoned files
+     */
+    private void showOverBudgetFiles(List<File> files) {
+        overBudgetList.getItems().setAll(files);
+        overBudgetPane.setText(files.size() + " files not fully searched (over the "
+            + formatBudget(contentSearchEngine.getFileTimeBudgetMillis()) + " per-file time budget)");
+        overBudgetPane.setVisible(!files.isEmpty());
+        overBudgetPane.setManaged(!files.isEmpty());
+    }
+    
+    private static String formatBudget(long millis) {
+        if (millis <= 0) {
+            return "unlimited";
+        }
+        return millis % 60_000 == 0 ? (millis / 60_000) + " min" : (millis / 1000) + " s";
+    }
+    
+    /**
+     * Hides the search results and shows the folder tree again.
+     */
+    private void clearSearchResults() {
+        searchResultsPulse.stop();
+        pendingSearchResults = new ConcurrentLinkedQueue<>();
+        searchResults.clear();
+        showOverBudgetFiles(List.of());
+        searchResultsBox.setVisible(false);
+        treeView.setVisible(true);
     }
     
     /**
-     * Selects a file in the tree view.
+     * Selects a file in the tree view. A file below the current root is
+     * revealed by expanding the folders down to it, so the root's indexes
+     * carry on undisturbed; only a file elsewhere re-roots the tree.
      * 
      * @param file the file to select
      */
     private void selectFileInTree(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (browseRoot != null && rootDir != null && path.startsWith(rootDir.toPath()) && !path.equals(rootDir.toPath())) {
+            if (treeView.getRoot() != browseRoot) {
+                treeView.setRoot(browseRoot);
+            }
+            revealInFolder(browseRoot, rootDir.toPath().relativize(path), 0);
+            return;
+        }
+        
         // Navigate to the parent directory
         File parentDir = file.getParentFile();
         if (parentDir != null) {
-            navigateToFolder(parentDir);
-            
-            // Find and select the file in the tree
-            TreeItem<File> rootItem = treeView.getRoot();
-            if (rootItem != null) {
-                for (TreeItem<File> item : rootItem.getChildren()) {
-                    if (item.getValue().equals(file)) {
+            // Find and select the file in the tree once the folder is listed
+            navigateToFolder(parentDir, () -> {
+                TreeItem<File> rootItem = treeView.getRoot();
+                if (rootItem instanceof FileTreeItem) {
+                    // Page in the file's chunk if it is further down a large folder
+                    TreeItem<File> item = ((FileTreeItem) rootItem).showChild(file);
+                    if (item != null) {
                         treeView.getSelectionModel().select(item);
                         treeView.scrollTo(treeView.getSelectionModel().getSelectedIndex());
-                        break;
                     }
                 }
-            }
+            });
         }
     }
     
     /**
-     * A class to represent a search result.
+     * Expands a folder, listing it first if needed, and goes on down a path
+     * below it, selecting the entry at the end of the path.
+     * 
+     * @param folder the folder to expand
+     * @param relativePath the path of the entry to select, relative to the root
+     * @param depth the index of the path element that names the next entry in this folder
      */
-    private static class SearchResult {
-        private final File file;
-        private final List<String> matchingLines;
-        
-        public SearchResult(File file, List<String> matchingLines) {
-            this.file = file;
-            this.matchingLines = matchingLines;
-        }
-        
-        public File getFile() {
-            return file;
-        }
+    private void revealInFolder(FileTreeItem folder, Path relativePath, int depth) {
+        Runnable step = () -> {
+            // Page in the entry's chunk if it is further down a large folder
+            TreeItem<File> item = folder.showChild(new File(folder.getValue(), relativePath.getName(depth).toString()));
+            if (item == null) {
+                return;
+            }
+            if (depth == relativePath.getNameCount() - 1) {
+                treeView.getSelectionModel().select(item);
+                treeView.scrollTo(treeView.getSelectionModel().getSelectedIndex());
+            } else if (item instanceof FileTreeItem) {
+                revealInFolder((FileTreeItem) item, relativePath, depth + 1);
+            }
+        };
         
-        public List<String> getMatchingLines() {
-            return matchingLines;
+        folder.setExpanded(true);
+        if (folder.getTotalCount() >= 0) {
+            step.run();
+        } else {
+            folder.loadChildren(step);
         }
     }
     
@@ -1383,4 +1886,195 @@ public class FileSystemTreeView extends VBox {
             fadeOut.play();
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Row of the folder tree, with the size of the entry in a badge at its right edge.
+     */
+    private class FileTreeCell extends TreeCell<File> {
+        private final ImageView icon = new ImageView();
+        private final Label badge = new Label();
+        
+        FileTreeCell() {
+            badge.getStyleClass().add("size-badge");
+            // Placed by hand at the right edge of the row, outside the cell's own layout
+            badge.setManaged(false);
+            badge.setVisible(false);
+            setOnMouseClicked(e -> {
+                if (getTreeItem() instanceof FileTreeItem.MoreItem) {
+                    ((FileTreeItem.MoreItem) getTreeItem()).requestMore();
+                }
+            });
+        }
+        
+        @Override
+        protected void updateItem(File file, boolean empty) {
+            super.updateItem(file, empty);
+            String badgeText = null;
+            
+            if (empty) {
+                setText(null);
+                setGraphic(null);
+            } else if (getTreeItem() instanceof FileTreeItem.MoreItem) {
+                FileTreeItem.MoreItem moreItem = (FileTreeItem.MoreItem) getTreeItem();
+                setText(moreItem.getLabel());
+                setGraphic(null);
+            } else if (file == null) {
+                // The placeholder of a folder whose contents are still being listed
+                setText("Loading...");
+                setGraphic(null);
+            } else {
+                // Everything shown comes from the node read at listing time
+                FileNode node = ((FileTreeItem) getTreeItem()).getNode();
+                setText(node.getName());
+                icon.setImage(getIconForFile(node));
+                setGraphic(icon);
+                badgeText = getSizeBadgeText(node);
+            }
+            
+            badge.setText(badgeText);
+            badge.setVisible(badgeText != null);
+            requestLayout();
+        }
+        
+        @Override
+        protected void layoutChildren() {
+            super.layoutChildren();
+            // The skin replaces the children whenever the graphic changes
+            if (badge.getParent() != this) {
+                getChildren().add(badge);
+                badge.applyCss();
+            }
+            if (badge.isVisible()) {
+                double width = badge.prefWidth(-1);
+                double height = badge.prefHeight(width);
+                badge.resizeRelocate(getWidth() - snappedRightInset() - width,
+                    (getHeight() - height) / 2, width, height);
+            }
+        }
+        
+        @Override
+        protected double computePrefWidth(double height) {
+            double width = super.computePrefWidth(height);
+            return badge.isVisible() ? width + SIZE_BADGE_GAP + badge.prefWidth(-1) : width;
+        }
+    }
+    
+    /**
+     * List cell for one content search result. Cells are reused as the list
+     * scrolls, so the node tree is built once per cell and only its text changes.
+     */
+    private class SearchResultCell extends ListCell<SearchResult> {
+        private static final int MAX_LINES_SHOWN = 5;
+        
+        private final VBox filePanel = new VBox(5);
+        private final Label fileNameLabel = new Label();
+        private final Label pathLabel = new Label();
+        private final Label matchCountLabel = new Label();
+        private final Label linesLabel = new Label();
+        private final Label moreLabel = new Label();
+        private final Button copyPathButton = new Button("Copy Path");
+        
+        SearchResultCell() {
+            // Let the cell follow the list width so long lines wrap instead of scrolling sideways
+            setPrefWidth(0);
+            
+            filePanel.setPadding(new Insets(10, 5, 10, 5));
+            filePanel.setStyle("-fx-background-color: #f5f5f5; -fx-border-color: #e0e0e0; -fx-border-width: 1; -fx-border-radius: 5;");
+            
+            fileNameLabel.setStyle("-fx-font-weight: bold; -fx-font-size: 14px;");
+            pathLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
+            matchCountLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #007700;");
+            linesLabel.setWrapText(true);
+            linesLabel.setStyle("-fx-font-family: monospace; -fx-font-size: 12px;");
+            moreLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666;");
+            
+            Separator lineSeparator = new Separator();
+            lineSeparator.setPadding(new Insets(2, 0, 5, 0));
+            
+            // Add a button to open the file
+            Button openButton = new Button("Open File");
+            openButton.setOnAction(e -> openResult());
+            
+            // Add a button to copy the file path
+            copyPathButton.setOnAction(e -> copyPath());
+            
+            HBox buttonBox = new HBox(10);
+            buttonBox.setPadding(new Insets(10, 0, 0, 0));
+            buttonBox.setAlignment(Pos.CENTER_RIGHT);
+            buttonBox.getChildren().addAll(copyPathButton, openButton);
+            
+            filePanel.getChildren().addAll(fileNameLabel, pathLabel, lineSeparator, matchCountLabel,
+                linesLabel, moreLabel, buttonBox);
+            
+            setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && getItem() != null) {
+                    openResult();
+                }
+            });
+        }
+        
+        @Override
+        protected void updateItem(SearchResult result, boolean empty) {
+            super.updateItem(result, empty);
+            
+            if (empty || result == null) {
+                setText(null);
+                setGraphic(null);
+                return;
+            }
+            
+            File parent = result.getFile().getParentFile();
+            fileNameLabel.setText(result.getFile().getName());
+            pathLabel.setText("Path: " + (parent != null ? parent.getAbsolutePath() : ""));
+            matchCountLabel.setText(result.getMatchCount() + " matches found");
+            
+            // Show the first few matching lines
+            List<String> lines = result.getMatchingLines();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < Math.min(MAX_LINES_SHOWN, lines.size()); i++) {
+                if (i > 0) {
+                    text.append('\n');
+                }
+                text.append("• ").append(lines.get(i));
+            }
+            linesLabel.setText(text.toString());
+            
+            // If there are more matches, show a "more" label
+            boolean more = lines.size() > MAX_LINES_SHOWN;
+            moreLabel.setText(more ? "... and " + (lines.size() - MAX_LINES_SHOWN) + " more matches" : "");
+            moreLabel.setVisible(more);
+            moreLabel.setManaged(more);
+            
+            setText(null);
+            setGraphic(filePanel);
+        }
+        
+        private void openResult() {
+            File file = getItem().getFile();
+            if (fileSelectedListener != null) {
+                fileSelectedListener.accept(file);
+            }
+            
+            // Find and select the file in the tree
+            selectFileInTree(file);
+        }
+        
+        private void copyPath() {
+            ClipboardContent content = new ClipboardContent();
+            content.putString(getItem().getFile().getAbsolutePath());
+            Clipboard.getSystemClipboard().setContent(content);
+            
+            // Show a tooltip that the path was copied
+            Tooltip tooltip = new Tooltip("Path copied to clipboard!");
+            tooltip.setAutoHide(true);
+            tooltip.show(copyPathButton, 
+                        copyPathButton.localToScreen(copyPathButton.getBoundsInLocal()).getMinX(),
+                        copyPathButton.localToScreen(copyPathButton.getBoundsInLocal()).getMaxY());
+            
+            // Hide the tooltip after 1.5 seconds
+            PauseTransition delay = new PauseTransition(Duration.seconds(1.5));
+            delay.setOnFinished(event -> tooltip.hide());
+            delay.play();
+        }
+    }
+}
@@ -0,0 +1,469 @@
+package com.mobapp.inspector.ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.event.Event;
+import javafx.scene.control.TreeItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.mobapp.inspector.fs.FileNode;
+import com.mobapp.inspector.fs.FileType;
+import com.mobapp.inspector.fs.FileTypeDetector;
+
+/**
+ * Tree item for a file or folder in the folder tree, holding the
+ * {@link FileNode} read when its parent was listed.
+ * <p>
+ * A folder starts with a single placeholder child so it shows an expand
+ * arrow. Its contents are listed on a background thread the first time it
+ * is expanded and replace the placeholder in one batch on the JavaFX
+ * thread, so even folders with tens of thousands of entries never block
+ * the window. Until then the placeholder is shown as "Loading...".
+ * <p>
+ * The listing itself is kept as compact {@link FileNode}s, and only the
+ * first {@link #CHUNK_SIZE} entries become tree items. The rest are paged
+ * in a chunk at a time through a trailing {@link MoreItem}, when the user
+ * clicks it or presses Enter on it, so a cache folder with 100,000 files
+ * costs tree items and listeners only for the part that has been shown.
+ * <p>
+ * Listing a folder again, when it is re-expanded or reported as changed,
+ * applies the difference to the existing children: items of entries that
+ * are still there are kept, along with their expansion state and
+ * selection, and only added and removed entries change the tree.
+ * <p>
+ * Once files have tree items, their leading bytes are read in batches on a
+ * background thread to tell their {@link FileType}. Nodes whose type differs
+ * from what their name suggested are replaced and their rows redrawn, so
+ * drawing a row only ever reads the node.
+ */
+class FileTreeItem extends TreeItem<File> {
+
+    private static final ExecutorService LOADER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "directory-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExecutorService TYPE_READER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-type-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Number of entries turned into tree items at a time. */
+    static final int CHUNK_SIZE = 1000;
+
+    /** Number of files whose types are read before their rows are redrawn. */
+    private static final int TYPE_BATCH_SIZE = 64;
+
+    // Only touched on the JavaFX thread
+    private FileNode node;
+    private int loadGeneration;
+    private boolean loading;
+    private List<FileNode> listing;
+    private Comparator<FileNode> order = FileNode.FOLDERS_FIRST;
+    private int shown;
+    private MoreItem moreItem;
+
+    /**
+     * Creates an item for a node.
+     *
+     * @param node the file or folder
+     */
+    FileTreeItem(FileNode node) {
+        super(node.getFile());
+        this.node = node;
+
+        if (node.isDirectory()) {
+            getChildren().add(new TreeItem<>());
+            expandedProperty().addListener((observable, oldValue, newValue) -> {
+                // A folder listed before may have changed while it was collapsed and unwatched
+                if (newValue && (isUnloaded() || (listing != null && !loading))) {
+                    loadChildren(null);
+                }
+            });
+        }
+    }
+
+    FileNode getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the number of entries in the folder, including those not shown yet.
+     *
+     * @return the number of entries, or -1 if the folder has not been listed
+     */
+    int getTotalCount() {
+        return listing != null ? listing.size() : -1;
+    }
+
+    /**
+     * Returns the number of entries that have tree items.
+     *
+     * @return the number of entries shown
+     */
+    int getShownCount() {
+        return shown;
+    }
+
+    /**
+     * Checks whether the folder's contents have yet to be listed.
+     *
+     * @return true if the only child is the placeholder and no listing is under way
+     */
+    boolean isUnloaded() {
+        return !loading && getChildren().size() == 1 && getChildren().get(0).getValue() == null;
+    }
+
+    /**
+     * Lists the folder in the background and replaces the children with the
+     * result, or applies the changes to them if the folder was listed before.
+     * A newer call supersedes one still in flight.
+     *
+     * @param onLoaded run on the JavaFX thread once the children are in place, or null
+     */
+    void loadChildren(Runnable onLoaded) {
+        int generation = ++loadGeneration;
+        loading = true;
+        File directory = node.getFile();
+        Comparator<FileNode> listingOrder = order;
+
+        LOADER.execute(() -> {
+            List<FileNode> listed;
+            try {
+                listed = FileNode.list(directory, false);
+            } catch (IOException e) {
+                System.err.println("Error listing folder: " + directory.getAbsolutePath() + " - " + e.getMessage());
+                listed = new ArrayList<>();
+            }
+            if (listingOrder != FileNode.FOLDERS_FIRST) {
+                listed.sort(listingOrder);
+            }
+
+            List<FileNode> children = listed;
+            Platform.runLater(() -> {
+                if (generation != loadGeneration) {
+                    return;
+                }
+                loading = false;
+                if (listing == null) {
+                    listing = children;
+                    shown = 0;
+                    moreItem = null;
+                    List<TreeItem<File>> chunk = nextChunk();
+                    getChildren().setAll(chunk);
+                    readTypes(chunk);
+                } else {
+                    applyListing(children);
+                }
+
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Replaces the node after the file's attributes changed, redrawing its row.
+     *
+     * @param newNode the node read in the new listing
+     */
+    private void updateNode(FileNode newNode) {
+        boolean changed = newNode.getSize() != node.getSize() || newNode.getLastModified() != node.getLastModified();
+        node = newNode;
+        if (changed) {
+            redraw();
+        }
+    }
+
+    /**
+     * Replaces the node with one of the type read from the file, unless the
+     * file changed since it was read.
+     *
+     * @param read the node the type was read for
+     * @param type the type read from the file
+     */
+    private void updateType(FileNode read, FileType type) {
+        if (node.getLastModified() == read.getLastModified() && node.getType() != type) {
+            node = node.withType(type);
+            redraw();
+        }
+    }
+
+    /**
+     * Has the tree redraw this item's row.
+     */
+    private void redraw() {
+        Event.fireEvent(this, new TreeModificationEvent<>(valueChangedEvent(), this, getValue()));
+    }
+
+    /**
+     * Reads the types of the files among some new items in the background,
+     * a batch at a time, and updates those that turn out to be of a
+     * different type than their nodes say.
+     *
+     * @param items the new items
+     */
+    static void readTypes(List<TreeItem<File>> items) {
+        List<FileTreeItem> files = new ArrayList<>();
+        List<FileNode> nodes = new ArrayList<>();
+        for (TreeItem<File> item : items) {
+            if (item instanceof FileTreeItem) {
+                FileNode node = ((FileTreeItem) item).node;
+                if (!node.isDirectory() && !FileTypeDetector.isDetected(node)) {
+                    files.add((FileTreeItem) item);
+                    nodes.add(node);
+                }
+            }
+        }
+
+        for (int start = 0; start < files.size(); start += TYPE_BATCH_SIZE) {
+            int end = Math.min(files.size(), start + TYPE_BATCH_SIZE);
+            List<FileTreeItem> batch = files.subList(start, end);
+            List<FileNode> batchNodes = nodes.subList(start, end);
+            TYPE_READER.execute(() -> {
+                List<FileTreeItem> changed = new ArrayList<>();
+                List<FileNode> changedNodes = new ArrayList<>();
+                List<FileType> types = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    FileNode node = batchNodes.get(i);
+                    FileType type = FileTypeDetector.detect(node);
+                    if (type != node.getType()) {
+                        changed.add(batch.get(i));
+                        changedNodes.add(node);
+                        types.add(type);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    Platform.runLater(() -> {
+                        for (int i = 0; i < changed.size(); i++) {
+                            changed.get(i).updateType(changedNodes.get(i), types.get(i));
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Updates the children to a new listing of the folder with as few changes
+     * to the child list as possible. As many entries are shown as before, or
+     * a full chunk, whichever is more.
+     *
+     * @param newListing the new listing, sorted in this folder's order
+     */
+    private void applyListing(List<FileNode> newListing) {
+        Map<File, FileTreeItem> previous = new HashMap<>();
+        for (TreeItem<File> child : getChildren()) {
+            if (child instanceof FileTreeItem) {
+                previous.put(child.getValue(), (FileTreeItem) child);
+            }
+        }
+
+        int newShown = Math.min(newListing.size(), Math.max(shown, CHUNK_SIZE));
+        List<TreeItem<File>> target = new ArrayList<>(newShown + 1);
+        Set<TreeItem<File>> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < newShown; i++) {
+            FileNode child = newListing.get(i);
+            FileTreeItem item = previous.get(child.getFile());
+            if (item != null && item.node.isDirectory() == child.isDirectory()) {
+                item.updateNode(child);
+            } else {
+                item = createChild(child);
+                added.add(item);
+            }
+            target.add(item);
+        }
+        // Kept items of files that changed need their types read again too
+        readTypes(target);
+
+        listing = newListing;
+        shown = newShown;
+        moreItem = null;
+        if (shown < listing.size()) {
+            moreItem = new MoreItem(this);
+            target.add(moreItem);
+            added.add(moreItem);
+        }
+
+        // Remove what is gone in one change, then insert each run of new items where it belongs
+        Set<TreeItem<File>> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(target);
+        ObservableList<TreeItem<File>> children = getChildren();
+        children.removeIf(child -> !kept.contains(child));
+
+        int i = 0;
+        while (i < target.size()) {
+            if (added.contains(target.get(i))) {
+                int end = i;
+                while (end < target.size() && added.contains(target.get(end))) {
+                    end++;
+                }
+                children.addAll(i, target.subList(i, end));
+                i = end;
+            } else if (i < children.size() && children.get(i) == target.get(i)) {
+                i++;
+            } else {
+                // The kept items are out of order, which the sort order rules out; start over
+                children.setAll(target);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pages in the next chunk of entries.
+     */
+    void showMore() {
+        if (moreItem == null) {
+            return;
+        }
+        getChildren().remove(moreItem);
+        moreItem = null;
+        List<TreeItem<File>> chunk = nextChunk();
+        getChildren().addAll(chunk);
+        readTypes(chunk);
+    }
+
+    /**
+     * Returns the tree item of an entry, paging in the entries before it if
+     * it has not been shown yet.
+     *
+     * @param file the entry
+     * @return the tree item, or null if the folder has not been listed or has no such entry
+     */
+    TreeItem<File> showChild(File file) {
+        if (listing == null) {
+            return null;
+        }
+        for (int i = 0; i < listing.size(); i++) {
+            if (listing.get(i).getFile().equals(file)) {
+                while (shown <= i) {
+                    showMore();
+                }
+                return getChildren().get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Changes the order of the entries of this folder and of every folder
+     * below it. Shown entries keep their items, and with them their expansion
+     * state, as long as they remain among the shown entries.
+     *
+     * @param newOrder the order, for example {@link FileNode#FOLDERS_FIRST}
+     */
+    void setOrder(Comparator<FileNode> newOrder) {
+        order = newOrder;
+        if (listing != null) {
+            Map<File, FileTreeItem> previous = new HashMap<>();
+            for (TreeItem<File> child : getChildren()) {
+                if (child instanceof FileTreeItem) {
+                    previous.put(child.getValue(), (FileTreeItem) child);
+                }
+            }
+
+            List<FileNode> sorted = new ArrayList<>(listing);
+            sorted.sort(newOrder);
+            List<TreeItem<File>> target = new ArrayList<>(shown + 1);
+            for (int i = 0; i < shown; i++) {
+                FileTreeItem item = previous.get(sorted.get(i).getFile());
+                target.add(item != null ? item : createChild(sorted.get(i)));
+            }
+            listing = sorted;
+            if (moreItem != null) {
+                moreItem = new MoreItem(this);
+                target.add(moreItem);
+            }
+            getChildren().setAll(target);
+            readTypes(target);
+        }
+
+        for (TreeItem<File> child : getChildren()) {
+            if (child instanceof FileTreeItem) {
+                ((FileTreeItem) child).setOrder(newOrder);
+            }
+        }
+    }
+
+    private FileTreeItem createChild(FileNode child) {
+        FileTreeItem item = new FileTreeItem(child);
+        item.order = order;
+        return item;
+    }
+
+    /**
+     * Creates the tree items of the next chunk of entries, followed by a
+     * {@link MoreItem} if entries remain after it.
+     *
+     * @return the items to append
+     */
+    private List<TreeItem<File>> nextChunk() {
+        int end = Math.min(listing.size(), shown + CHUNK_SIZE);
+        List<TreeItem<File>> items = new ArrayList<>(end - shown + 1);
+        for (int i = shown; i < end; i++) {
+            items.add(createChild(listing.get(i)));
+        }
+        shown = end;
+
+        if (shown < listing.size()) {
+            moreItem = new MoreItem(this);
+            items.add(moreItem);
+        }
+        return items;
+    }
+
+    /**
+     * The last child of a folder whose entries are not all shown yet.
+     */
+    static class MoreItem extends TreeItem<File> {
+        private final FileTreeItem folder;
+        private boolean requested;
+
+        MoreItem(FileTreeItem folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * Describes how much of the folder is shown.
+         *
+         * @return the text for the row
+         */
+        String getLabel() {
+            return String.format("Show more... (%,d of %,d shown; click or press Enter)",
+                    folder.getShownCount(), folder.getTotalCount());
+        }
+
+        /**
+         * Pages in the next chunk of the folder once the current event is
+         * handled, so the tree does not change under the event's handlers.
+         * Repeated requests before then are ignored.
+         */
+        void requestMore() {
+            if (!requested) {
+                requested = true;
+                Platform.runLater(() -> {
+                    // A reload may have replaced this item in the meantime
+                    if (folder.moreItem == this) {
+                        folder.showMore();
+                    }
+                });
+            }
+        }
+    }
+}
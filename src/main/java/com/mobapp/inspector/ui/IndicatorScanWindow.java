@@ -0,0 +1,311 @@
+package com.mobapp.inspector.ui;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.mobapp.inspector.search.CancellationToken;
+import com.mobapp.inspector.search.ContentSearchEngine;
+import com.mobapp.inspector.search.Indicator;
+import com.mobapp.inspector.search.IndicatorFindings;
+import com.mobapp.inspector.search.IndicatorMatcher;
+import com.mobapp.inspector.search.SearchListener;
+import com.mobapp.inspector.search.SearchStats;
+
+/**
+ * Window that scans a folder once for a whole dictionary of secret indicators
+ * and shows the findings grouped by indicator, then by file.
+ */
+public class IndicatorScanWindow extends Stage {
+
+    private static final int MAX_OFFSETS_SHOWN = 20;
+
+    private final File rootDir;
+    private final ContentSearchEngine engine;
+    private final Consumer<File> openFileListener;
+
+    private List<Indicator> indicators;
+    private Label dictionaryLabel;
+    private Label statsLabel;
+    private Button startButton;
+    private TreeTableView<FindingRow> findingsTable;
+    // The running scan, or null when none is running
+    private CancellationToken activeScan;
+    private final Map<Indicator, TreeItem<FindingRow>> indicatorItems = new HashMap<>();
+
+    /**
+     * Creates the scan window for a folder.
+     *
+     * @param rootDir the folder to scan
+     * @param engine the search engine to run the scan on
+     * @param openFileListener called when the user opens a file from the findings
+     * @param stylesheets the stylesheets of the owning scene
+     */
+    public IndicatorScanWindow(File rootDir, ContentSearchEngine engine, Consumer<File> openFileListener,
+                               List<String> stylesheets) {
+        this.rootDir = rootDir;
+        this.engine = engine;
+        this.openFileListener = openFileListener;
+
+        setTitle("Secret Scan - " + rootDir.getAbsolutePath());
+
+        BorderPane root = new BorderPane();
+        root.setPadding(new Insets(10));
+        root.setTop(createToolbar());
+        root.setCenter(createFindingsTable());
+
+        Scene scene = new Scene(root, 900, 600);
+        scene.getStylesheets().addAll(stylesheets);
+        setScene(scene);
+
+        // Closing the window abandons a scan that is still running
+        setOnHidden(e -> {
+            if (activeScan != null) {
+                activeScan.cancel();
+            }
+        });
+
+        try {
+            setIndicators(Indicator.loadDefaults(), "Built-in dictionary");
+        } catch (IOException e) {
+            setIndicators(List.of(), "No dictionary loaded");
+            dictionaryLabel.setText("Could not load built-in dictionary: " + e.getMessage());
+        }
+    }
+
+    private VBox createToolbar() {
+        dictionaryLabel = new Label();
+        dictionaryLabel.setStyle("-fx-font-weight: bold;");
+
+        Button loadButton = new Button("Load Dictionary...");
+        loadButton.getStyleClass().add("toolbar-button");
+        loadButton.setTooltip(new Tooltip("Load indicators from a text file (one 'literal:' or 'regex:' entry per line)"));
+        loadButton.setOnAction(e -> loadDictionary());
+
+        startButton = new Button("Start Scan");
+        startButton.getStyleClass().addAll("toolbar-button", "primary-action");
+        startButton.setOnAction(e -> startScan());
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        HBox buttonBox = new HBox(10);
+        buttonBox.setAlignment(Pos.CENTER_LEFT);
+        buttonBox.getChildren().addAll(dictionaryLabel, spacer, loadButton, startButton);
+
+        statsLabel = new Label("Scan every file once for all indicators in the dictionary.");
+        statsLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
+
+        VBox toolbar = new VBox(5);
+        toolbar.setPadding(new Insets(0, 0, 10, 0));
+        toolbar.getChildren().addAll(buttonBox, statsLabel);
+        return toolbar;
+    }
+
+    private TreeTableView<FindingRow> createFindingsTable() {
+        findingsTable = new TreeTableView<>(new TreeItem<>(new FindingRow("Findings", null, 0, "")));
+        findingsTable.setShowRoot(false);
+        findingsTable.setColumnResizePolicy(TreeTableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        findingsTable.setPlaceholder(new Label("No findings yet"));
+
+        TreeTableColumn<FindingRow, String> nameColumn = new TreeTableColumn<>("Indicator / File");
+        nameColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().label));
+        nameColumn.setPrefWidth(450);
+
+        TreeTableColumn<FindingRow, Number> countColumn = new TreeTableColumn<>("Matches");
+        countColumn.setCellValueFactory(param -> new ReadOnlyObjectWrapper<>(param.getValue().getValue().count));
+        countColumn.setPrefWidth(80);
+
+        TreeTableColumn<FindingRow, String> offsetsColumn = new TreeTableColumn<>("Offsets");
+        offsetsColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().offsets));
+        offsetsColumn.setPrefWidth(350);
+
+        findingsTable.getColumns().add(nameColumn);
+        findingsTable.getColumns().add(countColumn);
+        findingsTable.getColumns().add(offsetsColumn);
+
+        findingsTable.setRowFactory(table -> {
+            TreeTableRow<FindingRow> row = new TreeTableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && row.getItem() != null && row.getItem().file != null
+                        && openFileListener != null) {
+                    openFileListener.accept(row.getItem().file);
+                }
+            });
+            return row;
+        });
+
+        return findingsTable;
+    }
+
+    private void setIndicators(List<Indicator> indicators, String source) {
+        this.indicators = indicators;
+        dictionaryLabel.setText(source + " (" + indicators.size() + " indicators)");
+        // A new dictionary is used by the next scan; the running one keeps its own
+        startButton.setDisable(indicators.isEmpty() || activeScan != null);
+    }
+
+    private void loadDictionary() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Load Indicator Dictionary");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Text Files", "*.txt"),
+            new FileChooser.ExtensionFilter("All Files", "*.*"));
+
+        File file = fileChooser.showOpenDialog(this);
+        if (file != null) {
+            try {
+                setIndicators(Indicator.load(file.toPath()), file.getName());
+            } catch (IOException e) {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Dictionary Error");
+                alert.setHeaderText(null);
+                alert.setContentText("Could not load dictionary: " + e.getMessage());
+                alert.showAndWait();
+            }
+        }
+    }
+
+    /**
+     * Runs the scan on a background thread and adds findings to the table as they arrive.
+     */
+    private void startScan() {
+        IndicatorMatcher matcher;
+        try {
+            matcher = new IndicatorMatcher(indicators);
+        } catch (IllegalArgumentException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Dictionary Error");
+            alert.setHeaderText(null);
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            return;
+        }
+
+        if (activeScan != null) {
+            activeScan.cancel();
+        }
+        TreeItem<FindingRow> rootItem = findingsTable.getRoot();
+        rootItem.getChildren().clear();
+        indicatorItems.clear();
+        startButton.setDisable(true);
+        statsLabel.setText("Scanning for " + indicators.size() + " indicators...");
+
+        CancellationToken token = new CancellationToken();
+        activeScan = token;
+
+        Thread scanThread = new Thread(() -> {
+            try {
+                engine.search(rootDir, matcher, new SearchListener<>() {
+                    @Override
+                    public void onResult(IndicatorFindings findings) {
+                        Platform.runLater(() -> {
+                            if (token == activeScan) {
+                                addFindings(findings);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onProgress(SearchStats stats) {
+                        String summary = stats.getSummary();
+                        Platform.runLater(() -> {
+                            if (token == activeScan) {
+                                statsLabel.setText(summary);
+                            }
+                        });
+                    }
+                }, token);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            Platform.runLater(() -> {
+                // A scan that was replaced or abandoned leaves the window alone
+                if (token == activeScan) {
+                    activeScan = null;
+                    startButton.setDisable(indicators.isEmpty());
+                }
+            });
+        }, "indicator-scan");
+        scanThread.setDaemon(true);
+        scanThread.start();
+    }
+
+    /**
+     * Adds the findings of one file below the item of each indicator it contains.
+     *
+     * @param findings the findings for one file
+     */
+    private void addFindings(IndicatorFindings findings) {
+        String relativePath = rootDir.toPath().relativize(findings.getFile().toPath()).toString();
+
+        for (Map.Entry<Indicator, long[]> entry : findings.getOffsets().entrySet()) {
+            Indicator indicator = entry.getKey();
+            long count = findings.getCount(indicator);
+
+            TreeItem<FindingRow> indicatorItem = indicatorItems.computeIfAbsent(indicator, key -> {
+                TreeItem<FindingRow> item = new TreeItem<>(new FindingRow(key.getName(), null, 0, ""));
+                findingsTable.getRoot().getChildren().add(item);
+                return item;
+            });
+
+            indicatorItem.getChildren().add(new TreeItem<>(
+                new FindingRow(relativePath, findings.getFile(), count, formatOffsets(entry.getValue(), count))));
+
+            FindingRow summary = indicatorItem.getValue();
+            indicatorItem.setValue(new FindingRow(summary.label, null, summary.count + count,
+                indicatorItem.getChildren().size() + " files"));
+        }
+    }
+
+    private String formatOffsets(long[] offsets, long count) {
+        StringBuilder text = new StringBuilder();
+        int shown = Math.min(offsets.length, MAX_OFFSETS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(String.format("0x%X", offsets[i]));
+        }
+        if (count > shown) {
+            text.append(", ... (").append(count - shown).append(" more)");
+        }
+        return text.toString();
+    }
+
+    /**
+     * One row of the findings table: an indicator summary or a file below it.
+     */
+    private static class FindingRow {
+        private final String label;
+        private final File file;
+        private final long count;
+        private final String offsets;
+
+        FindingRow(String label, File file, long count, String offsets) {
+            this.label = label;
+            this.file = file;
+            this.count = count;
+            this.offsets = offsets;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.mobapp.inspector.ui;
+
+import javafx.event.ActionEvent;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.mobapp.inspector.fs.FileSignature;
+import com.mobapp.inspector.search.SearchFilter;
+
+/**
+ * Dialog for editing the filters that decide which files a content search reads.
+ * The result is the new filter, {@link SearchFilter#NONE} after "Clear", or
+ * nothing if the dialog was cancelled.
+ */
+public class SearchFilterDialog extends Dialog<SearchFilter> {
+
+    private static final long KILOBYTE = 1024;
+
+    private final TextField includeField = new TextField();
+    private final TextField excludeField = new TextField();
+    private final TextField minSizeField = new TextField();
+    private final TextField maxSizeField = new TextField();
+    private final DatePicker modifiedAfterPicker = new DatePicker();
+    private final DatePicker modifiedBeforePicker = new DatePicker();
+    private final Map<FileSignature, CheckBox> typeBoxes = new EnumMap<>(FileSignature.class);
+    private final CheckBox otherTypeBox = new CheckBox("Other (text and unrecognised files)");
+    private final RadioButton onlyTypesRadio = new RadioButton("Search only the checked types");
+    private final RadioButton skipTypesRadio = new RadioButton("Skip the checked types");
+
+    /**
+     * Creates the dialog, showing the current filter.
+     *
+     * @param filter the filter in effect
+     */
+    public SearchFilterDialog(SearchFilter filter) {
+        setTitle("Content Search Filters");
+        setHeaderText("Files that don't pass these filters are never opened");
+
+        includeField.setPromptText("e.g. *.plist, *.json, *.xml");
+        excludeField.setPromptText("e.g. *.so, *.ttf, *.png, lib/**");
+        minSizeField.setPromptText("KB");
+        maxSizeField.setPromptText("KB");
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(8);
+        grid.setPadding(new Insets(10));
+        GridPane.setHgrow(includeField, Priority.ALWAYS);
+
+        grid.addRow(0, new Label("Include:"), includeField);
+        grid.addRow(1, new Label("Exclude:"), excludeField);
+        grid.addRow(2, new Label("Min size (KB):"), minSizeField);
+        grid.addRow(3, new Label("Max size (KB):"), maxSizeField);
+        grid.addRow(4, new Label("Modified after:"), modifiedAfterPicker);
+        grid.addRow(5, new Label("Modified before:"), modifiedBeforePicker);
+
+        ToggleGroup typeModeGroup = new ToggleGroup();
+        onlyTypesRadio.setToggleGroup(typeModeGroup);
+        skipTypesRadio.setToggleGroup(typeModeGroup);
+        FlowPane typeModePane = new FlowPane(10, 5);
+        typeModePane.getChildren().addAll(onlyTypesRadio, skipTypesRadio);
+
+        FlowPane typePane = new FlowPane(10, 5);
+        for (FileSignature signature : FileSignature.values()) {
+            CheckBox box = new CheckBox(signature.getDescription());
+            typeBoxes.put(signature, box);
+            typePane.getChildren().add(box);
+        }
+        typePane.getChildren().add(otherTypeBox);
+        Label typesLabel = new Label("File types:");
+        typesLabel.setTooltip(new Tooltip("Types are recognised from the leading bytes of each file, whatever its name. "
+            + "Leave all unchecked to search files of every type."));
+        grid.addRow(6, typesLabel, typeModePane);
+        grid.add(typePane, 1, 7);
+
+        show(filter);
+
+        ButtonType applyType = new ButtonType("Apply", ButtonBar.ButtonData.OK_DONE);
+        ButtonType clearType = new ButtonType("Clear", ButtonBar.ButtonData.LEFT);
+        getDialogPane().getButtonTypes().addAll(applyType, clearType, ButtonType.CANCEL);
+        getDialogPane().setContent(grid);
+        getDialogPane().setPrefWidth(560);
+
+        // Don't close on invalid input; the field in error is highlighted instead
+        Button applyButton = (Button) getDialogPane().lookupButton(applyType);
+        applyButton.addEventFilter(ActionEvent.ACTION, e -> {
+            if (readFilter() == null) {
+                e.consume();
+            }
+        });
+
+        setResultConverter(button -> {
+            if (button == applyType) {
+                return readFilter();
+            }
+            if (button == clearType) {
+                return SearchFilter.NONE;
+            }
+            return null;
+        });
+    }
+
+    private void show(SearchFilter filter) {
+        includeField.setText(String.join(", ", filter.getIncludeGlobs()));
+        excludeField.setText(String.join(", ", filter.getExcludeGlobs()));
+        minSizeField.setText(filter.getMinSize() > 0 ? Long.toString(filter.getMinSize() / KILOBYTE) : "");
+        maxSizeField.setText(filter.getMaxSize() < Long.MAX_VALUE ? Long.toString(filter.getMaxSize() / KILOBYTE) : "");
+        modifiedAfterPicker.setValue(filter.getModifiedAfter() > Long.MIN_VALUE
+            ? toDate(filter.getModifiedAfter()) : null);
+        modifiedBeforePicker.setValue(filter.getModifiedBefore() < Long.MAX_VALUE
+            ? toDate(filter.getModifiedBefore()) : null);
+        for (Map.Entry<FileSignature, CheckBox> entry : typeBoxes.entrySet()) {
+            entry.getValue().setSelected(filter.getTypes() != null && filter.getTypes().contains(entry.getKey()));
+        }
+        otherTypeBox.setSelected(filter.isOtherTypes());
+        (filter.isExcludeTypes() ? skipTypesRadio : onlyTypesRadio).setSelected(true);
+    }
+
+    /**
+     * Builds a filter from the fields.
+     *
+     * @return the filter, or null if a field is invalid
+     */
+    private SearchFilter readFilter() {
+        long minSize = parseSize(minSizeField, 0);
+        long maxSize = parseSize(maxSizeField, Long.MAX_VALUE);
+        if (minSize < 0 || maxSize < 0) {
+            return null;
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate after = modifiedAfterPicker.getValue();
+        LocalDate before = modifiedBeforePicker.getValue();
+        long modifiedAfter = after != null ? after.atStartOfDay(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        // The whole "before" day is included
+        long modifiedBefore = before != null
+            ? before.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1 : Long.MAX_VALUE;
+
+        Set<FileSignature> types = EnumSet.noneOf(FileSignature.class);
+        for (Map.Entry<FileSignature, CheckBox> entry : typeBoxes.entrySet()) {
+            if (entry.getValue().isSelected()) {
+                types.add(entry.getKey());
+            }
+        }
+
+        markInvalid(includeField, false);
+        markInvalid(excludeField, false);
+        // Nothing checked means no type rule, in either mode
+        boolean typeRule = !types.isEmpty() || otherTypeBox.isSelected();
+        try {
+            return new SearchFilter(SearchFilter.parseGlobs(includeField.getText()),
+                SearchFilter.parseGlobs(excludeField.getText()), minSize, maxSize, modifiedAfter, modifiedBefore,
+                typeRule ? types : null, otherTypeBox.isSelected(), skipTypesRadio.isSelected());
+        } catch (IllegalArgumentException e) {
+            markInvalid(includeField, true);
+            markInvalid(excludeField, true);
+            setHeaderText("Invalid pattern: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a size in kilobytes.
+     *
+     * @param field the field
+     * @param empty the size in bytes to use when the field is empty
+     * @return the size in bytes, or -1 if the field is not a number or too large
+     */
+    private long parseSize(TextField field, long empty) {
+        String text = field.getText().trim();
+        markInvalid(field, false);
+        if (text.isEmpty()) {
+            return empty;
+        }
+        try {
+            long kilobytes = Long.parseLong(text);
+            if (kilobytes >= 0) {
+                return Math.multiplyExact(kilobytes, KILOBYTE);
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            // Reported below
+        }
+        markInvalid(field, true);
+        return -1;
+    }
+
+    private static void markInvalid(TextField field, boolean invalid) {
+        field.setStyle(invalid ? "-fx-border-color: #cc0000;" : "");
+    }
+
+    private static LocalDate toDate(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
@@ -0,0 +1,417 @@
+package com.mobapp.inspector.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import com.mobapp.inspector.diff.DatabaseDiff;
+import com.mobapp.inspector.diff.FileChange;
+import com.mobapp.inspector.diff.SnapshotDiff;
+import com.mobapp.inspector.fs.FileSignature;
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Window that compares two snapshots of an app's storage, such as dumps
+ * taken before and after logging in, and shows the added, removed and
+ * modified files in a tree. Modified SQLite databases can be expanded to
+ * the tables that changed.
+ */
+public class SnapshotDiffWindow extends Stage {
+
+    private static final Comparator<TreeItem<DiffRow>> FOLDERS_FIRST = Comparator
+        .comparing((TreeItem<DiffRow> item) -> item.getValue().change != null)
+        .thenComparing(item -> item.getValue().label, String.CASE_INSENSITIVE_ORDER);
+
+    private final SnapshotDiff snapshotDiff = new SnapshotDiff();
+    private final Consumer<File> openFileListener;
+
+    private File beforeDir;
+    private File afterDir;
+    private Label beforeLabel;
+    private Label afterLabel;
+    private Label statsLabel;
+    private Button compareButton;
+    private TreeTableView<DiffRow> changesTable;
+    private CancellationToken activeDiff;
+    private final Map<String, TreeItem<DiffRow>> folderItems = new HashMap<>();
+    private final Map<FileChange.Kind, Integer> counts = new EnumMap<>(FileChange.Kind.class);
+    private final ConcurrentLinkedQueue<DiffRow> pendingRows = new ConcurrentLinkedQueue<>();
+    private AnimationTimer rowsPulse;
+
+    /**
+     * Creates the diff window.
+     *
+     * @param beforeDir the first snapshot to preselect, or null
+     * @param openFileListener called when the user opens a file from the changes
+     * @param stylesheets the stylesheets of the owning scene
+     */
+    public SnapshotDiffWindow(File beforeDir, Consumer<File> openFileListener, List<String> stylesheets) {
+        this.openFileListener = openFileListener;
+
+        setTitle("Compare Snapshots");
+
+        BorderPane root = new BorderPane();
+        root.setPadding(new Insets(10));
+        root.setTop(createToolbar());
+        root.setCenter(createChangesTable());
+
+        Scene scene = new Scene(root, 900, 600);
+        scene.getStylesheets().addAll(stylesheets);
+        setScene(scene);
+
+        // Changes are queued by the workers and added to the tree once per pulse
+        rowsPulse = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                DiffRow row;
+                boolean added = false;
+                while ((row = pendingRows.poll()) != null) {
+                    addRow(row);
+                    added = true;
+                }
+                if (added) {
+                    statsLabel.setText(String.format("Comparing... %,d changes so far",
+                        counts.values().stream().mapToInt(Integer::intValue).sum()));
+                }
+            }
+        };
+
+        // Closing the window abandons a comparison that is still running
+        setOnHidden(e -> {
+            if (activeDiff != null) {
+                activeDiff.cancel();
+            }
+            rowsPulse.stop();
+        });
+
+        setBeforeDir(beforeDir);
+        setAfterDir(null);
+    }
+
+    private VBox createToolbar() {
+        beforeLabel = new Label();
+        afterLabel = new Label();
+
+        Button beforeButton = new Button("Before...");
+        beforeButton.getStyleClass().add("toolbar-button");
+        beforeButton.setTooltip(new Tooltip("Choose the snapshot taken before the action"));
+        beforeButton.setOnAction(e -> {
+            File folder = chooseFolder("Select Snapshot Before", beforeDir);
+            if (folder != null) {
+                setBeforeDir(folder);
+            }
+        });
+
+        Button afterButton = new Button("After...");
+        afterButton.getStyleClass().add("toolbar-button");
+        afterButton.setTooltip(new Tooltip("Choose the snapshot taken after the action"));
+        afterButton.setOnAction(e -> {
+            File folder = chooseFolder("Select Snapshot After", afterDir != null ? afterDir : beforeDir);
+            if (folder != null) {
+                setAfterDir(folder);
+            }
+        });
+
+        compareButton = new Button("Compare");
+        compareButton.getStyleClass().addAll("toolbar-button", "primary-action");
+        compareButton.setOnAction(e -> startDiff());
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+
+        HBox beforeBox = new HBox(10, beforeButton, beforeLabel);
+        beforeBox.setAlignment(Pos.CENTER_LEFT);
+        HBox afterBox = new HBox(10, afterButton, afterLabel, spacer, compareButton);
+        afterBox.setAlignment(Pos.CENTER_LEFT);
+
+        statsLabel = new Label("Compare two dumps of the same app to see which files an action changed.");
+        statsLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
+
+        VBox toolbar = new VBox(5);
+        toolbar.setPadding(new Insets(0, 0, 10, 0));
+        toolbar.getChildren().addAll(beforeBox, afterBox, statsLabel);
+        return toolbar;
+    }
+
+    private TreeTableView<DiffRow> createChangesTable() {
+        changesTable = new TreeTableView<>(new TreeItem<>(new DiffRow("Changes", null, false)));
+        changesTable.setShowRoot(false);
+        changesTable.setColumnResizePolicy(TreeTableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        changesTable.setPlaceholder(new Label("No changes yet"));
+
+        TreeTableColumn<DiffRow, String> nameColumn = new TreeTableColumn<>("File / Table");
+        nameColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().label));
+        nameColumn.setPrefWidth(450);
+
+        TreeTableColumn<DiffRow, String> changeColumn = new TreeTableColumn<>("Change");
+        changeColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().kind));
+        changeColumn.setPrefWidth(100);
+
+        TreeTableColumn<DiffRow, String> detailColumn = new TreeTableColumn<>("Details");
+        detailColumn.setCellValueFactory(param -> new ReadOnlyStringWrapper(param.getValue().getValue().detail));
+        detailColumn.setPrefWidth(300);
+
+        changesTable.getColumns().add(nameColumn);
+        changesTable.getColumns().add(changeColumn);
+        changesTable.getColumns().add(detailColumn);
+
+        changesTable.setRowFactory(table -> {
+            TreeTableRow<DiffRow> row = new TreeTableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && row.getItem() != null && row.getItem().change != null
+                        && openFileListener != null) {
+                    FileChange change = row.getItem().change;
+                    openFileListener.accept(change.getAfter() != null ? change.getAfter() : change.getBefore());
+                }
+            });
+            return row;
+        });
+
+        return changesTable;
+    }
+
+    private File chooseFolder(String title, File initial) {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle(title);
+        if (initial != null && initial.getParentFile() != null) {
+            directoryChooser.setInitialDirectory(initial.getParentFile());
+        }
+        return directoryChooser.showDialog(this);
+    }
+
+    private void setBeforeDir(File folder) {
+        beforeDir = folder;
+        beforeLabel.setText(folder != null ? folder.getAbsolutePath() : "No snapshot selected");
+        compareButton.setDisable(beforeDir == null || afterDir == null);
+    }
+
+    private void setAfterDir(File folder) {
+        afterDir = folder;
+        afterLabel.setText(folder != null ? folder.getAbsolutePath() : "No snapshot selected");
+        compareButton.setDisable(beforeDir == null || afterDir == null);
+    }
+
+    /**
+     * Runs the comparison on a background thread and adds changes to the tree as they are found.
+     */
+    private void startDiff() {
+        if (activeDiff != null) {
+            activeDiff.cancel();
+        }
+        pendingRows.clear();
+        changesTable.getRoot().getChildren().clear();
+        folderItems.clear();
+        counts.clear();
+        compareButton.setDisable(true);
+        statsLabel.setText("Comparing...");
+
+        CancellationToken token = new CancellationToken();
+        activeDiff = token;
+        File before = beforeDir;
+        File after = afterDir;
+        long start = System.currentTimeMillis();
+        rowsPulse.start();
+
+        Thread diffThread = new Thread(() -> {
+            try {
+                SnapshotDiff.Summary summary = snapshotDiff.compare(before, after, change -> {
+                    if (token.isCancelled()) {
+                        return;
+                    }
+                    // Only modified databases are read here, to offer their tables
+                    boolean database = change.getKind() == FileChange.Kind.MODIFIED
+                        && FileSignature.detect(change.getBefore()) == FileSignature.SQLITE
+                        && FileSignature.detect(change.getAfter()) == FileSignature.SQLITE;
+                    pendingRows.add(new DiffRow(change.getPath(), change, database));
+                }, token);
+                long millis = System.currentTimeMillis() - start;
+
+                Platform.runLater(() -> {
+                    if (token != activeDiff) {
+                        return;
+                    }
+                    rowsPulse.stop();
+                    rowsPulse.handle(0);
+                    sortChildren(changesTable.getRoot());
+                    statsLabel.setText(String.format(
+                        "%,d added, %,d removed, %,d modified - %,d files compared, %,d read in full, in %,d ms",
+                        counts.getOrDefault(FileChange.Kind.ADDED, 0), counts.getOrDefault(FileChange.Kind.REMOVED, 0),
+                        counts.getOrDefault(FileChange.Kind.MODIFIED, 0), summary.getFiles(),
+                        summary.getContentsCompared(), millis));
+                    compareButton.setDisable(false);
+                });
+            } catch (CancellationException e) {
+                // The window was closed or a new comparison has taken over
+            } catch (RuntimeException e) {
+                // Keep what was found so far, and let the user compare again
+                System.err.println("Error comparing snapshots: " + e);
+                Platform.runLater(() -> {
+                    if (token != activeDiff) {
+                        return;
+                    }
+                    rowsPulse.stop();
+                    rowsPulse.handle(0);
+                    sortChildren(changesTable.getRoot());
+                    statsLabel.setText("Comparison failed: " + e.getMessage());
+                    compareButton.setDisable(false);
+                });
+            }
+        }, "snapshot-diff");
+        diffThread.setDaemon(true);
+        diffThread.start();
+    }
+
+    /**
+     * Adds a changed file below the items of its folders, creating them as needed.
+     *
+     * @param row the row of the changed file, labelled with its relative path
+     */
+    private void addRow(DiffRow row) {
+        FileChange change = row.change;
+        counts.merge(change.getKind(), 1, Integer::sum);
+
+        int slash = change.getPath().lastIndexOf('/');
+        TreeItem<DiffRow> parent = slash < 0 ? changesTable.getRoot() : getFolderItem(change.getPath().substring(0, slash));
+        TreeItem<DiffRow> item = new TreeItem<>(row);
+        if (row.database) {
+            // The tables are compared when the database is expanded
+            item.getChildren().add(new TreeItem<>(new DiffRow("Comparing tables...", "", "")));
+            item.expandedProperty().addListener((observable, oldValue, newValue) -> {
+                if (newValue && !row.tablesRequested) {
+                    row.tablesRequested = true;
+                    compareTables(item);
+                }
+            });
+        }
+        parent.getChildren().add(item);
+    }
+
+    private TreeItem<DiffRow> getFolderItem(String path) {
+        TreeItem<DiffRow> item = folderItems.get(path);
+        if (item == null) {
+            int slash = path.lastIndexOf('/');
+            TreeItem<DiffRow> parent = slash < 0 ? changesTable.getRoot() : getFolderItem(path.substring(0, slash));
+            item = new TreeItem<>(new DiffRow(path.substring(slash + 1), "", ""));
+            // Top-level folders start expanded so the first changes are in view
+            item.setExpanded(slash < 0);
+            parent.getChildren().add(item);
+            folderItems.put(path, item);
+        }
+        return item;
+    }
+
+    /**
+     * Orders every level of the tree with folders first, then by name, as
+     * changes arrive in whatever order the workers find them.
+     *
+     * @param item the item whose children to sort
+     */
+    private void sortChildren(TreeItem<DiffRow> item) {
+        if (item.getChildren().size() > 1) {
+            item.getChildren().sort(FOLDERS_FIRST);
+        }
+        for (TreeItem<DiffRow> child : item.getChildren()) {
+            if (child.getValue().change == null) {
+                sortChildren(child);
+            }
+        }
+    }
+
+    /**
+     * Compares the tables of a modified database in the background and shows
+     * those that changed below its item.
+     *
+     * @param item the item of the database
+     */
+    private void compareTables(TreeItem<DiffRow> item) {
+        FileChange change = item.getValue().change;
+        CancellationToken token = activeDiff;
+
+        Thread tableThread = new Thread(() -> {
+            try {
+                List<DatabaseDiff.TableChange> tables = DatabaseDiff.compare(change.getBefore(), change.getAfter(), token);
+                Platform.runLater(() -> {
+                    item.getChildren().clear();
+                    for (DatabaseDiff.TableChange table : tables) {
+                        item.getChildren().add(new TreeItem<>(
+                            new DiffRow(table.getTable(), table.getKind().getLabel(), table.getDescription())));
+                    }
+                    if (tables.isEmpty()) {
+                        item.getChildren().add(new TreeItem<>(new DiffRow("No table contents changed", "", "")));
+                    }
+                });
+            } catch (CancellationException e) {
+                // The window was closed
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> item.getChildren().setAll(
+                    List.of(new TreeItem<>(new DiffRow("Could not compare tables", "", e.getMessage())))));
+            }
+        }, "database-diff");
+        tableThread.setDaemon(true);
+        tableThread.start();
+    }
+
+    /**
+     * One row of the changes table: a folder, a changed file or a changed table.
+     */
+    private static class DiffRow {
+        private final String label;
+        private final String kind;
+        private final String detail;
+        private final FileChange change;
+        private final boolean database;
+        // Only touched on the JavaFX thread
+        private boolean tablesRequested;
+
+        DiffRow(String label, String kind, String detail) {
+            this.label = label;
+            this.kind = kind;
+            this.detail = detail;
+            this.change = null;
+            this.database = false;
+        }
+
+        DiffRow(String path, FileChange change, boolean database) {
+            this.label = change != null ? path.substring(path.lastIndexOf('/') + 1) : path;
+            this.kind = change != null ? change.getKind().getLabel() : "";
+            this.detail = change != null ? describe(change) : "";
+            this.change = change;
+            this.database = database;
+        }
+
+        private static String describe(FileChange change) {
+            switch (change.getKind()) {
+                case ADDED:
+                    return String.format("%,d bytes", change.getSizeAfter());
+                case REMOVED:
+                    return String.format("%,d bytes", change.getSizeBefore());
+                default:
+                    return change.getSizeBefore() == change.getSizeAfter()
+                        ? String.format("%,d bytes, contents changed", change.getSizeAfter())
+                        : String.format("%,d → %,d bytes", change.getSizeBefore(), change.getSizeAfter());
+            }
+        }
+    }
+}
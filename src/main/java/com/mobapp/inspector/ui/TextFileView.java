@@ -0,0 +1,263 @@
+package com.mobapp.inspector.ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.*;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import com.mobapp.inspector.fs.MappedTextFile;
+import com.mobapp.inspector.search.CancellationToken;
+
+/**
+ * Shows a text file of any size. The file is memory-mapped and its lines are
+ * indexed in the background; the list only reads the lines on screen, so
+ * the first lines show at once and scrolling works while indexing goes on.
+ */
+public class TextFileView extends VBox {
+
+    private static final int BLOCK_LINES = 64;
+    private static final int MAX_CACHED_BLOCKS = 64;
+    private static final int MAX_COPIED_LINES = 100_000;
+
+    private final MappedTextFile text;
+    private final LineList lines = new LineList();
+    private final ListView<String> lineList;
+    private final Label statusLabel;
+    private final CancellationToken indexToken = new CancellationToken();
+    private CancellationToken activeFind;
+    private long pendingSelection = -1;
+
+    /**
+     * Creates a view of a mapped file and starts indexing its lines.
+     *
+     * @param text the mapped file
+     */
+    public TextFileView(MappedTextFile text) {
+        super(5);
+        this.text = text;
+
+        lineList = new ListView<>(lines);
+        lineList.getStyleClass().addAll("text-file-view", "text-file-lines");
+        lineList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        lineList.setPlaceholder(new Label(text.getSize() == 0 ? "Empty file" : "Indexing lines..."));
+        lineList.setOnKeyPressed(event -> {
+            if (new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN).match(event)) {
+                copySelectedLines();
+            }
+        });
+        lineList.getSelectionModel().selectedIndexProperty().addListener((obs, oldIndex, newIndex) -> updateStatus());
+
+        HBox searchBox = new HBox(5);
+        searchBox.setPadding(new Insets(5));
+        searchBox.setAlignment(Pos.CENTER_LEFT);
+
+        TextField searchField = new TextField();
+        searchField.setPromptText("Enter search term...");
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        searchField.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                findNext(searchField.getText());
+            }
+        });
+
+        Button searchButton = new Button("Find");
+        searchButton.setOnAction(e -> findNext(searchField.getText()));
+
+        Button clearButton = new Button("Clear");
+        clearButton.setOnAction(e -> {
+            searchField.clear();
+            cancelFind();
+            lineList.getSelectionModel().clearSelection();
+        });
+
+        statusLabel = new Label();
+        statusLabel.setStyle("-fx-font-style: italic; -fx-text-fill: #666666; -fx-font-size: 11px;");
+
+        searchBox.getChildren().addAll(searchField, searchButton, clearButton, statusLabel);
+
+        getChildren().addAll(searchBox, lineList);
+        VBox.setVgrow(lineList, Priority.ALWAYS);
+
+        updateStatus();
+        startIndexing();
+    }
+
+    /**
+     * Stops indexing and searching. Called when the view is no longer shown.
+     */
+    public void dispose() {
+        indexToken.cancel();
+        cancelFind();
+    }
+
+    private void startIndexing() {
+        Thread indexThread = new Thread(() -> {
+            try {
+                text.index(indexToken, (count, complete) ->
+                    Platform.runLater(() -> lines.grow(count)));
+            } catch (CancellationException e) {
+                // The view was closed
+            }
+        }, "text-index");
+        indexThread.setDaemon(true);
+        indexThread.start();
+    }
+
+    private void updateStatus() {
+        int selected = lineList.getSelectionModel().getSelectedIndex();
+        String count = String.format("%,d lines", lines.size()) + (text.isIndexComplete() ? "" : " so far");
+        statusLabel.setText(selected >= 0 ? String.format("Line %,d of %s", selected + 1L, count) : count);
+    }
+
+    /**
+     * Looks for the text in the background, from the line after the
+     * selected one, and selects the first line that contains it.
+     *
+     * @param searchText the text to find
+     */
+    private void findNext(String searchText) {
+        cancelFind();
+        if (searchText == null || searchText.isEmpty() || lines.size() == 0) {
+            return;
+        }
+
+        int selected = lineList.getSelectionModel().getSelectedIndex();
+        long fromLine = selected >= 0 && selected + 1 < lines.size() ? selected + 1 : 0;
+        CancellationToken token = new CancellationToken();
+        activeFind = token;
+        statusLabel.setText("Searching...");
+
+        Thread findThread = new Thread(() -> {
+            long found;
+            try {
+                found = text.find(searchText, fromLine, token);
+            } catch (CancellationException e) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (token != activeFind) {
+                    return;
+                }
+                activeFind = null;
+                if (found >= 0) {
+                    showLine(found);
+                } else {
+                    updateStatus();
+                    Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                    alert.setTitle("Search Result");
+                    alert.setHeaderText(null);
+                    alert.setContentText("Text '" + searchText + "' not found"
+                        + (fromLine > 0 ? " after line " + String.format("%,d", fromLine) + "." : "."));
+                    alert.showAndWait();
+                }
+            });
+        }, "text-find");
+        findThread.setDaemon(true);
+        findThread.start();
+    }
+
+    private void cancelFind() {
+        if (activeFind != null) {
+            activeFind.cancel();
+            activeFind = null;
+        }
+        pendingSelection = -1;
+    }
+
+    /**
+     * Selects and scrolls to a line, or does so once indexing reaches it.
+     *
+     * @param line the line number
+     */
+    private void showLine(long line) {
+        if (line >= lines.size()) {
+            pendingSelection = line;
+            statusLabel.setText(String.format("Found on line %,d, waiting for indexing to reach it...", line + 1));
+            return;
+        }
+        pendingSelection = -1;
+        lineList.getSelectionModel().clearAndSelect((int) line);
+        lineList.scrollTo((int) Math.max(0, line - 3));
+        lineList.requestFocus();
+    }
+
+    private void copySelectedLines() {
+        List<Integer> selected = lineList.getSelectionModel().getSelectedIndices();
+        StringBuilder copied = new StringBuilder();
+        int copiedLines = 0;
+        for (Integer index : selected) {
+            if (copiedLines++ == MAX_COPIED_LINES) {
+                break;
+            }
+            copied.append(lines.get(index)).append('\n');
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(copied.toString());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    /**
+     * The lines indexed so far, read from the file in blocks as the list
+     * asks for them. Only the most recently read blocks are kept.
+     */
+    private class LineList extends ObservableListBase<String> {
+        private int size;
+        private final Map<Long, List<String>> blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<String>> eldest) {
+                return size() > MAX_CACHED_BLOCKS;
+            }
+        };
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            long block = index / BLOCK_LINES;
+            List<String> blockLines = blocks.computeIfAbsent(block,
+                key -> text.getLines(key * BLOCK_LINES, BLOCK_LINES));
+            int offset = index % BLOCK_LINES;
+            return offset < blockLines.size() ? blockLines.get(offset) : "";
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Makes newly indexed lines available to the list.
+         *
+         * @param count the number of lines indexed so far
+         */
+        void grow(long count) {
+            int newSize = (int) Math.min(count, Integer.MAX_VALUE);
+            if (newSize > size) {
+                int oldSize = size;
+                size = newSize;
+                beginChange();
+                nextAdd(oldSize, newSize);
+                endChange();
+            }
+            updateStatus();
+            if (pendingSelection >= 0 && pendingSelection < size) {
+                showLine(pendingSelection);
+            }
+        }
+    }
+}